@@ -0,0 +1,1310 @@
+package api;
+
+import utilities.AccessToken;
+import utilities.VirtualThreads;
+
+import javax.net.ssl.SSLSession;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Class which owns the single HttpClient used by the whole application to talk to the web service.
+ * Every request goes through this gateway so that connections are pooled and kept alive between calls
+ * instead of paying a new TCP and TLS handshake for every menu action, and so that one RequestLimiter can pace them:
+ * a token bucket caps the request rate and an adaptive limit caps the requests in flight, growing while the web
+ * service answers quickly and backing off when it fails, throttles or slows down.
+ * Each endpoint has a CircuitBreaker, so that while it is failing requests fail fast (and GETs are answered from the
+ * last body kept for them) instead of every desk waiting for its own timeouts. PATCH and DELETE are sent again after
+ * jittered exponential backoff when the web service drops them or answers 429, 502, 503 or 504. POSTs are only sent
+ * again when they cannot have been carried out, unless the web service honours their Idempotency-Key
+ * (api.idempotencyKeys), which makes sure it does not create the same booking twice.
+ */
+public class ApiGateway {
+
+    /**
+     * Instance of ApiGateway class
+     */
+    private static ApiGateway firstInstance = null;
+
+    /**
+     * Root URL used when none has been configured
+     */
+    private static final String DEFAULT_ROOT_URL = "https://fit3077.com/api/v2";
+
+    /**
+     * System property which can be used to point the application at another copy of the web service (e.g. the StubApiServer)
+     */
+    public static final String ROOT_URL_PROPERTY = "api.rootUrl";
+
+    /**
+     * Environment variable which can be used instead of the system property
+     */
+    public static final String ROOT_URL_ENV = "COVID_API_ROOT_URL";
+
+    /**
+     * Time allowed to establish a connection to the web service
+     */
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(5);
+
+    /**
+     * System property holding the time (in milliseconds) allowed for a single request to receive its response
+     */
+    public static final String REQUEST_TIMEOUT_PROPERTY = "api.requestTimeoutMs";
+
+    /**
+     * System property which turns hedged GETs off (-Dapi.hedgedReads=false)
+     */
+    public static final String HEDGED_READS_PROPERTY = "api.hedgedReads";
+
+    /**
+     * How long (in seconds) an idle pooled connection is kept open before being closed
+     */
+    private static final String KEEP_ALIVE_SECONDS = "300";
+
+    /**
+     * System property holding how many response bodies are kept for revalidation with If-None-Match / If-Modified-Since
+     */
+    public static final String CACHE_ENTRIES_PROPERTY = "api.cacheEntries";
+
+    /**
+     * System property holding how many requests per second may be sent to the web service (0 for no limit)
+     */
+    public static final String RATE_LIMIT_PROPERTY = "api.rateLimit";
+
+    /**
+     * System property holding how many requests may be sent at once after a quiet period
+     */
+    public static final String RATE_BURST_PROPERTY = "api.rateBurst";
+
+    /**
+     * System property holding the most requests which may be in flight at once, however well the web service copes
+     */
+    public static final String MAX_CONCURRENCY_PROPERTY = "api.maxConcurrency";
+
+    /**
+     * System property holding how many times a request which may safely be sent again is retried after a transient failure
+     */
+    public static final String RETRIES_PROPERTY = "api.retries";
+
+    /**
+     * System property holding how many requests to an endpoint must fail in a row before its circuit opens
+     */
+    public static final String BREAKER_FAILURES_PROPERTY = "api.breakerFailures";
+
+    /**
+     * System property holding how long (in milliseconds) an open circuit fails requests before trying the endpoint again
+     */
+    public static final String BREAKER_OPEN_MS_PROPERTY = "api.breakerOpenMs";
+
+    /**
+     * System property which states that the web service answers a repeated POST carrying an Idempotency-Key with the
+     * result of the first attempt (-Dapi.idempotencyKeys=true, e.g. for StubApiServer). The fit3077 web service does not.
+     */
+    public static final String IDEMPOTENCY_KEYS_PROPERTY = "api.idempotencyKeys";
+
+    /**
+     * Header sent with a POST so that a web service honouring it answers a retry with the result of the first attempt
+     */
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
+    /**
+     * Backoff (in milliseconds) before the first retry; it doubles with every retry after that
+     */
+    private static final long RETRY_BASE_MILLIS = 100;
+
+    /**
+     * Longest backoff (in milliseconds) before a retry
+     */
+    private static final long RETRY_MAX_MILLIS = 2_000;
+
+    /**
+     * Longest Retry-After (in milliseconds) which is waited for; a web service asking for longer is not retried
+     */
+    private static final long RETRY_AFTER_MAX_MILLIS = 10_000;
+
+    /**
+     * Number of requests which may be in flight at once before the limiter has measured the web service
+     */
+    private static final int INITIAL_CONCURRENCY = 8;
+
+    /**
+     * Number of threads used by the client to process responses when virtual threads are not available
+     */
+    private static final int CLIENT_THREADS = 4;
+
+    /**
+     * Root URL for the web service
+     */
+    private volatile String rootUrl;
+
+    /**
+     * Path of the root URL (e.g. /api/v2), stripped from request URLs to find their endpoint
+     */
+    private volatile String rootPath;
+
+    /**
+     * Time allowed for a single request to receive its response, unless the deadline of its operation is sooner
+     */
+    private final Duration requestTimeout = Duration.ofMillis(Long.getLong(REQUEST_TIMEOUT_PROPERTY, 20_000));
+
+    /**
+     * Whether hedged GETs send a second attempt when the first is slower than usual
+     */
+    private final boolean hedgedReads = !"false".equalsIgnoreCase(System.getProperty(HEDGED_READS_PROPERTY));
+
+    /**
+     * Number of times a request is retried after a transient failure
+     */
+    private final int retries = Math.max(0, Integer.getInteger(RETRIES_PROPERTY, 3));
+
+    /**
+     * Whether the web service honours idempotency keys, so that a POST carrying one may be retried like a PATCH
+     */
+    private final boolean idempotencyKeys = Boolean.getBoolean(IDEMPOTENCY_KEYS_PROPERTY);
+
+    /**
+     * Number of failures in a row which open the circuit of an endpoint
+     */
+    private final int breakerFailures = Integer.getInteger(BREAKER_FAILURES_PROPERTY, 5);
+
+    /**
+     * Time (in milliseconds) an open circuit fails requests before a trial request
+     */
+    private final long breakerOpenMillis = Long.getLong(BREAKER_OPEN_MS_PROPERTY, 10_000);
+
+    /**
+     * API key needed to access the web service
+     */
+    private final String myApiKey = AccessToken.token;
+
+    /**
+     * Executor used by the client for its asynchronous work
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Http client which is shared by every request sent to the web service
+     */
+    private final HttpClient client;
+
+    /**
+     * GET requests which have been sent but have not received their response yet, keyed by URL, so that identical GETs
+     * made at the same time share one request
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<HttpResponse<String>>> inFlightGets = new ConcurrentHashMap<>();
+
+    /**
+     * Number of GET requests which were answered by joining an identical request already in flight
+     */
+    private final AtomicLong coalescedGets = new AtomicLong();
+
+    /**
+     * Rate and adaptive concurrency limit every request waits for before it is sent
+     */
+    private final RequestLimiter limiter;
+
+    /**
+     * Last body received for each URL together with its validators, least recently used first
+     */
+    private final Map<String, ValidatedBody> validatedBodies;
+
+    /**
+     * Number of GET requests answered with 304 Not Modified, whose cached body was reused
+     */
+    private final AtomicLong revalidatedGets = new AtomicLong();
+
+    /**
+     * Recent response times of GET requests, keyed by endpoint (e.g. /booking/*), used to decide when to hedge
+     */
+    private final ConcurrentHashMap<String, LatencyTracker> getLatencies = new ConcurrentHashMap<>();
+
+    /**
+     * Number of second attempts sent by hedged GETs
+     */
+    private final AtomicLong hedgedGets = new AtomicLong();
+
+    /**
+     * Circuit breakers keyed by endpoint (e.g. /booking/*)
+     */
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    /**
+     * Number of requests sent again after a transient failure
+     */
+    private final AtomicLong retriedRequests = new AtomicLong();
+
+    /**
+     * Number of requests failed straight away because the circuit of their endpoint was open
+     */
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    /**
+     * Number of GET requests answered with the last body kept for them because the circuit of their endpoint was open
+     */
+    private final AtomicLong staleGets = new AtomicLong();
+
+    /**
+     * Body of a GET response with the validators the web service sent for it
+     */
+    private static final class ValidatedBody {
+        private final String etag;
+        private final String lastModified;
+        private final String body;
+
+        private ValidatedBody(String etag, String lastModified, String body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Response to a revalidated GET: the 304 response of the web service, with the status and body of the cached response
+     */
+    private static final class RevalidatedResponse implements HttpResponse<String> {
+        private final HttpResponse<String> notModified;
+        private final String body;
+
+        private RevalidatedResponse(HttpResponse<String> notModified, String body) {
+            this.notModified = notModified;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return notModified.request();
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return notModified.previousResponse();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return notModified.headers();
+        }
+
+        @Override
+        public String body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return notModified.sslSession();
+        }
+
+        @Override
+        public URI uri() {
+            return notModified.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return notModified.version();
+        }
+    }
+
+    /**
+     * Response to a GET which was not sent because the circuit of its endpoint was open: the last body received for the URL
+     */
+    private static final class StaleResponse implements HttpResponse<String> {
+        private final HttpRequest request;
+        private final String body;
+
+        private StaleResponse(HttpRequest request, String body) {
+            this.request = request;
+            this.body = body;
+        }
+
+        @Override
+        public int statusCode() {
+            return 200;
+        }
+
+        @Override
+        public HttpRequest request() {
+            return request;
+        }
+
+        @Override
+        public Optional<HttpResponse<String>> previousResponse() {
+            return Optional.empty();
+        }
+
+        @Override
+        public HttpHeaders headers() {
+            return HttpHeaders.of(Map.of(), (name, value) -> true);
+        }
+
+        @Override
+        public String body() {
+            return body;
+        }
+
+        @Override
+        public Optional<SSLSession> sslSession() {
+            return Optional.empty();
+        }
+
+        @Override
+        public URI uri() {
+            return request.uri();
+        }
+
+        @Override
+        public HttpClient.Version version() {
+            return HttpClient.Version.HTTP_1_1;
+        }
+    }
+
+    /**
+     * Constructor for the ApiGateway class
+     */
+    private ApiGateway() {
+        rootUrl = configuredRootUrl();
+        rootPath = pathOf(rootUrl);
+        // the keep alive property is only read when the first client is created, so it is set before building it
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", KEEP_ALIVE_SECONDS);
+        }
+        if (VirtualThreads.isEnabled()) {
+            // a virtual thread per response, so callbacks blocking on other requests never starve the client
+            executor = VirtualThreads.newPerTaskExecutor("api-gateway");
+        } else {
+            AtomicInteger threadCount = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(CLIENT_THREADS, runnable -> {
+                // daemon threads so that the pool never keeps the console application alive
+                Thread thread = new Thread(runnable, "api-gateway-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        int cacheEntries = Integer.getInteger(CACHE_ENTRIES_PROPERTY, 32);
+        validatedBodies = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ValidatedBody> eldest) {
+                return size() > cacheEntries;
+            }
+        };
+        limiter = new RequestLimiter(INITIAL_CONCURRENCY, 1, Integer.getInteger(MAX_CONCURRENCY_PROPERTY, 64),
+                Integer.getInteger(RATE_LIMIT_PROPERTY, 200), Integer.getInteger(RATE_BURST_PROPERTY, 100), executor);
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    /**
+     * Function to return the singleton ApiGateway instance
+     * @return firstInstance Singleton instance of ApiGateway class
+     */
+    public static synchronized ApiGateway getInstance() {
+        if (firstInstance == null) {
+            firstInstance = new ApiGateway();
+        }
+        return firstInstance;
+    }
+
+    /**
+     * Function to find the root URL to use, checking the system property first, then the environment variable
+     * @return root URL of the web service
+     */
+    private static String configuredRootUrl() {
+        String configured = System.getProperty(ROOT_URL_PROPERTY);
+        if (configured == null || configured.isBlank()) {
+            configured = System.getenv(ROOT_URL_ENV);
+        }
+        if (configured == null || configured.isBlank()) {
+            return DEFAULT_ROOT_URL;
+        }
+        // strip a trailing slash so that paths such as /booking can be appended directly
+        return configured.endsWith("/") ? configured.substring(0, configured.length() - 1) : configured;
+    }
+
+    /**
+     * Accessor for the root URL of the web service
+     * @return rootUrl Root URL for the web service
+     */
+    public String getRootUrl() {
+        return rootUrl;
+    }
+
+    /**
+     * Mutator to point the gateway at another copy of the web service, e.g. an in-process StubApiServer
+     * @param rootUrl Root URL for the web service
+     */
+    public void setRootUrl(String rootUrl) {
+        this.rootUrl = rootUrl.endsWith("/") ? rootUrl.substring(0, rootUrl.length() - 1) : rootUrl;
+        this.rootPath = pathOf(this.rootUrl);
+    }
+
+    /**
+     * Function to find the path of a root URL
+     * @param rootUrl Root URL for the web service
+     * @return path of the root URL (e.g. /api/v2), empty if it has none
+     */
+    private static String pathOf(String rootUrl) {
+        String path = URI.create(rootUrl).getRawPath();
+        return path == null ? "" : path;
+    }
+
+    /**
+     * Function to create a random key to send with a POST, so that retrying it cannot create the same record twice on a
+     * web service honouring idempotency keys. The same key must be used for every attempt of the one operation.
+     * @return new idempotency key
+     */
+    public static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Function to create a request builder for an endpoint of the web service with the authorization header and timeout already set
+     * @param path Path of the endpoint relative to the root URL (e.g. /booking)
+     * @return request builder for the endpoint
+     */
+    public HttpRequest.Builder request(String path) {
+        return request(path, Deadline.NONE);
+    }
+
+    /**
+     * Function to create a request builder for an endpoint of the web service whose timeout is the time left of an
+     * operation's deadline, if that is sooner than the usual request timeout
+     * @param path Path of the endpoint relative to the root URL (e.g. /booking)
+     * @param deadline deadline of the operation sending the request
+     * @return request builder for the endpoint
+     */
+    public HttpRequest.Builder request(String path, Deadline deadline) {
+        return HttpRequest.newBuilder(URI.create(rootUrl + path))
+                .timeout(deadline.timeout(requestTimeout))
+                .setHeader("Authorization", myApiKey);
+    }
+
+    /**
+     * Function to send a GET request to the web service. If an identical GET is already waiting for its response, no new
+     * request is sent and its response is returned instead
+     * @param path Path of the endpoint relative to the root URL
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return await(getAsync(path));
+    }
+
+    /**
+     * Function to send a GET request to the web service as part of an operation with a deadline
+     * @param path Path of the endpoint relative to the root URL
+     * @param deadline deadline of the operation
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails, including an HttpTimeoutException when the
+     * deadline runs out first
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> get(String path, Deadline deadline) throws IOException, InterruptedException {
+        return await(getAsync(path, deadline));
+    }
+
+    /**
+     * Function to send a GET request to the web service which is sent a second time if it has not been answered after
+     * the usual 95th percentile response time of its endpoint, returning whichever response arrives first. Only for
+     * reads, which are safe to send twice.
+     * @param path Path of the endpoint relative to the root URL
+     * @param deadline deadline of the operation
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails, including an HttpTimeoutException when the
+     * deadline runs out first
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> getHedged(String path, Deadline deadline) throws IOException, InterruptedException {
+        return await(getHedgedAsync(path, deadline));
+    }
+
+    /**
+     * Accessor for the number of GET requests which were answered by joining an identical request already in flight
+     * @return number of coalesced GET requests
+     */
+    public long getCoalescedGets() {
+        return coalescedGets.get();
+    }
+
+    /**
+     * Accessor for the number of GET requests answered with 304 Not Modified, whose cached body was reused
+     * @return number of revalidated GET requests
+     */
+    public long getRevalidatedGets() {
+        return revalidatedGets.get();
+    }
+
+    /**
+     * Accessor for the number of second attempts sent by hedged GETs
+     * @return number of hedged GET requests
+     */
+    public long getHedgedGets() {
+        return hedgedGets.get();
+    }
+
+    /**
+     * Accessor for the number of requests sent again after a transient failure
+     * @return number of retried requests
+     */
+    public long getRetriedRequests() {
+        return retriedRequests.get();
+    }
+
+    /**
+     * Accessor for the number of requests failed straight away because the circuit of their endpoint was open
+     * @return number of rejected requests
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.get();
+    }
+
+    /**
+     * Accessor for the number of GET requests answered with a kept body because the circuit of their endpoint was open
+     * @return number of stale GET requests
+     */
+    public long getStaleGets() {
+        return staleGets.get();
+    }
+
+    /**
+     * Accessor for the endpoints whose circuit is not closed, i.e. which are failing requests straight away or are
+     * being tried again
+     * @return state (OPEN or HALF_OPEN) of each such endpoint, keyed by endpoint
+     */
+    public Map<String, String> getOpenCircuits() {
+        Map<String, String> open = new LinkedHashMap<>();
+        breakers.forEach((endpoint, breaker) -> {
+            CircuitBreaker.State state = breaker.getState();
+            if (state != CircuitBreaker.State.CLOSED) {
+                open.put(endpoint, state.name());
+            }
+        });
+        return open;
+    }
+
+    /**
+     * Accessor for the number of requests which may currently be in flight at once, as adapted to the web service
+     * @return concurrency limit
+     */
+    public int getConcurrencyLimit() {
+        return limiter.getLimit();
+    }
+
+    /**
+     * Accessor for the number of requests sent which have not received their response yet
+     * @return number of requests in flight
+     */
+    public int getInFlightRequests() {
+        return limiter.getInFlight();
+    }
+
+    /**
+     * Accessor for the number of requests waiting for the rate or concurrency limit
+     * @return queue depth
+     */
+    public int getQueuedRequests() {
+        return limiter.getQueued();
+    }
+
+    /**
+     * Accessor for the number of times the concurrency limit backed off because of failures, throttling or rising latency
+     * @return number of back offs
+     */
+    public long getBackoffs() {
+        return limiter.getBackoffs();
+    }
+
+    /**
+     * Accessor for the smoothed latency of the latest responses of the web service
+     * @return latency in milliseconds
+     */
+    public double getLatencyMillis() {
+        return limiter.getLatencyMillis();
+    }
+
+    /**
+     * Function to check whether a GET response is a cached body which the web service confirmed is still current, so
+     * that a caller holding what it parsed from that body last time can keep using it
+     * @param response response returned by get or getAsync
+     * @return true if the web service answered 304 Not Modified
+     */
+    public static boolean isRevalidated(HttpResponse<?> response) {
+        return response instanceof RevalidatedResponse;
+    }
+
+    /**
+     * Function to add the validators of a previous response to a request, so that the web service can answer
+     * 304 Not Modified instead of sending the same body again
+     * @param builder request being built
+     * @param etag ETag of the previous response, may be null
+     * @param lastModified Last-Modified of the previous response, may be null
+     * @return the request builder
+     */
+    public static HttpRequest.Builder conditional(HttpRequest.Builder builder, String etag, String lastModified) {
+        if (etag != null) {
+            builder.setHeader("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            builder.setHeader("If-Modified-Since", lastModified);
+        }
+        return builder;
+    }
+
+    /**
+     * Function to send a GET request to the web service and read the response body as a stream, so that large
+     * collections can be parsed as they arrive instead of being held in memory as one string
+     * @param path Path of the endpoint relative to the root URL
+     * @return response returned by the web service; the caller must close its body
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<InputStream> getStream(String path) throws IOException, InterruptedException {
+        return sendStream(request(path).GET().build());
+    }
+
+    /**
+     * Function to send a request through the shared client and read the response body as a stream
+     * @param request Request to be sent
+     * @return response returned by the web service; the caller must close its body
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<InputStream> sendStream(HttpRequest request) throws IOException, InterruptedException {
+        // the permit is given back once the headers arrive, so reading a large body does not hold a request slot
+        return sendLimited(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Function to send a POST request with a JSON body to the web service
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> post(String path, String json) throws IOException, InterruptedException {
+        return send(jsonRequest(path, "POST", json));
+    }
+
+    /**
+     * Function to send a PATCH request with a JSON body to the web service
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> patch(String path, String json) throws IOException, InterruptedException {
+        return await(patchAsync(path, json));
+    }
+
+    /**
+     * Function to send a POST request with a JSON body written by RequestBodies to the web service
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body as UTF-8 bytes
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> post(String path, byte[] json) throws IOException, InterruptedException {
+        return send(jsonRequest(path, "POST", json));
+    }
+
+    /**
+     * Function to send a POST request with a JSON body written by RequestBodies and an idempotency key to the web
+     * service, retrying it after a transient failure (see postAsync)
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body as UTF-8 bytes
+     * @param idempotencyKey key from newIdempotencyKey, the same for every attempt of the operation
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> post(String path, byte[] json, String idempotencyKey) throws IOException, InterruptedException {
+        return await(postAsync(path, json, idempotencyKey));
+    }
+
+    /**
+     * Function to send a PATCH request with a JSON body written by RequestBodies to the web service
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body as UTF-8 bytes
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> patch(String path, byte[] json) throws IOException, InterruptedException {
+        return await(patchAsync(path, json));
+    }
+
+    /**
+     * Function to send a DELETE request to the web service
+     * @param path Path of the endpoint relative to the root URL
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> delete(String path) throws IOException, InterruptedException {
+        return await(deleteAsync(path));
+    }
+
+    /**
+     * Function to send a request through the shared client
+     * @param request Request to be sent
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public HttpResponse<String> send(HttpRequest request) throws IOException, InterruptedException {
+        return sendLimited(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Function to send a request through the shared client once the rate and concurrency limits allow it
+     * @param request Request to be sent
+     * @param bodyHandler handler reading the response body
+     * @param <T> type of the response body
+     * @return response returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private <T> HttpResponse<T> sendLimited(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler)
+            throws IOException, InterruptedException {
+        CircuitBreaker breaker = breakerOf(request);
+        boolean trial = allow(breaker);
+        RequestLimiter.Permit permit;
+        try {
+            permit = limiter.acquireBlocking();
+        } catch (InterruptedException e) {
+            breaker.abandoned(trial);
+            throw e;
+        }
+        RequestLimiter.Outcome outcome = RequestLimiter.Outcome.OVERLOADED;
+        try {
+            HttpResponse<T> response = client.send(request, bodyHandler);
+            outcome = outcome(response);
+            record(breaker, trial, request, response, null);
+            return response;
+        } catch (IOException e) {
+            if (e instanceof HttpTimeoutException) {
+                outcome = outcome(e);
+            }
+            record(breaker, trial, request, null, e);
+            throw e;
+        } catch (InterruptedException e) {
+            outcome = RequestLimiter.Outcome.UNUSED;
+            breaker.abandoned(trial);
+            throw e;
+        } finally {
+            limiter.release(permit, outcome);
+        }
+    }
+
+    /**
+     * Function to find the circuit breaker of the endpoint a request is sent to
+     * @param request Request to be sent
+     * @return circuit breaker of the endpoint
+     */
+    private CircuitBreaker breakerOf(HttpRequest request) {
+        String path = request.uri().getRawPath();
+        if (path.startsWith(rootPath)) {
+            path = path.substring(rootPath.length());
+        }
+        return breakers.computeIfAbsent(endpointOf(path),
+                key -> new CircuitBreaker(key, breakerFailures, breakerOpenMillis));
+    }
+
+    /**
+     * Function to check that a circuit breaker lets a request through
+     * @param breaker circuit breaker of the endpoint, which must then be told how the request went
+     * @return true if the request is the trial request of the half open circuit
+     * @throws CircuitOpenException if the circuit of the endpoint is open
+     */
+    private boolean allow(CircuitBreaker breaker) throws CircuitOpenException {
+        try {
+            return breaker.allow();
+        } catch (CircuitOpenException e) {
+            rejectedRequests.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Function to tell the circuit breaker of an endpoint how a request went. No response, or 500, 502, 503 or 504, is a
+     * failure. A request which timed out only counts as a failure if it was given the full request timeout, since a
+     * short deadline says nothing about the health of the web service; neither does 429 Too Many Requests
+     * @param breaker circuit breaker of the endpoint
+     * @param trial whether the request was the trial request of the half open circuit
+     * @param request Request which was sent
+     * @param response response returned by the web service, or null if it failed
+     * @param failure why the request failed, or null if it was answered
+     */
+    private void record(CircuitBreaker breaker, boolean trial, HttpRequest request, HttpResponse<?> response, Throwable failure) {
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            boolean shortDeadline = cause instanceof HttpTimeoutException
+                    && request.timeout().map(timeout -> timeout.compareTo(requestTimeout) < 0).orElse(false);
+            if (shortDeadline || !(cause instanceof IOException)) {
+                breaker.abandoned(trial);
+            } else {
+                breaker.failed();
+            }
+            return;
+        }
+        int status = response.statusCode();
+        if (status == 500 || status == 502 || status == 503 || status == 504) {
+            breaker.failed();
+        } else if (status == 429) {
+            breaker.abandoned(trial);
+        } else {
+            breaker.succeeded(trial);
+        }
+    }
+
+    /**
+     * Function to tell the limiter whether a response shows the web service is overloaded
+     * @param response response returned by the web service
+     * @return OVERLOADED for 429 Too Many Requests and 502, 503 or 504, ANSWERED otherwise
+     */
+    private static RequestLimiter.Outcome outcome(HttpResponse<?> response) {
+        int status = response.statusCode();
+        return status == 429 || status == 502 || status == 503 || status == 504
+                ? RequestLimiter.Outcome.OVERLOADED : RequestLimiter.Outcome.ANSWERED;
+    }
+
+    /**
+     * Function to tell the limiter whether a failed request shows the web service is overloaded. A request which timed
+     * out counts as answered after the time it was given, so that the limiter judges it by latency: a deadline shorter
+     * than the usual response time does not make it back off, a web service which stalls does
+     * @param failure why the request failed
+     * @return ANSWERED for a timeout, OVERLOADED otherwise
+     */
+    private static RequestLimiter.Outcome outcome(Throwable failure) {
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof HttpTimeoutException ? RequestLimiter.Outcome.ANSWERED : RequestLimiter.Outcome.OVERLOADED;
+    }
+
+    /**
+     * Function to send a GET request to the web service without blocking the calling thread. If an identical GET is
+     * already waiting for its response, no new request is sent and the caller shares its response. When the last body
+     * received for the URL came with an ETag or Last-Modified header, the request is conditional and a 304 Not Modified
+     * answer is returned as that body with status 200 (see isRevalidated)
+     * @param path Path of the endpoint relative to the root URL
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> getAsync(String path) {
+        return getAsync(path, Deadline.NONE);
+    }
+
+    /**
+     * Function to send a GET request to the web service as part of an operation with a deadline, without blocking the
+     * calling thread. Like getAsync(path), but the future fails with an HttpTimeoutException if it is not answered
+     * before the deadline (including time spent waiting for the rate limit). The request itself is sent with the usual
+     * timeout, since callers with other deadlines (or none) may join it
+     * @param path Path of the endpoint relative to the root URL
+     * @param deadline deadline of the operation
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> getAsync(String path, Deadline deadline) {
+        if (deadline.isExpired()) {
+            return CompletableFuture.failedFuture(deadline.expired());
+        }
+        String url = rootUrl + path;
+        CompletableFuture<HttpResponse<String>> pending = new CompletableFuture<>();
+        CompletableFuture<HttpResponse<String>> inFlight = inFlightGets.putIfAbsent(url, pending);
+        if (inFlight != null) {
+            coalescedGets.incrementAndGet();
+            // a copy, so one caller completing or cancelling its future cannot affect the others
+            return deadline.bound(inFlight.copy());
+        }
+        ValidatedBody cached;
+        synchronized (validatedBodies) {
+            cached = validatedBodies.get(url);
+        }
+        // shared by every caller joining it, so only each caller's own future is bounded by its deadline
+        HttpRequest.Builder builder = request(path).GET();
+        if (cached != null) {
+            conditional(builder, cached.etag, cached.lastModified);
+        }
+        HttpRequest request = builder.build();
+        sendAsync(request, latencyOf(path))
+                .thenApply(response -> revalidate(url, cached, response))
+                .whenComplete((response, failure) -> {
+                    // removed before completing, so a GET made after the response arrives always sends a fresh request
+                    inFlightGets.remove(url, pending);
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                            ? failure.getCause() : failure;
+                    if (cause instanceof CircuitOpenException && cached != null) {
+                        // the endpoint is failing, so the last body received is better than no answer
+                        staleGets.incrementAndGet();
+                        pending.complete(new StaleResponse(request, cached.body));
+                    } else if (failure != null) {
+                        pending.completeExceptionally(failure);
+                    } else {
+                        pending.complete(response);
+                    }
+                });
+        return deadline.bound(pending.copy());
+    }
+
+    /**
+     * Function to send a GET request which is sent a second time if it has not been answered after the usual 95th
+     * percentile response time of its endpoint, without blocking the calling thread. Whichever response arrives first
+     * is returned; the future only fails if every attempt failed. No second attempt is sent while requests are queued
+     * for the rate or concurrency limit (the web service is busy, and another request would only add to it), before
+     * the endpoint has answered enough requests to know its percentile, or if it would come after the deadline.
+     * @param path Path of the endpoint relative to the root URL
+     * @param deadline deadline of the operation
+     * @return future completed with the first response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> getHedgedAsync(String path, Deadline deadline) {
+        CompletableFuture<HttpResponse<String>> first = getAsync(path, deadline);
+        LatencyTracker latency = latencyOf(path);
+        long hedgeAfterNanos = latency.getP95Nanos();
+        if (!hedgedReads || hedgeAfterNanos < 0 || hedgeAfterNanos >= deadline.remainingNanos()) {
+            return first;
+        }
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        AtomicInteger attempts = new AtomicInteger(1);
+        BiConsumer<HttpResponse<String>, Throwable> settle = (response, failure) -> {
+            if (failure == null) {
+                result.complete(response);
+            } else if (attempts.decrementAndGet() == 0) {
+                result.completeExceptionally(failure);
+            }
+        };
+        first.whenComplete(settle);
+        CompletableFuture.delayedExecutor(hedgeAfterNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+            if (result.isDone() || deadline.isExpired() || limiter.getQueued() > 0) {
+                return;
+            }
+            attempts.incrementAndGet();
+            hedgedGets.incrementAndGet();
+            String url = rootUrl + path;
+            // not coalesced and not conditional, so it cannot share whatever is holding up the first attempt
+            deadline.bound(sendAsync(request(path, deadline).GET().build(), latency)
+                    .thenApply(response -> revalidate(url, null, response)))
+                    .whenComplete(settle);
+        });
+        return result;
+    }
+
+    /**
+     * Function to find the response times of the endpoint a path belongs to, e.g. /booking/* for /booking/{id}
+     * @param path Path of the endpoint relative to the root URL
+     * @return response times of the endpoint
+     */
+    private LatencyTracker latencyOf(String path) {
+        return getLatencies.computeIfAbsent(endpointOf(path), key -> new LatencyTracker());
+    }
+
+    /**
+     * Function to find the endpoint a path belongs to, e.g. /booking/* for /booking/{id}
+     * @param path Path of the endpoint relative to the root URL
+     * @return endpoint of the path
+     */
+    private static String endpointOf(String path) {
+        int query = path.indexOf('?');
+        String endpoint = query < 0 ? path : path.substring(0, query);
+        int second = endpoint.indexOf('/', 1);
+        if (second >= 0) {
+            endpoint = endpoint.substring(0, second) + "/*";
+        }
+        return endpoint;
+    }
+
+    /**
+     * Function to remember the body and validators of a GET response, or to swap a 304 Not Modified response for the
+     * cached body it refers to
+     * @param url URL of the request
+     * @param cached body and validators sent with the request, or null if none were sent
+     * @param response response returned by the web service
+     * @return response to give to the caller
+     */
+    private HttpResponse<String> revalidate(String url, ValidatedBody cached, HttpResponse<String> response) {
+        if (response.statusCode() == 304 && cached != null) {
+            revalidatedGets.incrementAndGet();
+            return new RevalidatedResponse(response, cached.body);
+        }
+        if (response.statusCode() == 200) {
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            synchronized (validatedBodies) {
+                if (etag == null && lastModified == null) {
+                    validatedBodies.remove(url);
+                } else {
+                    validatedBodies.put(url, new ValidatedBody(etag, lastModified, response.body()));
+                }
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Function to send a POST request with a JSON body to the web service without blocking the calling thread
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> postAsync(String path, String json) {
+        return sendAsync(jsonRequest(path, "POST", json));
+    }
+
+    /**
+     * Function to send a PATCH request with a JSON body to the web service without blocking the calling thread
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> patchAsync(String path, String json) {
+        return sendRetrying(jsonRequest(path, "PATCH", json), true);
+    }
+
+    /**
+     * Function to send a POST request with a JSON body written by RequestBodies to the web service without blocking
+     * the calling thread
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body as UTF-8 bytes
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> postAsync(String path, byte[] json) {
+        return sendAsync(jsonRequest(path, "POST", json));
+    }
+
+    /**
+     * Function to send a POST request with a JSON body written by RequestBodies and an idempotency key to the web
+     * service without blocking the calling thread, retrying it after a transient failure. Only a web service honouring
+     * idempotency keys (api.idempotencyKeys) answers a retry of a request it already carried out with the result of the
+     * first attempt; otherwise the POST is only retried when it cannot have been carried out (the connection was
+     * refused, or a 503 with Retry-After), since a response lost on the way back would create the record twice.
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body as UTF-8 bytes
+     * @param idempotencyKey key from newIdempotencyKey, the same for every attempt of the operation
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> postAsync(String path, byte[] json, String idempotencyKey) {
+        return sendRetrying(request(path)
+                .header("Content-Type", "application/json")
+                .setHeader(IDEMPOTENCY_KEY_HEADER, idempotencyKey)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(json))
+                .build(), idempotencyKeys);
+    }
+
+    /**
+     * Function to send a PATCH request with a JSON body written by RequestBodies to the web service without blocking
+     * the calling thread
+     * @param path Path of the endpoint relative to the root URL
+     * @param json JSON request body as UTF-8 bytes
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> patchAsync(String path, byte[] json) {
+        return sendRetrying(jsonRequest(path, "PATCH", json), true);
+    }
+
+    /**
+     * Function to send a DELETE request to the web service without blocking the calling thread
+     * @param path Path of the endpoint relative to the root URL
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> deleteAsync(String path) {
+        return sendRetrying(request(path).DELETE().build(), true);
+    }
+
+    /**
+     * Function to send a request through the shared client without blocking the calling thread
+     * @param request Request to be sent
+     * @return future completed with the response returned by the web service
+     */
+    public CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request) {
+        return sendAsync(request, null);
+    }
+
+    /**
+     * Function to send a request through the shared client without blocking the calling thread, recording how long
+     * the web service took to answer it
+     * @param request Request to be sent
+     * @param latency response times to record it in, or null
+     * @return future completed with the response returned by the web service
+     */
+    private CompletableFuture<HttpResponse<String>> sendAsync(HttpRequest request, LatencyTracker latency) {
+        CircuitBreaker breaker = breakerOf(request);
+        boolean trial;
+        try {
+            trial = allow(breaker);
+        } catch (CircuitOpenException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return limiter.acquire().thenCompose(permit -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, failure) -> {
+                    if (latency != null && failure == null) {
+                        latency.record(System.nanoTime() - permit.getGrantedAtNanos());
+                    }
+                    limiter.release(permit, failure != null ? outcome(failure) : outcome(response));
+                    record(breaker, trial, request, response, failure);
+                }));
+    }
+
+    /**
+     * Function to send a request without blocking the calling thread, retrying it after jittered exponential backoff
+     * when it fails transiently
+     * @param request Request to be sent
+     * @param repeatable whether the request may safely be sent again after it was carried out (PATCH, DELETE or a POST
+     * with an idempotency key the web service honours), otherwise it is only retried if it cannot have been carried out
+     * @return future completed with the last response returned by the web service
+     */
+    private CompletableFuture<HttpResponse<String>> sendRetrying(HttpRequest request, boolean repeatable) {
+        CompletableFuture<HttpResponse<String>> result = new CompletableFuture<>();
+        attempt(request, repeatable, 0, result);
+        return result;
+    }
+
+    /**
+     * Function to send one attempt of a retried request, scheduling the next attempt if it failed transiently. No
+     * permit is held while waiting, so a backing off request never takes a slot from others.
+     * @param request Request to be sent
+     * @param repeatable whether the request may safely be sent again after it was carried out
+     * @param retry number of attempts already made
+     * @param result future to complete with the outcome of the last attempt
+     */
+    private void attempt(HttpRequest request, boolean repeatable, int retry, CompletableFuture<HttpResponse<String>> result) {
+        sendAsync(request, null).whenComplete((response, failure) -> {
+            long backoffMillis = retry < retries ? backoffMillis(retry, repeatable, response, failure) : -1;
+            if (backoffMillis < 0) {
+                if (failure != null) {
+                    result.completeExceptionally(failure);
+                } else {
+                    result.complete(response);
+                }
+                return;
+            }
+            retriedRequests.incrementAndGet();
+            CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS, executor)
+                    .execute(() -> attempt(request, repeatable, retry + 1, result));
+        });
+    }
+
+    /**
+     * Function to decide whether an attempt failed transiently and how long to wait before the next one: a random time
+     * up to 100 ms doubled for every retry (at most 2 s), so that desks which failed together do not retry together,
+     * but never less than the Retry-After the web service asked for. A request which is not repeatable is only retried
+     * when the connection was refused or the web service answered 503 with a Retry-After, as it was then not carried out.
+     * @param retry number of attempts already made, less one
+     * @param repeatable whether the request may safely be sent again after it was carried out
+     * @param response response returned by the web service, or null if it failed
+     * @param failure why the attempt failed, or null if it was answered
+     * @return backoff in milliseconds, or -1 if the attempt should not be retried
+     */
+    private static long backoffMillis(int retry, boolean repeatable, HttpResponse<String> response, Throwable failure) {
+        long retryAfterMillis = 0;
+        if (failure != null) {
+            Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+            // an open circuit should fail fast, and a timed out request has already used the time it was given
+            if (!(cause instanceof IOException) || cause instanceof CircuitOpenException
+                    || cause instanceof HttpTimeoutException || !repeatable && !(cause instanceof ConnectException)) {
+                return -1;
+            }
+        } else {
+            int status = response.statusCode();
+            Optional<String> retryAfter = response.headers().firstValue("Retry-After");
+            if (repeatable ? status != 429 && status != 502 && status != 503 && status != 504
+                    : status != 503 || retryAfter.isEmpty()) {
+                return -1;
+            }
+            try {
+                retryAfterMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.orElse("0").trim()));
+            } catch (NumberFormatException e) {
+                // an HTTP date instead of seconds, the backoff alone is used
+            }
+            if (retryAfterMillis > RETRY_AFTER_MAX_MILLIS) {
+                return -1;
+            }
+        }
+        long ceiling = Math.min(RETRY_MAX_MILLIS, RETRY_BASE_MILLIS << Math.min(retry, 20));
+        return Math.max(retryAfterMillis, ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    /**
+     * Function to wait for a future returned by one of the asynchronous functions, unwrapping its failure
+     * @param future future to wait for
+     * @param <T> type of the result
+     * @return result of the future
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Function to build a request with a JSON body
+     * @param path Path of the endpoint relative to the root URL
+     * @param method HTTP method (POST or PATCH)
+     * @param json JSON request body
+     * @return the request
+     */
+    private HttpRequest jsonRequest(String path, String method, String json) {
+        return jsonRequest(path, method, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Function to build a request with a JSON body
+     * @param path Path of the endpoint relative to the root URL
+     * @param method HTTP method (POST or PATCH)
+     * @param json JSON request body as UTF-8 bytes
+     * @return the request
+     */
+    private HttpRequest jsonRequest(String path, String method, byte[] json) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(json))
+                .build();
+    }
+}
@@ -0,0 +1,56 @@
+package api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+/**
+ * Exception thrown when the web service answers a request with an error status instead of carrying it out
+ */
+public class ApiStatusException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * HTTP status code returned by the web service
+     */
+    private final int statusCode;
+
+    /**
+     * Constructor for the ApiStatusException class
+     * @param statusCode HTTP status code returned by the web service
+     * @param message error message
+     */
+    public ApiStatusException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    /**
+     * Function to create the exception for an error response, using the message the web service sent with it
+     * @param response error response returned by the web service
+     * @param action what could not be done (e.g. The booking cannot be made)
+     * @return the exception
+     */
+    public static ApiStatusException of(HttpResponse<String> response, String action) {
+        String message = null;
+        try {
+            JsonNode body = Json.readTree(response.body());
+            message = body == null ? null : body.path("message").textValue();
+        } catch (JsonProcessingException e) {
+            // not the usual {statusCode, message} error body
+        }
+        return new ApiStatusException(response.statusCode(),
+                action + ": " + (message == null ? "the web service answered " + response.statusCode() : message));
+    }
+
+    /**
+     * Accessor for the HTTP status code returned by the web service
+     * @return status code
+     */
+    public int getStatusCode() {
+        return statusCode;
+    }
+}
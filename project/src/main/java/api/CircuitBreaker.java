@@ -0,0 +1,136 @@
+package api;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Health of one endpoint of the web service (e.g. /booking/*). After failureThreshold requests in a row fail (no
+ * response, or 500, 502, 503, 504) the circuit opens and requests to the endpoint fail straight away with a
+ * CircuitOpenException. Once openMillis have passed a single trial request is let through (half open): if it succeeds
+ * the circuit closes again, otherwise it stays open for another openMillis. Requests let through before the circuit
+ * opened may still answer late, so only the trial request closes it.
+ */
+final class CircuitBreaker {
+
+    /**
+     * State of the circuit
+     */
+    enum State {
+        /**
+         * Requests are sent
+         */
+        CLOSED,
+
+        /**
+         * Requests fail straight away
+         */
+        OPEN,
+
+        /**
+         * One trial request is sent to find out whether the endpoint has recovered
+         */
+        HALF_OPEN
+    }
+
+    /**
+     * Endpoint the circuit belongs to
+     */
+    private final String endpoint;
+
+    /**
+     * Number of failures in a row which open the circuit
+     */
+    private final int failureThreshold;
+
+    /**
+     * Time (in nanoseconds) the circuit stays open before a trial request is let through
+     */
+    private final long openNanos;
+
+    /**
+     * Current state
+     */
+    private State state = State.CLOSED;
+
+    /**
+     * Number of requests which failed in a row
+     */
+    private int consecutiveFailures;
+
+    /**
+     * Time (System.nanoTime) the circuit last opened
+     */
+    private long openedAtNanos;
+
+    /**
+     * Constructor for the CircuitBreaker class
+     * @param endpoint endpoint the circuit belongs to
+     * @param failureThreshold number of failures in a row which open the circuit
+     * @param openMillis time (in milliseconds) the circuit stays open before a trial request
+     */
+    CircuitBreaker(String endpoint, int failureThreshold, long openMillis) {
+        this.endpoint = endpoint;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+    }
+
+    /**
+     * Function to check that a request may be sent to the endpoint
+     * @return true if the request is the trial request of the half open circuit, which must be passed on to succeeded
+     * and abandoned
+     * @throws CircuitOpenException if the circuit is open, or half open with its trial request still in flight
+     */
+    synchronized boolean allow() throws CircuitOpenException {
+        if (state == State.CLOSED) {
+            return false;
+        }
+        long openFor = System.nanoTime() - openedAtNanos;
+        if (state == State.OPEN && openFor >= openNanos) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        throw new CircuitOpenException(endpoint, TimeUnit.NANOSECONDS.toMillis(Math.max(0, openNanos - openFor)));
+    }
+
+    /**
+     * Function to record that the endpoint answered. An open circuit is only closed by its trial request.
+     * @param trial whether the request was the trial request
+     */
+    synchronized void succeeded(boolean trial) {
+        if (state == State.CLOSED || trial && state == State.HALF_OPEN) {
+            consecutiveFailures = 0;
+            state = State.CLOSED;
+        }
+    }
+
+    /**
+     * Function to record that a request to the endpoint failed
+     */
+    synchronized void failed() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Function to record that a request let through was not sent after all (e.g. it was interrupted), so that a trial
+     * request which never happened does not keep the circuit half open
+     * @param trial whether the request was the trial request
+     */
+    synchronized void abandoned(boolean trial) {
+        if (trial && state == State.HALF_OPEN) {
+            state = State.OPEN;
+            // the trial may be made again straight away
+            openedAtNanos = System.nanoTime() - openNanos;
+        }
+    }
+
+    /**
+     * Accessor for the state of the circuit
+     * @return the state
+     */
+    synchronized State getState() {
+        return state;
+    }
+}
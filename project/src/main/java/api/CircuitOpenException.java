@@ -0,0 +1,22 @@
+package api;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown instead of sending a request to an endpoint of the web service which has failed repeatedly, so
+ * that desks fail fast during an outage instead of each waiting for its own timeouts
+ */
+public class CircuitOpenException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor for the CircuitOpenException class
+     * @param endpoint endpoint of the web service (e.g. /booking/*)
+     * @param retryInMillis time (in milliseconds) until the endpoint is tried again
+     */
+    public CircuitOpenException(String endpoint, long retryInMillis) {
+        super("The web service is not available (" + endpoint + "), please try again in "
+                + Math.max(1, (retryInMillis + 999) / 1000) + " s");
+    }
+}
@@ -0,0 +1,130 @@
+package api;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Time budget of one operation (e.g. checking a PIN), shared by every request the operation sends, so that a stalled
+ * web service fails the operation after its budget instead of freezing the desk. Budgets are read from the system
+ * properties deadline.&lt;operation&gt;Ms (e.g. -Ddeadline.pinCheckMs=500) so that they can be tuned per site.
+ */
+public final class Deadline {
+
+    /**
+     * Deadline of operations without a budget, which only the request timeout of the gateway applies to
+     */
+    public static final Deadline NONE = new Deadline("request", Long.MAX_VALUE, Long.MAX_VALUE);
+
+    /**
+     * Name of the operation, used in the timeout message
+     */
+    private final String operation;
+
+    /**
+     * Budget of the operation in milliseconds
+     */
+    private final long budgetMillis;
+
+    /**
+     * Time (System.nanoTime) the budget runs out
+     */
+    private final long expiresAtNanos;
+
+    /**
+     * Constructor for the Deadline class
+     * @param operation name of the operation
+     * @param budgetMillis budget of the operation in milliseconds
+     * @param expiresAtNanos time (System.nanoTime) the budget runs out
+     */
+    private Deadline(String operation, long budgetMillis, long expiresAtNanos) {
+        this.operation = operation;
+        this.budgetMillis = budgetMillis;
+        this.expiresAtNanos = expiresAtNanos;
+    }
+
+    /**
+     * Function to start the budget of an operation, reading it from the deadline.&lt;operation&gt;Ms system property
+     * @param operation name of the operation (e.g. pinCheck)
+     * @param defaultMillis budget in milliseconds if the property is not set
+     * @return the deadline, starting now
+     */
+    public static Deadline budget(String operation, long defaultMillis) {
+        long budgetMillis = Long.getLong("deadline." + operation + "Ms", defaultMillis);
+        return new Deadline(operation, budgetMillis, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis));
+    }
+
+    /**
+     * Function to get the time left of the budget
+     * @return nanoseconds left, 0 if the budget has run out
+     */
+    public long remainingNanos() {
+        if (this == NONE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, expiresAtNanos - System.nanoTime());
+    }
+
+    /**
+     * Function to check whether the budget has run out
+     * @return true if no time is left
+     */
+    public boolean isExpired() {
+        return remainingNanos() == 0;
+    }
+
+    /**
+     * Function to fail the operation if its budget has run out
+     * @throws HttpTimeoutException if no time is left
+     */
+    public void check() throws HttpTimeoutException {
+        if (isExpired()) {
+            throw expired();
+        }
+    }
+
+    /**
+     * Function to get the timeout of a request sent as part of the operation: the time left, but no more than the
+     * request timeout of the gateway
+     * @param requestTimeout longest time any request may take
+     * @return the timeout
+     */
+    public Duration timeout(Duration requestTimeout) {
+        long remaining = remainingNanos();
+        return remaining < requestTimeout.toNanos() ? Duration.ofNanos(Math.max(1, remaining)) : requestTimeout;
+    }
+
+    /**
+     * Function to fail a future with an HttpTimeoutException if it does not complete within the time left, e.g. while
+     * a request waits for the rate limit
+     * @param future future to bound; it is not changed
+     * @param <T> type of the result
+     * @return future completed like the given future, or failed once the budget runs out
+     */
+    public <T> CompletableFuture<T> bound(CompletableFuture<T> future) {
+        if (this == NONE) {
+            return future;
+        }
+        CompletableFuture<T> bounded = new CompletableFuture<>();
+        future.copy().orTimeout(remainingNanos(), TimeUnit.NANOSECONDS).whenComplete((value, failure) -> {
+            if (failure == null) {
+                bounded.complete(value);
+            } else {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                bounded.completeExceptionally(cause instanceof TimeoutException ? expired() : cause);
+            }
+        });
+        return bounded;
+    }
+
+    /**
+     * Function to create the exception thrown when the budget has run out
+     * @return the exception
+     */
+    HttpTimeoutException expired() {
+        return new HttpTimeoutException(operation + " did not finish within its deadline of " + budgetMillis + " ms");
+    }
+}
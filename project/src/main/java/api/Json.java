@@ -0,0 +1,105 @@
+package api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared JSON reading for the responses of the web service. One ObjectMapper is configured once and a pre-built
+ * ObjectReader is kept per target type, so that reading a response neither creates a mapper nor introspects the type
+ * again. Responses are read into the typed models of the api.dto package where the fields are only read, and into
+ * ObjectNode trees where callers still navigate them by name. ObjectMapper and ObjectReader are thread safe.
+ */
+public final class Json {
+
+    /**
+     * Mapper shared by every reader, ignoring fields the typed models do not have
+     */
+    private static final ObjectMapper mapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * Reader of a single JSON object as a tree
+     */
+    private static final ObjectReader nodeReader = mapper.readerFor(ObjectNode.class);
+
+    /**
+     * Reader of a JSON array of objects as trees
+     */
+    private static final ObjectReader nodesReader = mapper.readerFor(ObjectNode[].class);
+
+    /**
+     * Readers of the typed models, keyed by their type
+     */
+    private static final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for the Json class
+     */
+    private Json() {}
+
+    /**
+     * Accessor for the shared mapper, e.g. to write responses or create nodes
+     * @return the mapper
+     */
+    public static ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * Function to get the reader of a type, creating it the first time
+     * @param type the type read
+     * @return the reader
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    /**
+     * Function to read a JSON value into a typed model
+     * @param json the JSON text
+     * @param type type of the model
+     * @param <T> type of the model
+     * @return the model
+     * @throws JsonProcessingException if the text is not valid JSON for the type
+     */
+    public static <T> T read(String json, Class<T> type) throws JsonProcessingException {
+        return reader(type).readValue(json);
+    }
+
+    /**
+     * Function to read a single JSON object as a tree
+     * @param json the JSON text
+     * @return the object
+     * @throws JsonProcessingException if the text is not a JSON object
+     */
+    public static ObjectNode readNode(String json) throws JsonProcessingException {
+        return nodeReader.readValue(json);
+    }
+
+    /**
+     * Function to read a JSON array of objects as trees
+     * @param json the JSON text
+     * @return the objects
+     * @throws JsonProcessingException if the text is not a JSON array of objects
+     */
+    public static ObjectNode[] readNodes(String json) throws JsonProcessingException {
+        return nodesReader.readValue(json);
+    }
+
+    /**
+     * Function to read any JSON value as a tree
+     * @param json the JSON text
+     * @return the value
+     * @throws JsonProcessingException if the text is not valid JSON
+     */
+    public static JsonNode readTree(String json) throws JsonProcessingException {
+        return mapper.readTree(json);
+    }
+}
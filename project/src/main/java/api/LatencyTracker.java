@@ -0,0 +1,62 @@
+package api;
+
+import java.util.Arrays;
+
+/**
+ * Recent response times of one endpoint of the web service (e.g. /booking/*), from which the gateway takes the 95th
+ * percentile as the delay before it hedges a GET that has not been answered yet
+ */
+final class LatencyTracker {
+
+    /**
+     * Number of recent response times kept
+     */
+    private static final int SAMPLES = 128;
+
+    /**
+     * Number of response times needed before the percentile is trusted
+     */
+    private static final int MIN_SAMPLES = 20;
+
+    /**
+     * Number of new response times after which the percentile is computed again
+     */
+    private static final int RECOMPUTE_EVERY = 16;
+
+    /**
+     * Recent response times in nanoseconds, oldest overwritten first
+     */
+    private final long[] samples = new long[SAMPLES];
+
+    /**
+     * Number of response times recorded
+     */
+    private long count;
+
+    /**
+     * 95th percentile computed from the samples, or -1 if there are not enough samples yet
+     */
+    private long p95Nanos = -1;
+
+    /**
+     * Function to record the response time of a request
+     * @param nanos response time in nanoseconds
+     */
+    synchronized void record(long nanos) {
+        samples[(int) (count % SAMPLES)] = nanos;
+        count++;
+        if (count >= MIN_SAMPLES && (p95Nanos < 0 || count % RECOMPUTE_EVERY == 0)) {
+            long[] sorted = Arrays.copyOf(samples, (int) Math.min(count, SAMPLES));
+            Arrays.sort(sorted);
+            p95Nanos = sorted[(int) Math.min(sorted.length - 1, Math.round(sorted.length * 0.95))];
+        }
+    }
+
+    /**
+     * Accessor for the 95th percentile of the recent response times
+     * @return percentile in nanoseconds, or -1 if too few requests have been answered yet
+     */
+    synchronized long getP95Nanos() {
+        return p95Nanos;
+    }
+}
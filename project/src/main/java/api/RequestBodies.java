@@ -0,0 +1,182 @@
+package api;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Writer of the JSON request bodies sent to the web service. Every body is written by a JsonGenerator of one shared
+ * JsonFactory straight into UTF-8 bytes, using the buffers the factory recycles, so values are always escaped, the
+ * result is always valid JSON and no intermediate strings are built. All functions are thread safe.
+ */
+public final class RequestBodies {
+
+    /**
+     * Factory shared by every body written (JsonFactory is thread safe once configured)
+     */
+    private static final JsonFactory factory = new JsonFactory();
+
+    /**
+     * Writer of the fields of a JSON object
+     */
+    public interface Fields {
+        void write(JsonGenerator json) throws IOException;
+    }
+
+    /**
+     * Constructor for the RequestBodies class
+     */
+    private RequestBodies() {}
+
+    /**
+     * Function to write a JSON object
+     * @param fields writer of the fields of the object
+     * @return the object as UTF-8 bytes
+     */
+    public static byte[] object(Fields fields) {
+        ByteArrayBuilder bytes = new ByteArrayBuilder(factory._getBufferRecycler());
+        try {
+            try (JsonGenerator json = factory.createGenerator(bytes, JsonEncoding.UTF8)) {
+                json.writeStartObject();
+                fields.write(json);
+                json.writeEndObject();
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // only a writer of fields can fail, the bytes are kept in memory
+            throw new UncheckedIOException(e);
+        } finally {
+            bytes.release();
+        }
+    }
+
+    /**
+     * Function to write the body of a booking to be created or changed
+     * @param customerId ID of the customer
+     * @param testingSiteId ID of the testing site
+     * @param startTime start time of the booking
+     * @param status status of the booking, or null to leave it out
+     * @param notes notes on the booking
+     * @param additionalInfo writer of the fields of additionalInfo
+     * @return the body
+     */
+    public static byte[] booking(String customerId, String testingSiteId, String startTime, String status, String notes,
+                                 Fields additionalInfo) {
+        return object(json -> {
+            json.writeStringField("customerId", customerId);
+            json.writeStringField("testingSiteId", testingSiteId);
+            json.writeStringField("startTime", startTime);
+            if (status != null) {
+                json.writeStringField("status", status);
+            }
+            json.writeStringField("notes", notes);
+            json.writeObjectFieldStart("additionalInfo");
+            additionalInfo.write(json);
+            json.writeEndObject();
+        });
+    }
+
+    /**
+     * Function to write the body of a change to the additional info of a booking only
+     * @param additionalInfo writer of the fields of additionalInfo
+     * @return the body
+     */
+    public static byte[] additionalInfo(Fields additionalInfo) {
+        return object(json -> {
+            json.writeObjectFieldStart("additionalInfo");
+            additionalInfo.write(json);
+            json.writeEndObject();
+        });
+    }
+
+    /**
+     * Additional info of a booking which only says whether it has been modified
+     * @param modified whether the booking has been modified
+     * @return writer of the fields
+     */
+    public static Fields modified(boolean modified) {
+        return json -> json.writeBooleanField("modified", modified);
+    }
+
+    /**
+     * Additional info of a home booking
+     * @param ratKitRequired whether the customer collects RAT kits from a test center
+     * @param ratKitStatus status of the RAT kits (NOT RECEIVED, RECEIVED or N/A)
+     * @param qrCode QR code given to the customer
+     * @param url url the customer connects to for testing
+     * @param modified whether the booking has been modified, or null to leave it out
+     * @return writer of the fields
+     */
+    public static Fields homeTest(boolean ratKitRequired, String ratKitStatus, String qrCode, String url, Boolean modified) {
+        return json -> {
+            json.writeBooleanField("homeTest", true);
+            json.writeBooleanField("ratKitRequired", ratKitRequired);
+            json.writeStringField("ratKitStatus", ratKitStatus);
+            json.writeStringField("qrCode", qrCode);
+            json.writeStringField("url", url);
+            if (modified != null) {
+                json.writeBooleanField("modified", modified);
+            }
+        };
+    }
+
+    /**
+     * Empty additional info
+     * @return writer of no fields
+     */
+    public static Fields none() {
+        return json -> {};
+    }
+
+    /**
+     * Function to write the body of a covid test to be created
+     * @param type test type (PCR or RAT)
+     * @param patientId ID of the resident tested
+     * @param administererId ID of the healthcare worker
+     * @param bookingId ID of the booking
+     * @param result result of the test
+     * @param status status of the test
+     * @param notes notes on the test
+     * @return the body
+     */
+    public static byte[] covidTest(String type, String patientId, String administererId, String bookingId, String result,
+                                   String status, String notes) {
+        return object(json -> {
+            json.writeStringField("type", type);
+            json.writeStringField("patientId", patientId);
+            json.writeStringField("administererId", administererId);
+            json.writeStringField("bookingId", bookingId);
+            json.writeStringField("result", result);
+            json.writeStringField("status", status);
+            json.writeStringField("notes", notes);
+            json.writeObjectFieldStart("additionalInfo");
+            json.writeEndObject();
+        });
+    }
+
+    /**
+     * Function to write the body of a login
+     * @param userName user name
+     * @param password password
+     * @return the body
+     */
+    public static byte[] login(String userName, String password) {
+        return object(json -> {
+            json.writeStringField("userName", userName);
+            json.writeStringField("password", password);
+        });
+    }
+
+    /**
+     * Function to write the body of a token verification
+     * @param jwt the token
+     * @return the body
+     */
+    public static byte[] token(String jwt) {
+        return object(json -> json.writeStringField("jwt", jwt));
+    }
+}
@@ -0,0 +1,380 @@
+package api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class which decides when the gateway may send a request to the web service. Two limits apply:
+ * <ul>
+ *     <li>a token bucket caps the request rate (requests per second, with a burst allowance), so that bursts such as
+ *     a desk describing every modified booking at once are spread out instead of being answered with 429</li>
+ *     <li>an adaptive concurrency limit caps the requests in flight. It grows by one per round trip while responses come
+ *     back about as fast as the fastest seen (additive increase) and is cut by BACKOFF_RATIO when a request fails, is
+ *     throttled (429, 502, 503, 504) or latency rises well above that (multiplicative decrease)</li>
+ * </ul>
+ * Requests over either limit wait in a queue; asynchronous callers wait without holding a thread.
+ */
+final class RequestLimiter {
+
+    /**
+     * Factor the concurrency limit is multiplied by when the web service shows it is overloaded
+     */
+    private static final double BACKOFF_RATIO = 0.75;
+
+    /**
+     * How many times slower than the fastest round trip the smoothed latency may become before the limit backs off
+     */
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    /**
+     * Rise in latency (in nanoseconds) always tolerated, so that jitter on a very fast connection is not taken as overload
+     */
+    private static final long LATENCY_SLACK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    /**
+     * Weight of the latest round trip in the smoothed latency
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Share of the gap to the smoothed latency the fastest round trip moves up by on every response, so that the limiter
+     * settles on a new normal if the network becomes slower for good
+     */
+    private static final double BASELINE_DRIFT = 1.0 / 256;
+
+    /**
+     * Lowest concurrency limit
+     */
+    private final int minLimit;
+
+    /**
+     * Highest concurrency limit
+     */
+    private final int maxLimit;
+
+    /**
+     * Current concurrency limit; fractional so that it can grow by less than one request per response
+     */
+    private double limit;
+
+    /**
+     * Number of requests sent which have not received their response yet
+     */
+    private int inFlight;
+
+    /**
+     * Requests waiting for the concurrency limit, oldest first
+     */
+    private final ArrayDeque<CompletableFuture<Permit>> waiting = new ArrayDeque<>();
+
+    /**
+     * Number of requests waiting for a token of the rate limit
+     */
+    private final AtomicInteger waitingForTokens = new AtomicInteger();
+
+    /**
+     * Fastest round trip (in nanoseconds) seen recently, the latency of the web service when it is not loaded
+     */
+    private double baselineNanos = Double.MAX_VALUE;
+
+    /**
+     * Smoothed round trip (in nanoseconds) of the latest responses
+     */
+    private double smoothedNanos;
+
+    /**
+     * Time (System.nanoTime) the concurrency limit was last cut
+     */
+    private long decreasedAtNanos;
+
+    /**
+     * Number of times the concurrency limit was cut
+     */
+    private final AtomicLong backoffs = new AtomicLong();
+
+    /**
+     * Requests allowed per second, or 0 if the rate is not limited
+     */
+    private final double ratePerSecond;
+
+    /**
+     * Most tokens the bucket holds, i.e. how many requests may be sent at once after a quiet period
+     */
+    private final double burst;
+
+    /**
+     * Tokens in the bucket when it was last refilled; negative if requests have reserved tokens not yet added
+     */
+    private double tokens;
+
+    /**
+     * Time (System.nanoTime) the bucket was last refilled
+     */
+    private long refilledAtNanos;
+
+    /**
+     * Executor running requests once their token is available
+     */
+    private final Executor executor;
+
+    /**
+     * Permission to send one request, which must be given back through release once its response or failure arrives
+     */
+    static final class Permit {
+        /**
+         * Time (System.nanoTime) the request was let through
+         */
+        private final long grantedAtNanos;
+
+        /**
+         * Number of requests in flight when it was let through, including itself
+         */
+        private final int inFlightAtGrant;
+
+        private Permit(long grantedAtNanos, int inFlightAtGrant) {
+            this.grantedAtNanos = grantedAtNanos;
+            this.inFlightAtGrant = inFlightAtGrant;
+        }
+
+        /**
+         * Accessor for the time the request was let through
+         * @return System.nanoTime when the permit was granted
+         */
+        long getGrantedAtNanos() {
+            return grantedAtNanos;
+        }
+    }
+
+    /**
+     * How a request ended, which decides how the concurrency limit changes
+     */
+    enum Outcome {
+        /**
+         * The web service answered (even with an error of the caller, e.g. 404): its latency is measured
+         */
+        ANSWERED,
+
+        /**
+         * The request failed or was throttled: the limit backs off
+         */
+        OVERLOADED,
+
+        /**
+         * The request was not sent: the limit stays as it is
+         */
+        UNUSED
+    }
+
+    /**
+     * Constructor for the RequestLimiter class
+     * @param initialLimit concurrency limit to start with
+     * @param minLimit lowest concurrency limit
+     * @param maxLimit highest concurrency limit
+     * @param ratePerSecond requests allowed per second, or 0 to not limit the rate
+     * @param burst most requests sent at once after a quiet period
+     * @param executor executor running requests once their token is available
+     */
+    RequestLimiter(int initialLimit, int minLimit, int maxLimit, double ratePerSecond, double burst, Executor executor) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.ratePerSecond = Math.max(0, ratePerSecond);
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAtNanos = System.nanoTime();
+        this.executor = executor;
+    }
+
+    /**
+     * Function to wait, without holding a thread, until a request may be sent
+     * @return future completed with the permit once the request may be sent
+     */
+    CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> permit = new CompletableFuture<>();
+        long waitNanos = reserveToken();
+        if (waitNanos <= 0) {
+            admit(permit);
+        } else {
+            waitingForTokens.incrementAndGet();
+            CompletableFuture.delayedExecutor(waitNanos, TimeUnit.NANOSECONDS, executor).execute(() -> {
+                waitingForTokens.decrementAndGet();
+                admit(permit);
+            });
+        }
+        return permit;
+    }
+
+    /**
+     * Function to block the calling thread until a request may be sent
+     * @return the permit
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    Permit acquireBlocking() throws InterruptedException {
+        CompletableFuture<Permit> permit = acquire();
+        try {
+            return permit.get();
+        } catch (InterruptedException e) {
+            if (!permit.cancel(false)) {
+                // granted while being interrupted, so the slot is handed on
+                release(permit.join(), Outcome.UNUSED);
+            } else {
+                synchronized (this) {
+                    waiting.remove(permit);
+                }
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            // never completed exceptionally
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Function to give back a permit once the response (or failure) of its request has arrived, adjusting the
+     * concurrency limit and letting waiting requests through
+     * @param permit the permit of the request
+     * @param outcome how the request ended
+     */
+    void release(Permit permit, Outcome outcome) {
+        List<CompletableFuture<Permit>> granted = new ArrayList<>();
+        long now = System.nanoTime();
+        int inFlightAtGrant;
+        synchronized (this) {
+            inFlight--;
+            if (outcome == Outcome.OVERLOADED) {
+                backOff(now);
+            } else if (outcome == Outcome.ANSWERED) {
+                measure(permit, now - permit.grantedAtNanos, now);
+            }
+            while (!waiting.isEmpty() && inFlight < (int) limit) {
+                granted.add(waiting.poll());
+                inFlight++;
+            }
+            inFlightAtGrant = inFlight;
+        }
+        // completed outside the lock, because completing runs the callers' callbacks (e.g. sending the request)
+        for (CompletableFuture<Permit> next : granted) {
+            Permit nextPermit = new Permit(now, inFlightAtGrant);
+            if (!next.complete(nextPermit)) {
+                release(nextPermit, Outcome.UNUSED);
+            }
+        }
+    }
+
+    /**
+     * Function to let a request through if the concurrency limit allows it, or queue it otherwise
+     * @param permit future to complete once the request may be sent
+     */
+    private void admit(CompletableFuture<Permit> permit) {
+        int inFlightAtGrant;
+        synchronized (this) {
+            if (!waiting.isEmpty() || inFlight >= (int) limit) {
+                waiting.add(permit);
+                return;
+            }
+            inFlightAtGrant = ++inFlight;
+        }
+        Permit granted = new Permit(System.nanoTime(), inFlightAtGrant);
+        if (!permit.complete(granted)) {
+            release(granted, Outcome.UNUSED);
+        }
+    }
+
+    /**
+     * Function to take a token from the bucket, reserving one that is not there yet if the bucket is empty
+     * @return how long (in nanoseconds) the request must wait for its token, 0 if it may be sent now
+     */
+    private synchronized long reserveToken() {
+        if (ratePerSecond == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - refilledAtNanos) * ratePerSecond / 1e9);
+        refilledAtNanos = now;
+        tokens -= 1;
+        return tokens >= 0 ? 0 : (long) (-tokens / ratePerSecond * 1e9);
+    }
+
+    /**
+     * Function to learn from the round trip of an answered request, growing the limit while latency is stable and
+     * backing off when it rises
+     * @param permit permit of the request
+     * @param roundTripNanos time (in nanoseconds) from sending the request to its response
+     * @param now current System.nanoTime
+     */
+    private void measure(Permit permit, long roundTripNanos, long now) {
+        smoothedNanos = smoothedNanos == 0 ? roundTripNanos : smoothedNanos + (roundTripNanos - smoothedNanos) * SMOOTHING;
+        if (roundTripNanos < baselineNanos) {
+            baselineNanos = roundTripNanos;
+        } else if (smoothedNanos > baselineNanos) {
+            baselineNanos += (smoothedNanos - baselineNanos) * BASELINE_DRIFT;
+        }
+        if (smoothedNanos > baselineNanos * LATENCY_TOLERANCE && smoothedNanos - baselineNanos > LATENCY_SLACK_NANOS) {
+            backOff(now);
+        } else if (permit.inFlightAtGrant * 2 >= limit) {
+            // only grown while the requests are using it, otherwise a quiet desk would end up with an untested limit
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Function to cut the concurrency limit, at most once per round trip so that the requests which were already in
+     * flight when the web service became overloaded count as one signal
+     * @param now current System.nanoTime
+     */
+    private void backOff(long now) {
+        if (decreasedAtNanos != 0 && now - decreasedAtNanos < smoothedNanos) {
+            return;
+        }
+        decreasedAtNanos = now;
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        backoffs.incrementAndGet();
+    }
+
+    /**
+     * Accessor for the current concurrency limit
+     * @return number of requests which may be in flight at once
+     */
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Accessor for the number of requests in flight
+     * @return number of requests sent which have not received their response yet
+     */
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Accessor for the number of requests waiting for the rate or concurrency limit
+     * @return queue depth
+     */
+    synchronized int getQueued() {
+        return waiting.size() + waitingForTokens.get();
+    }
+
+    /**
+     * Accessor for the number of times the concurrency limit was cut
+     * @return number of back offs
+     */
+    long getBackoffs() {
+        return backoffs.get();
+    }
+
+    /**
+     * Accessor for the smoothed round trip of the latest responses
+     * @return latency in milliseconds
+     */
+    synchronized double getLatencyMillis() {
+        return smoothedNanos / 1e6;
+    }
+}
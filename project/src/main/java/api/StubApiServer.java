@@ -0,0 +1,1106 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the fit3077 v2 web service, used to run and benchmark the application without network access.
+ * It serves the user, testing site, booking and covid test endpoints used by the application from seeded synthetic data.
+ * Every user in the seeded data has a password equal to their username, matching the console login.
+ * The collection endpoints send ETag and Last-Modified headers and answer conditional GETs with 304 Not Modified
+ * while the collection has not changed, and GET /booking?updatedSince=... only returns the bookings changed since then.
+ * A POST carrying an Idempotency-Key header is carried out once; a repeat with the same key gets the first response again.
+ */
+public class StubApiServer {
+
+    /**
+     * Path under which the endpoints are served, so that the root URL looks like the real one
+     */
+    private static final String basePath = "/api/v2";
+
+    /**
+     * Format used by the application when it sends a start time
+     */
+    private static final DateTimeFormatter inputFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Format used by the web service for timestamps (e.g. 2022-05-20T10:00:00.000Z)
+     */
+    private static final DateTimeFormatter outputFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    /**
+     * Suburbs used when seeding testing sites
+     */
+    private static final String[] SUBURBS = {"Clayton", "Caulfield", "Frankston", "Parkville", "Box Hill", "Dandenong", "Richmond", "Footscray"};
+
+    /**
+     * Statuses used when seeding bookings
+     */
+    private static final String[] STATUSES = {"INITIATED", "INITIATED", "PROCESSED", "COMPLETED", "CANCELLED"};
+
+    /**
+     * Mapper used to read and write JSON bodies
+     */
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Users keyed by their ID
+     */
+    private final Map<String, ObjectNode> users = new LinkedHashMap<>();
+
+    /**
+     * Testing sites keyed by their ID
+     */
+    private final Map<String, ObjectNode> sites = new LinkedHashMap<>();
+
+    /**
+     * Bookings keyed by their ID, stored with their customer and testingSite IDs only and expanded when served
+     */
+    private final Map<String, ObjectNode> bookings = new LinkedHashMap<>();
+
+    /**
+     * Covid tests keyed by their ID
+     */
+    private final Map<String, ObjectNode> covidTests = new LinkedHashMap<>();
+
+    /**
+     * Version of the user list
+     */
+    private final Version usersVersion = new Version("users");
+
+    /**
+     * Version of the testing site list
+     */
+    private final Version sitesVersion = new Version("sites");
+
+    /**
+     * Version of the booking list, changed whenever a booking is added, changed or removed
+     */
+    private final Version bookingsVersion = new Version("bookings");
+
+    /**
+     * Version of the covid test list, changed whenever a covid test is added
+     */
+    private final Version testsVersion = new Version("tests");
+
+    /**
+     * Version of a collection, from which its ETag and Last-Modified headers are built (guarded by the stub)
+     */
+    private static final class Version {
+        private final String name;
+        private long number = 1;
+        private long modifiedMillis = System.currentTimeMillis();
+
+        private Version(String name) {
+            this.name = name;
+        }
+
+        private void change() {
+            number++;
+            modifiedMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Random generator for seeded data, PINs and QR codes
+     */
+    private final Random random;
+
+    /**
+     * Artificial delay (in milliseconds) added to every response to imitate network latency
+     */
+    private volatile long latencyMillis;
+
+    /**
+     * Share of requests (0 to 1) which are held up by tailLatencyMillis on top of the usual latency
+     */
+    private volatile double tailFraction;
+
+    /**
+     * Extra delay (in milliseconds) of the requests which are held up, to imitate a stalled server or connection
+     */
+    private volatile long tailLatencyMillis;
+
+    /**
+     * Number of requests served since the stub was created
+     */
+    private final AtomicLong requestCount = new AtomicLong();
+
+    /**
+     * Most requests served at once before further requests are answered with 429 Too Many Requests, or 0 for no limit
+     */
+    private volatile int capacity;
+
+    /**
+     * Number of requests being served
+     */
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    /**
+     * Number of requests answered with 429 Too Many Requests because the stub was at capacity
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Share of requests (0 to 1) answered with 503 Service Unavailable, to imitate an unhealthy web service
+     */
+    private volatile double faultRate;
+
+    /**
+     * Number of requests answered with 503 Service Unavailable because of the fault rate
+     */
+    private final AtomicLong faultCount = new AtomicLong();
+
+    /**
+     * Number of most recent idempotency keys remembered
+     */
+    private static final int IDEMPOTENCY_KEYS = 10_000;
+
+    /**
+     * Idempotency key of each POST being carried out, so that send can record its response (exchange attributes are
+     * shared by every exchange of a context on older JDKs, so they cannot hold this)
+     */
+    private final Map<HttpExchange, String> idempotencyKeys = new ConcurrentHashMap<>();
+
+    /**
+     * Requests whose response is lost after they have been carried out
+     */
+    private final Set<HttpExchange> lostResponses = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Response (status and body) sent for each idempotency key, completed once the first request with the key is
+     * carried out, oldest key forgotten first
+     */
+    private final Map<String, CompletableFuture<String[]>> idempotentResponses = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<String[]>> eldest) {
+            return size() > IDEMPOTENCY_KEYS;
+        }
+    };
+
+    /**
+     * Underlying JDK HTTP server
+     */
+    private HttpServer server;
+
+    /**
+     * Executor serving the requests, so that added latency does not serialise requests
+     */
+    private ExecutorService executor;
+
+    /**
+     * Constructor for the StubApiServer class
+     * @param seed Seed for the random data generator
+     * @param siteCount Number of testing sites to create
+     * @param userCount Number of users to create (the first three are always a resident, a receptionist and a health care worker)
+     * @param bookingCount Number of bookings to create
+     * @param latencyMillis Artificial delay (in milliseconds) added to every response
+     */
+    public StubApiServer(long seed, int siteCount, int userCount, int bookingCount, long latencyMillis) {
+        this.random = new Random(seed);
+        this.latencyMillis = latencyMillis;
+        seed(siteCount, Math.max(userCount, 3), bookingCount);
+    }
+
+    /**
+     * Function to start the server on the given port
+     * @param port Port to listen on (0 picks a free port)
+     * @return root URL of the stub, to be given to ApiGateway.setRootUrl or the api.rootUrl system property
+     * @throws IOException Exception that occurs when the server socket cannot be opened
+     */
+    public String start(int port) throws IOException {
+        // without this the JDK server waits on delayed acknowledgements and adds ~40ms to every response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "stub-api");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(basePath + "/user", limited(this::handleUser));
+        server.createContext(basePath + "/testing-site", limited(this::handleTestingSite));
+        server.createContext(basePath + "/booking", limited(this::handleBooking));
+        server.createContext(basePath + "/covid-test", limited(this::handleCovidTest));
+        server.start();
+        return getRootUrl();
+    }
+
+    /**
+     * Function to stop the server
+     */
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Accessor for the root URL of the running stub
+     * @return root URL of the stub
+     */
+    public String getRootUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + basePath;
+    }
+
+    /**
+     * Mutator for the artificial delay added to every response
+     * @param latencyMillis delay in milliseconds
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Mutator for the tail latency, so that clients can be tested against a web service which sometimes stalls
+     * @param fraction share of requests (0 to 1) which are held up
+     * @param millis extra delay in milliseconds of those requests
+     */
+    public void setTailLatency(double fraction, long millis) {
+        this.tailFraction = fraction;
+        this.tailLatencyMillis = millis;
+    }
+
+    /**
+     * Mutator for the most requests served at once, so that clients can be tested against an overloaded web service
+     * @param capacity most requests served at once, or 0 for no limit
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Mutator for the share of requests answered with 503 Service Unavailable, so that clients can be tested against
+     * an unhealthy web service. Half of them fail before the request is carried out and half after it, as if the
+     * response was lost on the way back, so that a client retrying them has to avoid carrying them out twice. Only the
+     * first half carry a Retry-After header, as the web service knows it did not carry them out.
+     * @param faultRate share of requests (0 to 1) which fail
+     */
+    public void setFaultRate(double faultRate) {
+        this.faultRate = faultRate;
+    }
+
+    /**
+     * Accessor for the number of requests answered with 503 Service Unavailable because of the fault rate
+     * @return number of failed requests
+     */
+    public long getFaultCount() {
+        return faultCount.get();
+    }
+
+    /**
+     * Accessor for the number of requests answered with 429 Too Many Requests because the stub was at capacity
+     * @return number of rejected requests
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Accessor for the number of requests served, e.g. to check how many requests a benchmark really sent
+     * @return number of requests served since the stub was created
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Function to get the seeded users, e.g. to pick usernames for a benchmark
+     * @return copy of all users
+     */
+    public synchronized ArrayNode getUsers() {
+        ArrayNode array = mapper.createArrayNode();
+        users.values().forEach(user -> array.add(user.deepCopy()));
+        return array;
+    }
+
+    /**
+     * Function to get all bookings in the form returned by the web service, e.g. to pick PINs for a benchmark
+     * @return all bookings
+     */
+    public synchronized ArrayNode getBookings() {
+        ArrayNode array = mapper.createArrayNode();
+        bookings.values().forEach(booking -> array.add(expandBooking(booking)));
+        return array;
+    }
+
+    /**
+     * Function to get the bookings changed at or after a time, in the form returned by the web service
+     * @param updatedSince time in the format of the updatedAt field
+     * @return bookings whose updatedAt is not before the time
+     */
+    public synchronized ArrayNode getBookingsUpdatedSince(String updatedSince) {
+        ArrayNode array = mapper.createArrayNode();
+        for (ObjectNode booking : bookings.values()) {
+            if (text(booking, "updatedAt").compareTo(updatedSince) >= 0) {
+                array.add(expandBooking(booking));
+            }
+        }
+        return array;
+    }
+
+    /**
+     * Function to create the synthetic users, testing sites and bookings
+     * @param siteCount Number of testing sites
+     * @param userCount Number of users
+     * @param bookingCount Number of bookings
+     */
+    private void seed(int siteCount, int userCount, int bookingCount) {
+        Instant seededAt = Instant.now();
+        String now = timestamp(seededAt);
+        for (int i = 0; i < siteCount; i++) {
+            ObjectNode site = mapper.createObjectNode();
+            String suburb = SUBURBS[i % SUBURBS.length];
+            site.put("id", newId());
+            site.put("name", suburb + " Testing Site " + (i + 1));
+            site.put("description", "Synthetic testing site " + (i + 1));
+            site.put("websiteUrl", "https://example.com/site/" + (i + 1));
+            site.put("phoneNumber", "+61 3 9000 " + String.format("%04d", i));
+            ObjectNode address = site.putObject("address");
+            address.put("latitude", -37.9 + random.nextDouble() / 10);
+            address.put("longitude", 145.1 + random.nextDouble() / 10);
+            address.put("unitNumber", "");
+            address.put("street", (i + 1) + " Test Street");
+            address.put("street2", "");
+            address.put("suburb", suburb);
+            address.put("state", "VIC");
+            address.put("postcode", String.valueOf(3000 + i % 200));
+            address.putObject("additionalInfo");
+            ObjectNode info = site.putObject("additionalInfo");
+            info.put("driveThrough", random.nextBoolean());
+            info.put("walkIn", random.nextBoolean());
+            info.put("hospital", i % 4 == 0);
+            info.put("GP", i % 3 == 0);
+            info.put("homeTesting", i % 2 == 0);
+            info.put("openTime", "00:01");
+            info.put("closeTime", "23:59");
+            site.put("createdAt", now);
+            site.put("updatedAt", now);
+            sites.put(site.get("id").textValue(), site);
+        }
+
+        for (int i = 0; i < userCount; i++) {
+            ObjectNode user = mapper.createObjectNode();
+            String userName;
+            if (i == 0) {
+                userName = "resident";
+            } else if (i == 1) {
+                userName = "receptionist";
+            } else if (i == 2) {
+                userName = "healthworker";
+            } else {
+                userName = "user" + i;
+            }
+            user.put("id", newId());
+            user.put("givenName", "Given" + i);
+            user.put("familyName", "Family" + i);
+            user.put("userName", userName);
+            user.put("phoneNumber", "04" + String.format("%08d", i));
+            user.put("isCustomer", i != 1 && i != 2);
+            user.put("isReceptionist", i == 1);
+            user.put("isHealthcareWorker", i == 2);
+            user.putObject("additionalInfo");
+            users.put(user.get("id").textValue(), user);
+        }
+
+        String[] userIds = users.keySet().toArray(new String[0]);
+        String[] siteIds = sites.keySet().toArray(new String[0]);
+        for (int i = 0; i < bookingCount && siteIds.length > 0; i++) {
+            String siteId = siteIds[random.nextInt(siteIds.length)];
+            ObjectNode booking = mapper.createObjectNode();
+            booking.put("id", newId());
+            booking.put("customerId", userIds[random.nextInt(userIds.length)]);
+            booking.put("testingSiteId", siteId);
+            booking.put("startTime", timestamp(Instant.now().plus(1 + random.nextInt(72), ChronoUnit.HOURS)));
+            booking.put("smsPin", newPin());
+            booking.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+            booking.put("notes", "string");
+            ObjectNode info = booking.putObject("additionalInfo");
+            info.put("modified", random.nextInt(5) == 0);
+            if (sites.get(siteId).get("additionalInfo").get("homeTesting").booleanValue() && random.nextBoolean()) {
+                info.put("homeTest", true);
+                info.put("ratKitRequired", true);
+                info.put("ratKitStatus", "NOT RECEIVED");
+                info.put("qrCode", newQrCode());
+                info.put("url", random.nextInt(1000000000) + "@videoConferencing.com");
+            }
+            // one second apart, ending now, so that the bookings have distinct updatedAt values like real data
+            String created = timestamp(seededAt.minusSeconds(bookingCount - 1 - i));
+            booking.put("createdAt", created);
+            booking.put("updatedAt", created);
+            bookings.put(booking.get("id").textValue(), booking);
+        }
+    }
+
+    /**
+     * Function to serve /user, /user/login and /user/verify-token
+     * @param exchange HTTP exchange
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void handleUser(HttpExchange exchange) throws IOException {
+        delay();
+        String[] parts = pathParts(exchange);
+        String method = exchange.getRequestMethod();
+        if (parts.length == 0 && method.equals("GET")) {
+            if (notModified(exchange, usersVersion)) {
+                return;
+            }
+            send(exchange, 200, getUsers());
+        } else if (parts.length == 1 && parts[0].equals("login") && method.equals("POST")) {
+            JsonNode body = readBody(exchange);
+            ObjectNode user = findUser(text(body, "userName"));
+            if (user == null || !text(body, "userName").equals(text(body, "password"))) {
+                sendError(exchange, 403, "Invalid username or password");
+                return;
+            }
+            ObjectNode response = mapper.createObjectNode();
+            response.put("jwt", issueJwt(user));
+            send(exchange, 200, response);
+        } else if (parts.length == 1 && parts[0].equals("verify-token") && method.equals("POST")) {
+            JsonNode body = readBody(exchange);
+            if (verifyJwt(text(body, "jwt"))) {
+                send(exchange, 200, "");
+            } else {
+                sendError(exchange, 403, "Invalid or expired token");
+            }
+        } else {
+            sendError(exchange, 404, "Not found");
+        }
+    }
+
+    /**
+     * Function to serve /testing-site and /testing-site/{id}
+     * @param exchange HTTP exchange
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void handleTestingSite(HttpExchange exchange) throws IOException {
+        delay();
+        String[] parts = pathParts(exchange);
+        if (!exchange.getRequestMethod().equals("GET")) {
+            sendError(exchange, 405, "Method not allowed");
+        } else if (parts.length == 0) {
+            if (notModified(exchange, sitesVersion)) {
+                return;
+            }
+            ArrayNode array = mapper.createArrayNode();
+            synchronized (this) {
+                sites.values().forEach(site -> array.add(site.deepCopy()));
+            }
+            send(exchange, 200, array);
+        } else {
+            ObjectNode site;
+            synchronized (this) {
+                ObjectNode stored = sites.get(parts[0]);
+                site = stored == null ? null : stored.deepCopy();
+                String query = exchange.getRequestURI().getQuery();
+                if (site != null && query != null && query.contains("fields=bookings")) {
+                    ArrayNode siteBookings = site.putArray("bookings");
+                    for (ObjectNode booking : bookings.values()) {
+                        if (parts[0].equals(text(booking, "testingSiteId"))) {
+                            siteBookings.add(expandBookingWithoutSite(booking));
+                        }
+                    }
+                }
+            }
+            if (site == null) {
+                sendError(exchange, 404, "Testing site not found");
+            } else {
+                send(exchange, 200, site);
+            }
+        }
+    }
+
+    /**
+     * Function to serve /booking and /booking/{id}
+     * @param exchange HTTP exchange
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void handleBooking(HttpExchange exchange) throws IOException {
+        delay();
+        String[] parts = pathParts(exchange);
+        String method = exchange.getRequestMethod();
+        if (parts.length == 0 && method.equals("GET")) {
+            String updatedSince = queryParameter(exchange, "updatedSince");
+            if (updatedSince != null) {
+                send(exchange, 200, getBookingsUpdatedSince(updatedSince));
+                return;
+            }
+            if (notModified(exchange, bookingsVersion)) {
+                return;
+            }
+            send(exchange, 200, getBookings());
+        } else if (parts.length == 0 && method.equals("POST")) {
+            JsonNode body = readBody(exchange);
+            ObjectNode created;
+            synchronized (this) {
+                if (!users.containsKey(text(body, "customerId")) || !sites.containsKey(text(body, "testingSiteId"))) {
+                    created = null;
+                } else {
+                    String now = timestamp(Instant.now());
+                    ObjectNode booking = mapper.createObjectNode();
+                    booking.put("id", newId());
+                    booking.put("customerId", text(body, "customerId"));
+                    booking.put("testingSiteId", text(body, "testingSiteId"));
+                    booking.put("startTime", normaliseTime(text(body, "startTime")));
+                    booking.put("smsPin", newPin());
+                    booking.put("status", "INITIATED");
+                    booking.put("notes", text(body, "notes"));
+                    booking.set("additionalInfo", body.has("additionalInfo") ? body.get("additionalInfo") : mapper.createObjectNode());
+                    booking.put("createdAt", now);
+                    booking.put("updatedAt", now);
+                    bookings.put(booking.get("id").textValue(), booking);
+                    bookingsVersion.change();
+                    created = expandBooking(booking);
+                }
+            }
+            if (created == null) {
+                sendError(exchange, 400, "Invalid customerId or testingSiteId");
+            } else {
+                send(exchange, 201, created);
+            }
+        } else if (parts.length == 1) {
+            handleSingleBooking(exchange, parts[0], method);
+        } else {
+            sendError(exchange, 404, "Not found");
+        }
+    }
+
+    /**
+     * Function to serve GET, PATCH and DELETE on /booking/{id}
+     * @param exchange HTTP exchange
+     * @param bookingId ID of the booking
+     * @param method HTTP method of the request
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void handleSingleBooking(HttpExchange exchange, String bookingId, String method) throws IOException {
+        JsonNode body = method.equals("PATCH") ? readBody(exchange) : null;
+        ObjectNode result;
+        synchronized (this) {
+            ObjectNode booking = bookings.get(bookingId);
+            if (booking == null) {
+                result = null;
+            } else if (method.equals("GET")) {
+                result = expandBooking(booking);
+            } else if (method.equals("PATCH")) {
+                body.fields().forEachRemaining(field -> {
+                    if (field.getKey().equals("startTime")) {
+                        booking.put("startTime", normaliseTime(field.getValue().textValue()));
+                    } else if (!field.getKey().equals("id")) {
+                        booking.set(field.getKey(), field.getValue());
+                    }
+                });
+                booking.put("updatedAt", timestamp(Instant.now()));
+                bookingsVersion.change();
+                result = expandBooking(booking);
+            } else if (method.equals("DELETE")) {
+                bookings.remove(bookingId);
+                bookingsVersion.change();
+                result = mapper.createObjectNode();
+            } else {
+                sendError(exchange, 405, "Method not allowed");
+                return;
+            }
+        }
+        if (result == null) {
+            sendError(exchange, 404, "Booking not found");
+        } else if (method.equals("DELETE")) {
+            send(exchange, 204, "");
+        } else {
+            send(exchange, 200, result);
+        }
+    }
+
+    /**
+     * Function to serve /covid-test
+     * @param exchange HTTP exchange
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void handleCovidTest(HttpExchange exchange) throws IOException {
+        delay();
+        String method = exchange.getRequestMethod();
+        if (method.equals("GET")) {
+            if (notModified(exchange, testsVersion)) {
+                return;
+            }
+            ArrayNode array = mapper.createArrayNode();
+            synchronized (this) {
+                covidTests.values().forEach(test -> array.add(test.deepCopy()));
+            }
+            send(exchange, 200, array);
+        } else if (method.equals("POST")) {
+            ObjectNode test = (ObjectNode) readBody(exchange);
+            synchronized (this) {
+                String now = timestamp(Instant.now());
+                test.put("id", newId());
+                test.put("createdAt", now);
+                test.put("updatedAt", now);
+                covidTests.put(test.get("id").textValue(), test);
+                testsVersion.change();
+            }
+            send(exchange, 201, test);
+        } else {
+            sendError(exchange, 405, "Method not allowed");
+        }
+    }
+
+    /**
+     * Function to build a booking in the form returned by the web service, with nested customer and testing site
+     * @param booking stored booking
+     * @return expanded booking
+     */
+    private ObjectNode expandBooking(ObjectNode booking) {
+        ObjectNode expanded = expandBookingWithoutSite(booking);
+        ObjectNode site = sites.get(text(booking, "testingSiteId"));
+        expanded.set("testingSite", site == null ? null : site.deepCopy());
+        return expanded;
+    }
+
+    /**
+     * Function to build a booking with its nested customer, as listed under a testing site
+     * @param booking stored booking
+     * @return expanded booking
+     */
+    private ObjectNode expandBookingWithoutSite(ObjectNode booking) {
+        ObjectNode expanded = mapper.createObjectNode();
+        expanded.put("id", text(booking, "id"));
+        ObjectNode customer = users.get(text(booking, "customerId"));
+        expanded.set("customer", customer == null ? null : customer.deepCopy());
+        expanded.put("startTime", text(booking, "startTime"));
+        expanded.put("smsPin", text(booking, "smsPin"));
+        expanded.put("status", text(booking, "status"));
+        expanded.put("notes", text(booking, "notes"));
+        expanded.set("additionalInfo", booking.get("additionalInfo").deepCopy());
+        expanded.put("createdAt", text(booking, "createdAt"));
+        expanded.put("updatedAt", text(booking, "updatedAt"));
+        expanded.putArray("covidTests");
+        return expanded;
+    }
+
+    /**
+     * Function to find a user by their username
+     * @param userName username to look for
+     * @return the user, or null if there is none
+     */
+    private synchronized ObjectNode findUser(String userName) {
+        for (ObjectNode user : users.values()) {
+            if (user.get("userName").textValue().equals(userName)) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Function to issue an unsigned JWT for a user, valid for one hour
+     * @param user user who logged in
+     * @return the JWT
+     */
+    private String issueJwt(ObjectNode user) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        long now = Instant.now().getEpochSecond();
+        String header = "{\"alg\":\"none\",\"typ\":\"JWT\"}";
+        String payload = "{\"sub\":\"" + text(user, "id") + "\",\"username\":\"" + text(user, "userName")
+                + "\",\"iat\":" + now + ",\"exp\":" + (now + 3600) + "}";
+        return encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".stub";
+    }
+
+    /**
+     * Function to check that a JWT was issued by this stub and has not expired
+     * @param jwt token to check
+     * @return true if the token is valid
+     */
+    private boolean verifyJwt(String jwt) {
+        String[] parts = jwt.split("\\.");
+        if (parts.length != 3 || !parts[2].equals("stub")) {
+            return false;
+        }
+        try {
+            JsonNode payload = mapper.readTree(Base64.getUrlDecoder().decode(parts[1]));
+            return payload.get("exp").asLong() > Instant.now().getEpochSecond();
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Function to convert a start time sent by the application into the ISO format returned by the web service
+     * @param time start time as sent by the application
+     * @return start time in ISO format
+     */
+    private String normaliseTime(String time) {
+        if (time == null || time.isEmpty()) {
+            return timestamp(Instant.now());
+        }
+        try {
+            return timestamp(Instant.parse(time));
+        } catch (DateTimeParseException e) {
+            try {
+                return timestamp(LocalDateTime.parse(time, inputFormat).atZone(ZoneId.systemDefault()).toInstant());
+            } catch (DateTimeParseException ignored) {
+                return time;
+            }
+        }
+    }
+
+    /**
+     * Function to format an instant the way the web service does (e.g. 2022-05-20T10:00:00.000Z)
+     * @param instant instant to format
+     * @return formatted instant
+     */
+    private static String timestamp(Instant instant) {
+        return outputFormat.format(instant);
+    }
+
+    /**
+     * Function to create a new random ID
+     * @return new ID
+     */
+    private String newId() {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    /**
+     * Function to create a new six digit SMS PIN which is not used by another booking
+     * @return new PIN
+     */
+    private String newPin() {
+        String pin;
+        do {
+            pin = String.format("%06d", random.nextInt(1000000));
+        } while (pinInUse(pin));
+        return pin;
+    }
+
+    /**
+     * Function to check if a PIN is already used by a booking
+     * @param pin PIN to check
+     * @return true if the PIN is in use
+     */
+    private boolean pinInUse(String pin) {
+        for (ObjectNode booking : bookings.values()) {
+            if (pin.equals(text(booking, "smsPin"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Function to create a new random QR code
+     * @return new QR code
+     */
+    private String newQrCode() {
+        String characters = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789abcdefghijklmnopqrstuvxyz";
+        StringBuilder builder = new StringBuilder(12);
+        for (int i = 0; i < 12; i++) {
+            builder.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Function to read a text field of a JSON node, treating missing fields as empty
+     * @param node JSON node
+     * @param field field name
+     * @return text of the field
+     */
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? "" : value.asText();
+    }
+
+    /**
+     * Function to split the part of the request path after the endpoint into its segments
+     * @param exchange HTTP exchange
+     * @return path segments after the endpoint
+     */
+    private static String[] pathParts(HttpExchange exchange) {
+        URI uri = exchange.getRequestURI();
+        String rest = uri.getPath().substring(exchange.getHttpContext().getPath().length());
+        if (rest.startsWith("/")) {
+            rest = rest.substring(1);
+        }
+        if (rest.endsWith("/")) {
+            rest = rest.substring(0, rest.length() - 1);
+        }
+        return rest.isEmpty() ? new String[0] : rest.split("/");
+    }
+
+    /**
+     * Function to read a query parameter of the request
+     * @param exchange HTTP exchange
+     * @param name name of the parameter
+     * @return decoded value of the parameter, or null if the request does not have it
+     */
+    private static String queryParameter(HttpExchange exchange, String name) {
+        String query = exchange.getRequestURI().getQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals > 0 && parameter.substring(0, equals).equals(name)) {
+                return parameter.substring(equals + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Function to read the JSON request body
+     * @param exchange HTTP exchange
+     * @return parsed body, or an empty object if there is none
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] bytes = body.readAllBytes();
+            return bytes.length == 0 ? mapper.createObjectNode() : mapper.readTree(bytes);
+        }
+    }
+
+    /**
+     * Function to wrap a handler so that requests over the configured capacity are answered with 429 Too Many Requests,
+     * requests are failed at the configured fault rate, and POSTs with an idempotency key are only carried out once
+     * @param handler handler of the endpoint
+     * @return the wrapped handler
+     */
+    private HttpHandler limited(HttpHandler handler) {
+        return exchange -> {
+            int limit = capacity;
+            if (limit > 0 && activeRequests.incrementAndGet() > limit) {
+                activeRequests.decrementAndGet();
+                rejectedCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                sendError(exchange, 429, "Too many requests");
+                return;
+            }
+            try {
+                double faults = faultRate;
+                if (faults > 0 && ThreadLocalRandom.current().nextDouble() < faults) {
+                    faultCount.incrementAndGet();
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        exchange.getResponseHeaders().set("Retry-After", "1");
+                        sendError(exchange, 503, "Service unavailable");
+                        return;
+                    }
+                    lostResponses.add(exchange);
+                }
+                String key = exchange.getRequestMethod().equals("POST")
+                        ? exchange.getRequestHeaders().getFirst(ApiGateway.IDEMPOTENCY_KEY_HEADER) : null;
+                if (key == null) {
+                    handler.handle(exchange);
+                    return;
+                }
+                CompletableFuture<String[]> first;
+                CompletableFuture<String[]> pending = new CompletableFuture<>();
+                synchronized (idempotentResponses) {
+                    first = idempotentResponses.putIfAbsent(key, pending);
+                }
+                if (first != null) {
+                    // a repeat, possibly still racing the first request: it gets the same response once there is one
+                    String[] response = first.join();
+                    send(exchange, Integer.parseInt(response[0]), response[1]);
+                    return;
+                }
+                idempotencyKeys.put(exchange, key);
+                try {
+                    handler.handle(exchange);
+                } finally {
+                    idempotencyKeys.remove(exchange);
+                    if (!pending.isDone()) {
+                        // no response was recorded, so the key is forgotten and a repeat is carried out afresh
+                        synchronized (idempotentResponses) {
+                            idempotentResponses.remove(key, pending);
+                        }
+                        pending.complete(new String[] {"500", ""});
+                    }
+                }
+            } finally {
+                lostResponses.remove(exchange);
+                if (limit > 0) {
+                    activeRequests.decrementAndGet();
+                }
+            }
+        };
+    }
+
+    /**
+     * Function to count a request and wait for the configured artificial latency
+     */
+    private void delay() {
+        requestCount.incrementAndGet();
+        long delayMillis = latencyMillis;
+        if (tailFraction > 0 && ThreadLocalRandom.current().nextDouble() < tailFraction) {
+            delayMillis += tailLatencyMillis;
+        }
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Function to set the ETag and Last-Modified headers of a collection and to answer 304 Not Modified if the request
+     * already holds the current version. The headers are read before the collection is, so a change made in between
+     * only costs the client one extra download.
+     * @param exchange HTTP exchange
+     * @param version version of the collection
+     * @return true if the 304 response was sent and the collection must not be sent
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private boolean notModified(HttpExchange exchange, Version version) throws IOException {
+        String etag;
+        long modifiedMillis;
+        synchronized (this) {
+            etag = "\"" + version.name + "-" + version.number + "\"";
+            modifiedMillis = version.modifiedMillis;
+        }
+        exchange.getResponseHeaders().set("ETag", etag);
+        exchange.getResponseHeaders().set("Last-Modified",
+                DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(modifiedMillis).atZone(ZoneOffset.UTC)));
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+        boolean current = false;
+        if (ifNoneMatch != null) {
+            // If-Modified-Since is ignored when If-None-Match is sent
+            current = ifNoneMatch.trim().equals("*")
+                    || Arrays.stream(ifNoneMatch.split(",")).map(String::trim).anyMatch(etag::equals);
+        } else if (ifModifiedSince != null) {
+            try {
+                Instant since = Instant.from(DateTimeFormatter.RFC_1123_DATE_TIME.parse(ifModifiedSince));
+                current = modifiedMillis / 1000 <= since.getEpochSecond();
+            } catch (DateTimeParseException e) {
+                current = false;
+            }
+        }
+        if (current) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+        }
+        return current;
+    }
+
+    /**
+     * Function to send a JSON response
+     * @param exchange HTTP exchange
+     * @param status HTTP status code
+     * @param body JSON body
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        send(exchange, status, mapper.writeValueAsString(body));
+    }
+
+    /**
+     * Function to send a response
+     * @param exchange HTTP exchange
+     * @param status HTTP status code
+     * @param body response body, may be empty
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void send(HttpExchange exchange, int status, String body) throws IOException {
+        String key = idempotencyKeys.remove(exchange);
+        if (key != null) {
+            CompletableFuture<String[]> pending;
+            synchronized (idempotentResponses) {
+                pending = idempotentResponses.get(key);
+            }
+            if (pending != null) {
+                pending.complete(new String[] {Integer.toString(status), body});
+            }
+        }
+        if (lostResponses.remove(exchange)) {
+            // the request has been carried out, but the client only learns that the web service failed
+            status = 503;
+            body = "{\"statusCode\":503,\"message\":\"Service unavailable\"}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (bytes.length == 0) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+        exchange.close();
+    }
+
+    /**
+     * Function to send an error response in the same shape as the web service
+     * @param exchange HTTP exchange
+     * @param status HTTP status code
+     * @param message error message
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode error = mapper.createObjectNode();
+        error.put("statusCode", status);
+        error.put("message", message);
+        send(exchange, status, error);
+    }
+
+    /**
+     * Runs the stub as a standalone server. Configured with the system properties stub.port (default 8080),
+     * stub.latencyMs (default 0), stub.sites (default 20), stub.users (default 200), stub.bookings (default 2000),
+     * stub.capacity (default 0, no limit), stub.faultRate (default 0) and stub.seed (default 3077).
+     * @param args unused
+     * @throws IOException Exception that occurs when the server socket cannot be opened
+     */
+    public static void main(String[] args) throws IOException {
+        StubApiServer stub = new StubApiServer(
+                Long.getLong("stub.seed", 3077),
+                Integer.getInteger("stub.sites", 20),
+                Integer.getInteger("stub.users", 200),
+                Integer.getInteger("stub.bookings", 2000),
+                Long.getLong("stub.latencyMs", 0));
+        stub.setCapacity(Integer.getInteger("stub.capacity", 0));
+        stub.setFaultRate(Double.parseDouble(System.getProperty("stub.faultRate", "0")));
+        String rootUrl = stub.start(Integer.getInteger("stub.port", 8080));
+        System.out.println("Stub web service running at " + rootUrl);
+        System.out.println("Start the application with -D" + ApiGateway.ROOT_URL_PROPERTY + "=" + rootUrl
+                + " -D" + ApiGateway.IDEMPOTENCY_KEYS_PROPERTY + "=true");
+    }
+}
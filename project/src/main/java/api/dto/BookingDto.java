@@ -0,0 +1,230 @@
+package api.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable booking as returned by the api. The api returns the customer and testing site either as nested objects or
+ * only as their IDs (customerId, testingSiteId); getCustomerId and getTestingSiteId work for both.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class BookingDto {
+
+    /**
+     * ID of the booking
+     */
+    private final String id;
+
+    /**
+     * Customer the booking is for, or null if only its ID was returned
+     */
+    private final UserDto customer;
+
+    /**
+     * ID of the customer, if the customer was not returned as an object
+     */
+    private final String customerId;
+
+    /**
+     * Testing site the booking is at, or null if only its ID was returned
+     */
+    private final TestingSiteDto testingSite;
+
+    /**
+     * ID of the testing site, if the testing site was not returned as an object
+     */
+    private final String testingSiteId;
+
+    /**
+     * Time the test is booked for
+     */
+    private final String startTime;
+
+    /**
+     * SMS pin sent to the customer
+     */
+    private final String smsPin;
+
+    /**
+     * Status of the booking (e.g. INITIATED, PROCESSED, CANCELLED)
+     */
+    private final String status;
+
+    /**
+     * Notes on the booking
+     */
+    private final String notes;
+
+    /**
+     * Modification and home testing details of the booking (additionalInfo)
+     */
+    private final Info additionalInfo;
+
+    /**
+     * Time the booking was created
+     */
+    private final String createdAt;
+
+    /**
+     * Time the booking was last changed
+     */
+    private final String updatedAt;
+
+    /**
+     * Covid tests taken for the booking
+     */
+    private final List<CovidTestDto> covidTests;
+
+    /**
+     * Modification and home testing details of a booking
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static final class Info {
+        private final boolean modified;
+        private final boolean homeTest;
+        private final boolean ratKitRequired;
+        private final String ratKitStatus;
+        private final String qrCode;
+        private final String url;
+
+        @JsonCreator
+        public Info(@JsonProperty("modified") boolean modified,
+                    @JsonProperty("homeTest") boolean homeTest,
+                    @JsonProperty("ratKitRequired") boolean ratKitRequired,
+                    @JsonProperty("ratKitStatus") String ratKitStatus,
+                    @JsonProperty("qrCode") String qrCode,
+                    @JsonProperty("url") String url) {
+            this.modified = modified;
+            this.homeTest = homeTest;
+            this.ratKitRequired = ratKitRequired;
+            this.ratKitStatus = ratKitStatus;
+            this.qrCode = qrCode;
+            this.url = url;
+        }
+
+        public boolean isModified() {
+            return modified;
+        }
+
+        public boolean isHomeTest() {
+            return homeTest;
+        }
+
+        public boolean isRatKitRequired() {
+            return ratKitRequired;
+        }
+
+        public String getRatKitStatus() {
+            return ratKitStatus;
+        }
+
+        public String getQrCode() {
+            return qrCode;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+    }
+
+    /**
+     * Constructor for the BookingDto class, used by Jackson
+     * @param id ID of the booking
+     * @param customer Customer the booking is for, may be null
+     * @param customerId ID of the customer, may be null
+     * @param testingSite Testing site of the booking, may be null
+     * @param testingSiteId ID of the testing site, may be null
+     * @param startTime Time the test is booked for
+     * @param smsPin SMS pin of the booking
+     * @param status Status of the booking
+     * @param notes Notes on the booking
+     * @param additionalInfo Modification and home testing details, may be null
+     * @param createdAt Time the booking was created
+     * @param updatedAt Time the booking was last changed
+     * @param covidTests Covid tests taken for the booking, may be null
+     */
+    @JsonCreator
+    public BookingDto(@JsonProperty("id") String id,
+                      @JsonProperty("customer") UserDto customer,
+                      @JsonProperty("customerId") String customerId,
+                      @JsonProperty("testingSite") TestingSiteDto testingSite,
+                      @JsonProperty("testingSiteId") String testingSiteId,
+                      @JsonProperty("startTime") String startTime,
+                      @JsonProperty("smsPin") String smsPin,
+                      @JsonProperty("status") String status,
+                      @JsonProperty("notes") String notes,
+                      @JsonProperty("additionalInfo") Info additionalInfo,
+                      @JsonProperty("createdAt") String createdAt,
+                      @JsonProperty("updatedAt") String updatedAt,
+                      @JsonProperty("covidTests") List<CovidTestDto> covidTests) {
+        this.id = id;
+        this.customer = customer;
+        this.customerId = customerId;
+        this.testingSite = testingSite;
+        this.testingSiteId = testingSiteId;
+        this.startTime = startTime;
+        this.smsPin = smsPin;
+        this.status = status;
+        this.notes = notes;
+        this.additionalInfo = additionalInfo != null ? additionalInfo : new Info(false, false, false, null, null, null);
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.covidTests = covidTests == null ? Collections.emptyList() : Collections.unmodifiableList(covidTests);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public UserDto getCustomer() {
+        return customer;
+    }
+
+    public String getCustomerId() {
+        return customer != null ? customer.getId() : customerId;
+    }
+
+    public TestingSiteDto getTestingSite() {
+        return testingSite;
+    }
+
+    public String getTestingSiteId() {
+        return testingSite != null ? testingSite.getId() : testingSiteId;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public String getSmsPin() {
+        return smsPin;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public Info getAdditionalInfo() {
+        return additionalInfo;
+    }
+
+    public String getCreatedAt() {
+        return createdAt;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public List<CovidTestDto> getCovidTests() {
+        return covidTests;
+    }
+}
@@ -0,0 +1,114 @@
+package api.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable covid test as returned by the api
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class CovidTestDto {
+
+    /**
+     * ID of the covid test
+     */
+    private final String id;
+
+    /**
+     * Type of the test (PCR or RAT)
+     */
+    private final String type;
+
+    /**
+     * Resident tested
+     */
+    private final UserDto patient;
+
+    /**
+     * Healthcare worker who administered the test
+     */
+    private final UserDto administerer;
+
+    /**
+     * Result of the test (e.g. PENDING, POSITIVE, NEGATIVE)
+     */
+    private final String result;
+
+    /**
+     * Status of the test
+     */
+    private final String status;
+
+    /**
+     * Time of the test
+     */
+    private final String testDate;
+
+    /**
+     * Notes on the test
+     */
+    private final String notes;
+
+    /**
+     * Constructor for the CovidTestDto class, used by Jackson
+     * @param id ID of the covid test
+     * @param type Type of the test
+     * @param patient Resident tested
+     * @param administerer Healthcare worker who administered the test
+     * @param result Result of the test
+     * @param status Status of the test
+     * @param testDate Time of the test
+     * @param notes Notes on the test
+     */
+    @JsonCreator
+    public CovidTestDto(@JsonProperty("id") String id,
+                        @JsonProperty("type") String type,
+                        @JsonProperty("patient") UserDto patient,
+                        @JsonProperty("administerer") UserDto administerer,
+                        @JsonProperty("result") String result,
+                        @JsonProperty("status") String status,
+                        @JsonProperty("testDate") String testDate,
+                        @JsonProperty("notes") String notes) {
+        this.id = id;
+        this.type = type;
+        this.patient = patient;
+        this.administerer = administerer;
+        this.result = result;
+        this.status = status;
+        this.testDate = testDate;
+        this.notes = notes;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public UserDto getPatient() {
+        return patient;
+    }
+
+    public UserDto getAdministerer() {
+        return administerer;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getTestDate() {
+        return testDate;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+}
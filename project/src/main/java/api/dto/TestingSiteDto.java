@@ -0,0 +1,199 @@
+package api.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable testing site as returned by the api
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class TestingSiteDto {
+
+    /**
+     * ID of the testing site
+     */
+    private final String id;
+
+    /**
+     * Name of the testing site
+     */
+    private final String name;
+
+    /**
+     * Description of the testing site
+     */
+    private final String description;
+
+    /**
+     * Website of the testing site
+     */
+    private final String websiteUrl;
+
+    /**
+     * Phone number of the testing site
+     */
+    private final String phoneNumber;
+
+    /**
+     * Address of the testing site
+     */
+    private final Address address;
+
+    /**
+     * Facilities and opening hours of the testing site (additionalInfo)
+     */
+    private final Info additionalInfo;
+
+    /**
+     * Address of a testing site
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static final class Address {
+        private final String street;
+        private final String suburb;
+        private final String state;
+        private final String postcode;
+
+        @JsonCreator
+        public Address(@JsonProperty("street") String street,
+                       @JsonProperty("suburb") String suburb,
+                       @JsonProperty("state") String state,
+                       @JsonProperty("postcode") String postcode) {
+            this.street = street;
+            this.suburb = suburb;
+            this.state = state;
+            this.postcode = postcode;
+        }
+
+        public String getStreet() {
+            return street;
+        }
+
+        public String getSuburb() {
+            return suburb;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public String getPostcode() {
+            return postcode;
+        }
+    }
+
+    /**
+     * Facilities and opening hours of a testing site
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static final class Info {
+        private final boolean driveThrough;
+        private final boolean walkIn;
+        private final boolean hospital;
+        private final boolean gp;
+        private final boolean homeTesting;
+        private final String openTime;
+        private final String closeTime;
+
+        @JsonCreator
+        public Info(@JsonProperty("driveThrough") boolean driveThrough,
+                    @JsonProperty("walkIn") boolean walkIn,
+                    @JsonProperty("hospital") boolean hospital,
+                    @JsonProperty("GP") boolean gp,
+                    @JsonProperty("homeTesting") boolean homeTesting,
+                    @JsonProperty("openTime") String openTime,
+                    @JsonProperty("closeTime") String closeTime) {
+            this.driveThrough = driveThrough;
+            this.walkIn = walkIn;
+            this.hospital = hospital;
+            this.gp = gp;
+            this.homeTesting = homeTesting;
+            this.openTime = openTime;
+            this.closeTime = closeTime;
+        }
+
+        public boolean isDriveThrough() {
+            return driveThrough;
+        }
+
+        public boolean isWalkIn() {
+            return walkIn;
+        }
+
+        public boolean isHospital() {
+            return hospital;
+        }
+
+        public boolean isGp() {
+            return gp;
+        }
+
+        public boolean isHomeTesting() {
+            return homeTesting;
+        }
+
+        public String getOpenTime() {
+            return openTime;
+        }
+
+        public String getCloseTime() {
+            return closeTime;
+        }
+    }
+
+    /**
+     * Constructor for the TestingSiteDto class, used by Jackson
+     * @param id ID of the testing site
+     * @param name Name of the testing site
+     * @param description Description of the testing site
+     * @param websiteUrl Website of the testing site
+     * @param phoneNumber Phone number of the testing site
+     * @param address Address of the testing site
+     * @param additionalInfo Facilities and opening hours of the testing site
+     */
+    @JsonCreator
+    public TestingSiteDto(@JsonProperty("id") String id,
+                          @JsonProperty("name") String name,
+                          @JsonProperty("description") String description,
+                          @JsonProperty("websiteUrl") String websiteUrl,
+                          @JsonProperty("phoneNumber") String phoneNumber,
+                          @JsonProperty("address") Address address,
+                          @JsonProperty("additionalInfo") Info additionalInfo) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.websiteUrl = websiteUrl;
+        this.phoneNumber = phoneNumber;
+        this.address = address;
+        this.additionalInfo = additionalInfo;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getWebsiteUrl() {
+        return websiteUrl;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public Address getAddress() {
+        return address;
+    }
+
+    public Info getAdditionalInfo() {
+        return additionalInfo;
+    }
+}
@@ -0,0 +1,114 @@
+package api.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Immutable user as returned by the api, e.g. as the customer of a booking or the patient of a covid test
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public final class UserDto {
+
+    /**
+     * ID of the user
+     */
+    private final String id;
+
+    /**
+     * Given name of the user
+     */
+    private final String givenName;
+
+    /**
+     * Family name of the user
+     */
+    private final String familyName;
+
+    /**
+     * User name the user logs in with
+     */
+    private final String userName;
+
+    /**
+     * Phone number of the user
+     */
+    private final String phoneNumber;
+
+    /**
+     * Whether the user is a resident
+     */
+    private final boolean customer;
+
+    /**
+     * Whether the user is a receptionist
+     */
+    private final boolean receptionist;
+
+    /**
+     * Whether the user is a healthcare worker
+     */
+    private final boolean healthcareWorker;
+
+    /**
+     * Constructor for the UserDto class, used by Jackson
+     * @param id ID of the user
+     * @param givenName Given name of the user
+     * @param familyName Family name of the user
+     * @param userName User name of the user
+     * @param phoneNumber Phone number of the user
+     * @param customer Whether the user is a resident
+     * @param receptionist Whether the user is a receptionist
+     * @param healthcareWorker Whether the user is a healthcare worker
+     */
+    @JsonCreator
+    public UserDto(@JsonProperty("id") String id,
+                   @JsonProperty("givenName") String givenName,
+                   @JsonProperty("familyName") String familyName,
+                   @JsonProperty("userName") String userName,
+                   @JsonProperty("phoneNumber") String phoneNumber,
+                   @JsonProperty("isCustomer") boolean customer,
+                   @JsonProperty("isReceptionist") boolean receptionist,
+                   @JsonProperty("isHealthcareWorker") boolean healthcareWorker) {
+        this.id = id;
+        this.givenName = givenName;
+        this.familyName = familyName;
+        this.userName = userName;
+        this.phoneNumber = phoneNumber;
+        this.customer = customer;
+        this.receptionist = receptionist;
+        this.healthcareWorker = healthcareWorker;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getGivenName() {
+        return givenName;
+    }
+
+    public String getFamilyName() {
+        return familyName;
+    }
+
+    public String getUserName() {
+        return userName;
+    }
+
+    public String getPhoneNumber() {
+        return phoneNumber;
+    }
+
+    public boolean isCustomer() {
+        return customer;
+    }
+
+    public boolean isReceptionist() {
+        return receptionist;
+    }
+
+    public boolean isHealthcareWorker() {
+        return healthcareWorker;
+    }
+}
@@ -1,22 +1,26 @@
 package booking;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import api.ApiGateway;
+import api.ApiStatusException;
+import api.Json;
+import api.RequestBodies;
+import api.dto.BookingDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import facilities.CovidTestingSite;
 import facilities.SiteSearch;
 import users.BookableUser;
-import utilities.AccessToken;
+import users.UserDirectory;
 import utilities.Question;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
+import java.io.UncheckedIOException;
 import java.net.http.HttpResponse;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Class for users to make a booking
@@ -34,36 +38,36 @@ public class Booking {
     private String siteId;
 
     /**
-     * API key needed to access the web service
+     * URL endpoint for all bookings
      */
-    private static final String myApiKey = AccessToken.token;
+    private static final String bookingPath = "/booking";
 
     /**
-     * Root URL for the web service
+     * Time (in milliseconds) looking up a booking by its ID may take, unless set with -Ddeadline.bookingLookupMs
      */
-    private static final String rootUrl = "https://fit3077.com/api/v2";
+    public static final long BOOKING_LOOKUP_BUDGET_MILLIS = 2000;
 
     /**
-     * URL endpoint for all bookings
+     * Gateway used to send requests to the web service
      */
-    String bookingUrl = rootUrl + "/booking";
+    private final ApiGateway api = ApiGateway.getInstance();
 
     /**
-     * Http client which can be used to send requests and retrieve their response
+     * HttpResponse to retrieve responses
      */
-    private HttpClient client;
+    private HttpResponse<String> response;
+
+    private String bookingId;
 
     /**
-     * HttpRequest to send requests
+     * QR code of the last home booking made, used to collect a RAT kit
      */
-    private HttpRequest request;
+    private String qrCode;
 
     /**
-     * HttpResponse to retrieve responses
+     * URL of the last home booking made, used to connect for testing
      */
-    private HttpResponse<String> response;
-
-    private String bookingId;
+    private String url;
 
     /**
      * List of Covid Testing Sites
@@ -94,34 +98,44 @@ public class Booking {
         return bookingId;
     }
 
+    public String getQrCode() {
+        return qrCode;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
     /**
      * Function to add the booking to the list of bookings on the api
      * @throws IOException Exception that occurs when an IO operation fails
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public void addBooking() throws IOException, InterruptedException {
+        ApiGateway.await(addBookingAsync());
+    }
+
+    /**
+     * Function to add the booking to the list of bookings on the api without blocking the calling thread
+     * @return future completed with the ID of the new booking, or failed with an ApiStatusException if the api refused it
+     */
+    public CompletableFuture<String> addBookingAsync() {
         Date date = Calendar.getInstance().getTime();
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
         String strDate = dateFormat.format(date);
 
-        String bookingJsonString = "{\n" +
-                "  \"customerId\": \""+ userId + "\",\n" +
-                "  \"testingSiteId\": \""+ siteId + "\",\n" +
-                "  \"startTime\": \""+ strDate+ "\",\n" +
-                "  \"notes\": \"string\",\n" +
-                "  \"additionalInfo\": {\"modified\": " + "false" + "} " +
-                "}";
+        byte[] bookingJson = RequestBodies.booking(userId, siteId, strDate, null, "string", RequestBodies.modified(false));
 
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", myApiKey)
-                .header("Content-Type","application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(bookingJsonString))
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-        bookingId = jsonNode.get("id").textValue();
+        // one key for every attempt, so a retry after a lost response cannot book twice where the web service honours it
+        return api.postAsync(bookingPath, bookingJson, ApiGateway.newIdempotencyKey())
+                .thenApply(response -> {
+                    try {
+                        bookingId = createdBookingId(response);
+                    } catch (ApiStatusException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return bookingId;
+                });
     }
 
     /**
@@ -130,15 +144,30 @@ public class Booking {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public void addHomeBooking() throws IOException, InterruptedException {
-        String qrCode = generateQR();
-        String url = generateURL();
+        boolean ratKitRequired = Question.getInstance().interview("Would you like to collect your RAT kits from a test center ?");
+
+        addHomeBooking(ratKitRequired);
+
+        System.out.println("Your url to connect for testing is: " + url);
+        System.out.println("Your QR code to receive a RAT kit from site (if required) is: " + qrCode);
+    }
+
+    /**
+     * Adds a home booking with relevant information including RAT kit requirements to the api, without asking the user anything
+     * @param ratKitRequired whether the resident will collect RAT kits from a test center
+     * @return the booking returned by the api
+     * @throws IOException Exception that occurs when an IO operation fails, including an ApiStatusException if the api
+     * refused the booking
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public ObjectNode addHomeBooking(boolean ratKitRequired) throws IOException, InterruptedException {
+        qrCode = generateQR();
+        url = generateURL();
 
         Date date = Calendar.getInstance().getTime();
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
         String strDate = dateFormat.format(date);
 
-        boolean ratKitRequired = Question.getInstance().interview("Would you like to collect your RAT kits from a test center ?");
-
         String ratKitStatus;
 
         if(ratKitRequired){
@@ -148,32 +177,12 @@ public class Booking {
             ratKitStatus = "N/A";
         }
 
-        String homeBookingJsonString = "{\n" +
-                "  \"customerId\": \""+ userId + "\",\n" +
-                "  \"testingSiteId\": \""+ siteId + "\",\n" +
-                "  \"startTime\": \""+ strDate+ "\",\n" +
-                "  \"notes\": \"string\",\n" +
-                "  \"additionalInfo\": {\n" +
-                "       \"homeTest\": true,\n" +
-                "       \"ratKitRequired\":" + ratKitRequired + ",\n"+
-                "       \"ratKitStatus\": \"" + ratKitStatus + "\",\n"+
-                "       \"qrCode\": \"" + qrCode + "\",\n" +
-                "       \"url\": \""+ url + "\"\n" +
-                "       \"modified\": "+ "false" + "\n" +
-                "  }\n" +
-                "}";
-
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", myApiKey)
-                .header("Content-Type","application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(homeBookingJsonString))
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        byte[] homeBookingJson = RequestBodies.booking(userId, siteId, strDate, null, "string",
+                RequestBodies.homeTest(ratKitRequired, ratKitStatus, qrCode, url, false));
 
-        System.out.println("Your url to connect for testing is: " + url);
-        System.out.println("Your QR code to receive a RAT kit from site (if required) is: " + qrCode);
+        response = api.post(bookingPath, homeBookingJson, ApiGateway.newIdempotencyKey());
+        bookingId = createdBookingId(response);
+        return readNode(response.body());
     }
 
     /**
@@ -227,15 +236,11 @@ public class Booking {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public String getPinStatus(String pin, String siteId, String customerId, String userID) throws IOException, InterruptedException {
-        CovidTestingSite covidSite = new CovidTestingSite(siteId);
-        ObjectNode[] bookingNodes = covidSite.getBookings();
-        String status = "Invalid Pin";
-        for (ObjectNode node : bookingNodes) {
-            if (Objects.equals(node.get("smsPin").textValue(), pin)) {
-                status = node.get("status").textValue();
-            }
+        ObjectNode booking = PinIndex.getInstance().lookupBooking(pin);
+        if (booking == null) {
+            return "Invalid Pin";
         }
-        return status;
+        return booking.get("status").textValue();
     }
 
     /**
@@ -247,15 +252,20 @@ public class Booking {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public String getBookingIdStatus(String bookingId, String siteId) throws IOException, InterruptedException {
-        CovidTestingSite covidSite = new CovidTestingSite(siteId);
-        ObjectNode[] bookingNodes = covidSite.getBookings();
-        String status = "Invalid Booking ID";
-        for (ObjectNode node : bookingNodes) {
-            if (Objects.equals(node.get("id").textValue(), bookingId)) {
-                status = node.get("status").textValue();
-            }
-        }
-        return status;
+        return ApiGateway.await(getBookingIdStatusAsync(bookingId, siteId));
+    }
+
+    /**
+     * Function to check whether the booking ID is valid and return the booking status without blocking the calling thread
+     *
+     * @param bookingId Booking ID, generated after the booking
+     * @param siteId site id of the chosen site
+     * @return future completed with the status of the booking (i.e, initiated, processed)
+     */
+    public CompletableFuture<String> getBookingIdStatusAsync(String bookingId, String siteId) {
+        // answered from the local booking replica, which only downloads the bookings changed since it was last synced
+        return BookingReplica.getInstance().getAsync(bookingId)
+                .thenApply(booking -> booking == null ? "Invalid Booking ID" : booking.getStatus());
     }
 
     /**
@@ -266,27 +276,14 @@ public class Booking {
      * @throws ParseException
      */
     public void modifyBooking(ObjectNode booking) throws IOException, InterruptedException, ParseException {
-        Date date = Calendar.getInstance().getTime();
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
-        String strDate = dateFormat.format(date);
-        String customerId = booking.get("customer").get("id").textValue();
-        String bookingStatus = booking.get("status").textValue();
         String bookingStartTime = booking.get("startTime").textValue();
-
-        String s = bookingStartTime.replace('T',' ');
-        String finalString = s.substring(0,s.length() - 5);
-
         String currentTestingSite = booking.get("testingSite").get("name").textValue();
-        String bookingUrl = "https://fit3077.com/api/v2/booking/";
         SiteSearch searchFunction = SiteSearch.getInstance();
         Scanner sc = new Scanner(System.in);
 
-        if(strDate.compareTo(finalString) > 0 ) {
-            System.out.println("Your booking time has lapsed. Please create a new booking.");
-            return;
-        }
-        if (bookingStatus.equals("COMPLETED")) {
-            System.out.println("Your test has already been conducted. Please create a new booking.");
+        String modifyError = getModifyError(booking);
+        if (modifyError != null) {
+            System.out.println(modifyError);
         }
         else{
             boolean modifyTime = Question.getInstance().interview("Would you like to modify your booking time ?");
@@ -300,7 +297,6 @@ public class Booking {
             if(modifyTime && modifyVenue){
                 System.out.println("Your current testing time is: " + bookingStartTime);
                 Date newDate = inputDate();
-                String finalDate = dateFormat.format(newDate);
 
                 System.out.println("Your current testing venue is: " + currentTestingSite);
                 System.out.println("You can choose a new testing venue by entering a suburb name");
@@ -311,42 +307,66 @@ public class Booking {
                     System.out.println("No sites were found");
                 } else {
                     System.out.println("Select site to book:");
+                    List<String> descriptions = CovidTestingSite.getDescriptions(options);
                     for (int i = 0; i < options.size(); i++) {
-                        System.out.println((i + 1) + ") " + options.get(i).getDescription());
+                        System.out.println((i + 1) + ") " + descriptions.get(i));
                     }
                     Scanner selection = new Scanner(System.in);
                     int siteChoice = selection.nextInt();
                     // **below is the test site instance selected. you can use this and the current resident instance to make a booking
                     selectedSite = options.get(siteChoice - 1);
-                    String selectedSiteId = selectedSite.getSiteId();
-
-                    String bookingJsonString = "{\n" +
-                            "  \"customerId\": \""+ customerId + "\",\n" +
-                            "  \"testingSiteId\": \""+ selectedSiteId + "\",\n" +
-                            "  \"startTime\": \""+ finalDate+ "\",\n" +
-                            "  \"notes\": \"string\",\n" +
-                            "  \"additionalInfo\": {\"modified\": " + "true" + "} " +
-                            "}";
-
-                    client = HttpClient.newHttpClient();
-                    request = HttpRequest.newBuilder(URI.create(bookingUrl))
-                            .setHeader("Authorization", myApiKey)
-                            .header("Content-Type","application/json")
-                            .POST(HttpRequest.BodyPublishers.ofString(bookingJsonString))
-                            .build();
-
-                    response = client.send(request, HttpResponse.BodyHandlers.ofString());
-                    ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-                    String bookingId = jsonNode.get("id").textValue();
-
-                    cancelBooking(booking);
-                    System.out.println("Your booking has been successfully modified");
-                    System.out.println("Your new booking id is: " + bookingId);
+
+                    printModified(modifyBooking(booking, newDate, selectedSite.getSiteId()));
                 }
             }
         }
     }
 
+    /**
+     * Function to modify the venue and/or time of a booking without asking the user anything
+     * @param booking The booking to be modified
+     * @param newDate new start time of the booking, or null to keep the current time
+     * @param newSiteId ID of the new testing site, or null to keep the current site
+     * @return ID of the new booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     * @throws IllegalStateException if the booking can no longer be modified
+     */
+    public String modifyBooking(ObjectNode booking, Date newDate, String newSiteId) throws IOException, InterruptedException {
+        String modifyError = getModifyError(booking);
+        if (modifyError != null) {
+            throw new IllegalStateException(modifyError);
+        }
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+        String startTime = newDate == null ? booking.get("startTime").textValue() : dateFormat.format(newDate);
+        String testingSiteId = newSiteId == null ? booking.get("testingSite").get("id").textValue() : newSiteId;
+        return replaceBooking(booking, modifiedBookingJson(booking.get("customer").get("id").textValue(), testingSiteId, startTime));
+    }
+
+    /**
+     * Function to check whether a booking can still be modified
+     * @param booking The booking to be modified
+     * @return the reason why the booking cannot be modified, or null if it can
+     */
+    public static String getModifyError(ObjectNode booking) {
+        Date date = Calendar.getInstance().getTime();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+        String strDate = dateFormat.format(date);
+        String bookingStatus = booking.get("status").textValue();
+        String bookingStartTime = booking.get("startTime").textValue();
+
+        String s = bookingStartTime.replace('T',' ');
+        String finalString = s.substring(0,s.length() - 5);
+
+        if(strDate.compareTo(finalString) > 0 ) {
+            return "Your booking time has lapsed. Please create a new booking.";
+        }
+        if (bookingStatus.equals("COMPLETED")) {
+            return "Your test has already been conducted. Please create a new booking.";
+        }
+        return null;
+    }
+
     /**
      * Function to modify the start time of the booking
      * @param booking The booking whose time is to be modified
@@ -355,40 +375,29 @@ public class Booking {
      * @throws ParseException Exception that occurs when you fail to parse a String that is ought to have a special format
      */
     public void changeTime(ObjectNode booking) throws IOException, InterruptedException, ParseException {
-        Date date = Calendar.getInstance().getTime();
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
-        String customerId = booking.get("customer").get("id").textValue();
-        String testingSiteId = booking.get("testingSite").get("id").textValue();
         String bookingStartTime = booking.get("startTime").textValue();
-        String bookingUrl = "https://fit3077.com/api/v2/booking/";
 
         System.out.println("Your current testing time is: " + bookingStartTime);
         Date newDate = inputDate();
-        String finalDate = dateFormat.format(newDate);
 
-        String bookingJsonString = "{\n" +
-                "  \"customerId\": \""+ customerId + "\",\n" +
-                "  \"testingSiteId\": \""+ testingSiteId + "\",\n" +
-                "  \"startTime\": \""+ finalDate+ "\",\n" +
-                "  \"notes\": \"string\",\n" +
-                "  \"additionalInfo\": {\"modified\": " + "true" + "} " +
-                "}";
-
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", myApiKey)
-                .header("Content-Type","application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(bookingJsonString))
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-        String bookingId = jsonNode.get("id").textValue();
-
-        cancelBooking(booking);
-        System.out.println("Your booking has been successfully modified");
-        System.out.println("Your new booking id is: " + bookingId);
+        printModified(changeTime(booking, newDate));
+    }
 
+    /**
+     * Function to modify the start time of the booking without asking the user anything
+     * @param booking The booking whose time is to be modified
+     * @param newDate new start time of the booking
+     * @return ID of the new booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public String changeTime(ObjectNode booking, Date newDate) throws IOException, InterruptedException {
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+        String customerId = booking.get("customer").get("id").textValue();
+        String testingSiteId = booking.get("testingSite").get("id").textValue();
+        String finalDate = dateFormat.format(newDate);
+
+        return replaceBooking(booking, modifiedBookingJson(customerId, testingSiteId, finalDate));
     }
 
     /**
@@ -398,12 +407,7 @@ public class Booking {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public void changeVenue(ObjectNode booking) throws IOException, InterruptedException {
-        Date date = Calendar.getInstance().getTime();
-        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
-        String customerId = booking.get("customer").get("id").textValue();
-        String bookingStartTime = booking.get("startTime").textValue();
         String currentTestingSite = booking.get("testingSite").get("name").textValue();
-        String bookingUrl = "https://fit3077.com/api/v2/booking/";
         SiteSearch searchFunction = SiteSearch.getInstance();
         Scanner sc = new Scanner(System.in);
 
@@ -416,40 +420,86 @@ public class Booking {
             System.out.println("No sites were found");
         } else {
             System.out.println("Select site to book:");
+            List<String> descriptions = CovidTestingSite.getDescriptions(options);
             for (int i = 0; i < options.size(); i++) {
-                System.out.println((i + 1) + ") " + options.get(i).getDescription());
+                System.out.println((i + 1) + ") " + descriptions.get(i));
             }
             Scanner selection = new Scanner(System.in);
             int siteChoice = selection.nextInt();
             // **below is the test site instance selected. you can use this and the current resident instance to make a booking
             selectedSite = options.get(siteChoice - 1);
-            String selectedSiteId = selectedSite.getSiteId();
-
-            String bookingJsonString = "{\n" +
-                    "  \"customerId\": \""+ customerId + "\",\n" +
-                    "  \"testingSiteId\": \""+ selectedSiteId + "\",\n" +
-                    "  \"startTime\": \""+ bookingStartTime+ "\",\n" +
-                    "  \"notes\": \"string\",\n" +
-                    "  \"additionalInfo\": {\"modified\": " + "true" + "} " +
-                    "}";
-
-            client = HttpClient.newHttpClient();
-            request = HttpRequest.newBuilder(URI.create(bookingUrl))
-                    .setHeader("Authorization", myApiKey)
-                    .header("Content-Type","application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(bookingJsonString))
-                    .build();
-
-            response = client.send(request, HttpResponse.BodyHandlers.ofString());
-            ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-            String bookingId = jsonNode.get("id").textValue();
-
-            cancelBooking(booking);
-            System.out.println("Your booking has been successfully modified");
-            System.out.println("Your new booking id is: " + bookingId);
+
+            printModified(changeVenue(booking, selectedSite.getSiteId()));
         }
     }
 
+    /**
+     * Function to modify the venue of the booking without asking the user anything
+     * @param booking The booking whose venue is to be modified
+     * @param newSiteId ID of the new testing site
+     * @return ID of the new booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public String changeVenue(ObjectNode booking, String newSiteId) throws IOException, InterruptedException {
+        String customerId = booking.get("customer").get("id").textValue();
+        String bookingStartTime = booking.get("startTime").textValue();
+
+        return replaceBooking(booking, modifiedBookingJson(customerId, newSiteId, bookingStartTime));
+    }
+
+    /**
+     * Function to build the JSON body of a modified booking
+     * @param customerId ID of the customer
+     * @param testingSiteId ID of the testing site
+     * @param startTime start time of the booking
+     * @return JSON body of the booking
+     */
+    private static byte[] modifiedBookingJson(String customerId, String testingSiteId, String startTime) {
+        return RequestBodies.booking(customerId, testingSiteId, startTime, null, "string", RequestBodies.modified(true));
+    }
+
+    /**
+     * Function to tell the user that their booking was modified
+     * @param newBookingId ID of the new booking
+     */
+    private static void printModified(String newBookingId) {
+        System.out.println("Your booking has been successfully modified");
+        System.out.println("Your new booking id is: " + newBookingId);
+    }
+
+    /**
+     * Function to create the modified booking and then cancel the old booking. The old booking is only cancelled once
+     * the api has created the new one, so a modification the api refuses leaves the old booking as it was, and the new
+     * booking is deleted again if the old one cannot be cancelled, so the customer is never left with both
+     * @param oldBooking The booking being replaced
+     * @param newBookingJson JSON body of the new booking
+     * @return ID of the new booking
+     * @throws IOException Exception that occurs when an IO operation fails, including an ApiStatusException if the api
+     * refused the new booking or the cancellation of the old one
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     * @throws IllegalStateException if the old booking can no longer be cancelled
+     */
+    private String replaceBooking(ObjectNode oldBooking, byte[] newBookingJson) throws IOException, InterruptedException {
+        String cancelError = getCancelError(oldBooking);
+        if (cancelError != null) {
+            throw new IllegalStateException(cancelError);
+        }
+        String newBookingId = createdBookingId(api.post(bookingPath, newBookingJson, ApiGateway.newIdempotencyKey()));
+        try {
+            cancelBooking(oldBooking);
+        } catch (IOException | RuntimeException e) {
+            try {
+                ApiGateway.await(delete_bookingAsync(newBookingId));
+            } catch (IOException | RuntimeException undo) {
+                e.addSuppressed(undo);
+            }
+            throw e;
+        }
+        bookingId = newBookingId;
+        return newBookingId;
+    }
+
     /**
      * Function to get date and time input from the user
      * @return Date entered by the user
@@ -470,46 +520,65 @@ public class Booking {
     /**
      * Function to cancel a booking
      * @param booking Booking to be cancelled
-     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws IOException Exception that occurs when an IO operation fails, including an ApiStatusException if the api
+     * refused the cancellation
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     * @throws IllegalStateException if the booking can no longer be cancelled
      */
     public void cancelBooking(ObjectNode booking) throws IOException, InterruptedException {
+        ApiGateway.await(cancelBookingAsync(booking));
+    }
+
+    /**
+     * Function to cancel a booking without blocking the calling thread
+     * @param booking Booking to be cancelled
+     * @return future completed once the api has cancelled the booking, or failed with an IllegalStateException if the
+     * booking can no longer be cancelled or an ApiStatusException if the api refused the cancellation
+     */
+    public CompletableFuture<Void> cancelBookingAsync(ObjectNode booking) {
         Date date = Calendar.getInstance().getTime();
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
         String strDate = dateFormat.format(date);
-        String bookingStatus = booking.get("status").textValue();
         String customerId = booking.get("customer").get("id").textValue();
         String testingSiteId = booking.get("testingSite").get("id").textValue();
         String bookingId = booking.get("id").textValue();
+
+        String cancelError = getCancelError(booking);
+        if (cancelError != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(cancelError));
+        }
+        else{
+            byte[] bookingJson = RequestBodies.booking(customerId, testingSiteId, strDate, "CANCELLED",
+                    "Booking has been cancelled", RequestBodies.modified(true));
+
+            return api.patchAsync(bookingPath + "/" + bookingId, bookingJson).thenAccept(response -> {
+                if (response.statusCode() / 100 != 2) {
+                    throw new UncheckedIOException(ApiStatusException.of(response, "The booking cannot be cancelled"));
+                }
+                indexResponse(response);
+            });
+        }
+    }
+
+    /**
+     * Function to check whether a booking can still be cancelled
+     * @param booking Booking to be cancelled
+     * @return the reason why the booking cannot be cancelled, or null if it can
+     */
+    public static String getCancelError(ObjectNode booking) {
+        Date date = Calendar.getInstance().getTime();
+        DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+        String strDate = dateFormat.format(date);
+        String bookingStatus = booking.get("status").textValue();
         String bookingStartTime = booking.get("startTime").textValue();
-        String bookingUrl = "https://fit3077.com/api/v2/booking/" + bookingId;
 
         if(strDate.compareTo(bookingStartTime) > 0 ) {
-            System.out.println("Your booking time has lapsed. Please create a new booking.");
-            return;
+            return "Your booking time has lapsed. Please create a new booking.";
         }
         if (bookingStatus.equals("COMPLETED")) {
-            System.out.println("Your test has already been conducted. Please create a new booking.");
-            return;
-        }
-        else{
-            String bookingString = "{\n" +
-                    "  \"customerId\": \"" + customerId + "\",\n" +
-                    "  \"testingSiteId\": \"" + testingSiteId + "\",\n" +
-                    "  \"startTime\": \"" + strDate + "\",\n" +
-                    "  \"status\": \"CANCELLED\",\n" +
-                    "  \"notes\": \"Booking has been cancelled\",\n" +
-                    "  \"additionalInfo\": {\"modified\": " + "true" + "} " +
-                    "}";
-
-            client = HttpClient.newHttpClient();
-            request = HttpRequest.newBuilder(URI.create(bookingUrl)) // Return a JWT so we can use it in Part 5 later.
-                    .setHeader("Authorization", AccessToken.token)
-                    .header("Content-Type","application/json") // This header needs to be set when sending a JSON request body.
-                    .method("PATCH", HttpRequest.BodyPublishers.ofString(bookingString))
-                    .build();
-            client.send(request, HttpResponse.BodyHandlers.ofString());
+            return "Your test has already been conducted. Please create a new booking.";
         }
+        return null;
     }
 
     /**
@@ -527,7 +596,6 @@ public class Booking {
         String pastBookingStartTime = pastBooking.get("startTime").textValue();
         String currentBookingStartTime = currentBooking.get("startTime").textValue();
         String pastTestSiteId = pastBooking.get("testingSite").get("id").textValue();
-        String pastBookingUrl = "https://fit3077.com/api/v2/booking/" + pastBookingId;
         Date date = Calendar.getInstance().getTime();
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
         String strDate = dateFormat.format(date);
@@ -540,61 +608,172 @@ public class Booking {
             System.out.println("Your booking time has lapsed. Please create a new booking.");
             return;
         }
-        cancelBooking(currentBooking);
+        byte[] pastBookingJson = RequestBodies.booking(pastBookingCustomerId, pastTestSiteId, pastBookingStartTime,
+                "INITIATED", "", RequestBodies.modified(true));
 
-        String pastBookingString = "{\n" +
-                "  \"customerId\": \"" + pastBookingCustomerId + "\",\n" +
-                "  \"testingSiteId\": \"" + pastTestSiteId + "\",\n" +
-                "  \"startTime\": \"" + pastBookingStartTime + "\",\n" +
-                "  \"status\": \"INITIATED\",\n" +
-                "  \"notes\": \"\",\n" +
-                "  \"additionalInfo\": {\"modified\": " + "true" + "} " +
-                "}";
-
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(pastBookingUrl)) // Return a JWT so we can use it in Part 5 later.
-                .setHeader("Authorization", AccessToken.token)
-                .header("Content-Type","application/json") // This header needs to be set when sending a JSON request body.
-                .method("PATCH", HttpRequest.BodyPublishers.ofString(pastBookingString))
-                .build();
-        client.send(request, HttpResponse.BodyHandlers.ofString());
+        // the current booking is only cancelled once the past booking has been restored
+        HttpResponse<String> restored = api.patch(bookingPath + "/" + pastBookingId, pastBookingJson);
+        if (restored.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(restored, "The booking cannot be restored");
+        }
+        indexResponse(restored);
+        cancelBooking(currentBooking);
         System.out.println("Your booking has been successfully modified");
     }
 
+    /**
+     * Function to get a description of a booking
+     * @param bookingId ID of the booking
+     * @return description of the booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
     public String display_booking_description(String bookingId) throws IOException, InterruptedException {
-        String bookingUrl = "https://fit3077.com/api/v2/booking/" + bookingId;
+        return ApiGateway.await(display_booking_descriptionAsync(bookingId));
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
+    /**
+     * Function to get a description of a booking without blocking the calling thread
+     * @param bookingId ID of the booking
+     * @return future completed with the description of the booking
+     */
+    public CompletableFuture<String> display_booking_descriptionAsync(String bookingId) {
+        return api.getAsync(bookingPath + "/" + bookingId)
+                .thenApply(response -> describeBooking(bookingId, readBooking(response.body())));
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode booking = new ObjectMapper().readValue(response.body(), ObjectNode.class);
+    /**
+     * Function to build the description of a booking returned by the api
+     * @param bookingId ID of the booking
+     * @param booking booking returned by the api
+     * @return description of the booking
+     */
+    private static String describeBooking(String bookingId, BookingDto booking) {
+        return describeBooking(bookingId, booking.getCustomer().getId(),
+                booking.getCustomer().getGivenName() + " " + booking.getCustomer().getFamilyName(),
+                booking.getTestingSite().getName(), booking.getStatus(), booking.getUpdatedAt());
+    }
+
+    /**
+     * Function to build the description of a booking held by the local booking replica, without downloading it. The
+     * names of the customer and testing site come from the cached user directory and site catalog.
+     * @param booking booking held by the replica
+     * @return description of the booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public static String describeBooking(BookingRecord booking) throws IOException, InterruptedException {
+        ObjectNode customer = booking.getCustomerId() == null ? null
+                : UserDirectory.getInstance().findById(booking.getCustomerId());
+        ObjectNode site = booking.getSiteId() == null ? null
+                : SiteSearch.getInstance().getCatalog().getSite(booking.getSiteId());
+        String customerName = customer == null ? null
+                : customer.path("givenName").textValue() + " " + customer.path("familyName").textValue();
+        String siteName = site == null ? null : site.path("name").textValue();
+        return describeBooking(booking.getId(), booking.getCustomerId(), customerName, siteName, booking.getStatus(),
+                booking.getUpdatedAt());
+    }
+
+    /**
+     * Function to lay out the description of a booking
+     * @param bookingId ID of the booking
+     * @param customerId ID of the customer
+     * @param customerName given and family name of the customer
+     * @param siteName name of the testing site
+     * @param status status of the booking
+     * @param updatedAt time the booking was last changed
+     * @return description of the booking
+     */
+    private static String describeBooking(String bookingId, String customerId, String customerName, String siteName,
+                                          String status, String updatedAt) {
         String description = "Booking ID: " + bookingId + "\n" +
-                "Customer ID: " + booking.get("customer").get("id").textValue() + "\n" +
-                "Customer Name: " + booking.get("customer").get("givenName").textValue() + " "+booking.get("customer").get("familyName").textValue() + "\n" +
-                "Testing Site: " + booking.get("testingSite").get("name").textValue() + "\n" +
-                "Booking Status: " + booking.get("status").textValue()+ "\n" +
-                "Last Updated: " + booking.get("updatedAt").textValue();
+                "Customer ID: " + customerId + "\n" +
+                "Customer Name: " + customerName + "\n" +
+                "Testing Site: " + siteName + "\n" +
+                "Booking Status: " + status + "\n" +
+                "Last Updated: " + updatedAt;
 
         return description;
     }
 
+    /**
+     * Function to delete a booking
+     * @param bookingId ID of the booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
     public void delete_booking(String bookingId) throws IOException, InterruptedException {
-        String bookingUrl = "https://fit3077.com/api/v2/booking/" + bookingId;
+        ApiGateway.await(delete_bookingAsync(bookingId));
+        System.out.println("Booking successfully deleted");
+    }
+
+    /**
+     * Function to delete a booking without blocking the calling thread
+     * @param bookingId ID of the booking
+     * @return future completed once the api has deleted the booking, or failed with an ApiStatusException if the api
+     * refused to delete it
+     */
+    public CompletableFuture<Void> delete_bookingAsync(String bookingId) {
+        return api.deleteAsync(bookingPath + "/" + bookingId).thenAccept(response -> {
+            if (response.statusCode() / 100 != 2) {
+                throw new UncheckedIOException(ApiStatusException.of(response, "The booking cannot be deleted"));
+            }
+            BookingEvents.deleted(bookingId);
+        });
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .DELETE()
-                .build();
+    /**
+     * Function to keep the local booking indexes up to date with a booking returned by the api after it was created or changed
+     * @param response response of the api
+     */
+    static void indexResponse(HttpResponse<String> response) {
+        if (response.statusCode() / 100 == 2 && !response.body().isEmpty()) {
+            BookingEvents.changed(readBooking(response.body()));
+        }
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        System.out.println("Booking successfully deleted");
+    /**
+     * Function to read the booking the api created, keeping the local booking indexes up to date with it
+     * @param response response of the api to the POST
+     * @return ID of the new booking
+     * @throws ApiStatusException if the api did not create the booking
+     */
+    private static String createdBookingId(HttpResponse<String> response) throws ApiStatusException {
+        if (response.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(response, "The booking cannot be made");
+        }
+        BookingDto created = readBooking(response.body());
+        if (created.getId() == null) {
+            throw new ApiStatusException(502, "The booking cannot be made: the web service did not return the new booking");
+        }
+        BookingEvents.changed(created);
+        return created.getId();
+    }
+
+    /**
+     * Function to read a single JSON object returned by the api
+     * @param body response body
+     * @return the parsed object
+     */
+    private static ObjectNode readNode(String body) {
+        try {
+            return Json.readNode(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Function to read a single booking returned by the api into its typed model
+     * @param body response body
+     * @return the booking
+     */
+    private static BookingDto readBooking(String body) {
+        try {
+            return Json.read(body, BookingDto.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }
@@ -0,0 +1,203 @@
+package booking;
+
+import api.dto.BookingDto;
+import com.fasterxml.jackson.databind.JsonNode;
+import facilities.WaitingTimeTable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Class which passes every booking created, changed or deleted by this application on to the local indexes
+ * (waiting time table and booking replica, which also serves the pin lookups), so that they stay up to date without downloading the booking list again.
+ * It also remembers these changes for a while, so that a booking list downloaded before a change (e.g. by a background
+ * rebuild which was slower than the change) can be brought up to date before it replaces what the indexes hold. Changes
+ * are passed on, and downloads brought up to date and applied, under one lock, so that no change can fall in between.
+ */
+public class BookingEvents {
+
+    /**
+     * How long (in milliseconds) a change is remembered, which must be longer than a download of the booking list takes
+     */
+    private static final long RECENT_WRITE_MILLIS = 120_000;
+
+    /**
+     * Changes made by this application, keyed by booking ID
+     */
+    private static final Map<String, Write> recentWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Lock held while a change is passed on to the indexes and while a download is brought up to date and applied to an
+     * index (a lock rather than synchronized, so that virtual threads waiting on it do not pin their carrier thread)
+     */
+    private static final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Change made by this application to a booking
+     */
+    private static final class Write {
+        /**
+         * The booking as returned by the api after the change, or null if the booking was deleted
+         */
+        private final BookingRecord booking;
+
+        /**
+         * Time (in milliseconds) of the change
+         */
+        private final long atMillis;
+
+        private Write(BookingRecord booking, long atMillis) {
+            this.booking = booking;
+            this.atMillis = atMillis;
+        }
+    }
+
+    /**
+     * Constructor for the BookingEvents class
+     */
+    private BookingEvents() {}
+
+    /**
+     * Function to record a booking which was created or changed
+     * @param booking the booking as returned by the api
+     */
+    public static void changed(JsonNode booking) {
+        changed(BookingRecord.fromNode(booking));
+    }
+
+    /**
+     * Function to record a booking which was created or changed
+     * @param booking the booking as returned by the api, read into its typed model
+     */
+    public static void changed(BookingDto booking) {
+        changed(BookingRecord.fromDto(booking));
+    }
+
+    /**
+     * Function to pass a booking which was created or changed on to the local indexes
+     * @param record the booking, or null if the api returned it without an ID
+     */
+    private static void changed(BookingRecord record) {
+        if (record != null) {
+            lock.lock();
+            try {
+                remember(record.getId(), record);
+                WaitingTimeTable.getInstance().update(record);
+                BookingReplica.getInstance().update(record);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Function to record a booking which was deleted
+     * @param bookingId ID of the booking
+     */
+    public static void deleted(String bookingId) {
+        lock.lock();
+        try {
+            remember(bookingId, null);
+            WaitingTimeTable.getInstance().remove(bookingId);
+            BookingReplica.getInstance().remove(bookingId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Function to bring a downloaded booking up to date with the changes this application made to it and apply it to an
+     * index, without a change being passed on to the indexes in between
+     * @param downloaded the booking as downloaded
+     * @param index function applying the booking to the index, which is not called if this application has deleted it
+     */
+    public static void apply(BookingRecord downloaded, Consumer<BookingRecord> index) {
+        lock.lock();
+        try {
+            BookingRecord current = reconcile(downloaded);
+            if (current != null) {
+                index.accept(current);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Function to bring a downloaded booking list up to date with the changes this application made and apply it to an
+     * index, without a change being passed on to the indexes in between
+     * @param downloaded bookings keyed by their ID, which are updated in place
+     * @param index function applying the booking list to the index
+     */
+    public static void apply(Map<String, BookingRecord> downloaded, Consumer<Map<String, BookingRecord>> index) {
+        lock.lock();
+        try {
+            reconcile(downloaded);
+            index.accept(downloaded);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Function to bring a downloaded booking up to date with the changes this application made to it
+     * @param downloaded the booking as downloaded
+     * @return the downloaded booking, the booking as this application last changed it if that is more recent, or null
+     * if this application has deleted it
+     */
+    public static BookingRecord reconcile(BookingRecord downloaded) {
+        Write write = recentWrites.get(downloaded.getId());
+        if (write == null || System.currentTimeMillis() - write.atMillis > RECENT_WRITE_MILLIS) {
+            return downloaded;
+        }
+        if (write.booking == null) {
+            return null;
+        }
+        return downloaded.isOlderThan(write.booking) ? withSite(write.booking, downloaded) : downloaded;
+    }
+
+    /**
+     * Function to bring a downloaded booking list up to date with the changes this application made while, or shortly
+     * before, it was downloaded: newer changes replace the downloaded bookings, deleted bookings are removed and
+     * created bookings the list does not have yet are added
+     * @param downloaded bookings keyed by their ID, which are updated in place
+     */
+    public static void reconcile(Map<String, BookingRecord> downloaded) {
+        long now = System.currentTimeMillis();
+        recentWrites.values().removeIf(write -> now - write.atMillis > RECENT_WRITE_MILLIS);
+        recentWrites.forEach((bookingId, write) -> {
+            if (write.booking == null) {
+                downloaded.remove(bookingId);
+            } else {
+                BookingRecord current = downloaded.get(bookingId);
+                if (current == null || current.isOlderThan(write.booking)) {
+                    downloaded.put(bookingId, withSite(write.booking, current));
+                }
+            }
+        });
+    }
+
+    /**
+     * Function to keep a change returned without its testing site at the site the booking was downloaded at
+     * @param change the booking as this application last changed it
+     * @param downloaded the booking as downloaded, may be null
+     * @return the change, with a testing site if possible
+     */
+    private static BookingRecord withSite(BookingRecord change, BookingRecord downloaded) {
+        return change.getSiteId() == null && downloaded != null ? change.withSiteId(downloaded.getSiteId()) : change;
+    }
+
+    /**
+     * Function to remember a change made by this application, keeping the more recent one if responses arrive out of order
+     * @param bookingId ID of the booking
+     * @param booking the booking as returned by the api, or null if it was deleted
+     */
+    private static void remember(String bookingId, BookingRecord booking) {
+        long now = System.currentTimeMillis();
+        recentWrites.values().removeIf(write -> now - write.atMillis > RECENT_WRITE_MILLIS);
+        recentWrites.merge(bookingId, new Write(booking, now), (previous, next) ->
+                previous.booking != null && next.booking != null && next.booking.isOlderThan(previous.booking) ? previous : next);
+    }
+}
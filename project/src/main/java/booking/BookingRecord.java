@@ -0,0 +1,243 @@
+package booking;
+
+import api.dto.BookingDto;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Compact, immutable summary of a booking holding only the fields needed to look it up and report its status
+ */
+public final class BookingRecord {
+
+    /**
+     * Flag set if the booking has been modified (additionalInfo.modified)
+     */
+    public static final int MODIFIED = 1;
+
+    /**
+     * Flag set for a home booking (additionalInfo.homeTest)
+     */
+    public static final int HOME_TEST = 2;
+
+    /**
+     * Flag set if the customer collects RAT kits from a test center (additionalInfo.ratKitRequired)
+     */
+    public static final int RAT_KIT_REQUIRED = 4;
+
+    /**
+     * Flag set once the customer has collected the RAT kits (additionalInfo.ratKitStatus is RECEIVED)
+     */
+    public static final int RAT_KIT_RECEIVED = 8;
+
+    /**
+     * ID of the booking
+     */
+    private final String id;
+
+    /**
+     * ID of the customer the booking is for
+     */
+    private final String customerId;
+
+    /**
+     * ID of the testing site the booking is at
+     */
+    private final String siteId;
+
+    /**
+     * Status of the booking (e.g. INITIATED, PROCESSED, CANCELLED)
+     */
+    private final String status;
+
+    /**
+     * SMS pin sent to the customer for the booking
+     */
+    private final String smsPin;
+
+    /**
+     * Flags of the booking (MODIFIED, HOME_TEST, RAT_KIT_REQUIRED, RAT_KIT_RECEIVED)
+     */
+    private final int flags;
+
+    /**
+     * QR code of a home booking (additionalInfo.qrCode), or null
+     */
+    private final String qrCode;
+
+    /**
+     * Time the test is booked for, as returned by the api (e.g. 2022-05-20T10:00:00.000Z)
+     */
+    private final String startTime;
+
+    /**
+     * Time the booking was last changed, as returned by the api
+     */
+    private final String updatedAt;
+
+    /**
+     * Constructor for the BookingRecord class
+     * @param id ID of the booking
+     * @param customerId ID of the customer
+     * @param siteId ID of the testing site
+     * @param status Status of the booking
+     * @param smsPin SMS pin of the booking
+     * @param flags Flags of the booking
+     * @param qrCode QR code of a home booking, or null
+     * @param startTime Time the test is booked for
+     * @param updatedAt Time the booking was last changed
+     */
+    public BookingRecord(String id, String customerId, String siteId, String status, String smsPin, int flags,
+                         String qrCode, String startTime, String updatedAt) {
+        this.id = id;
+        this.customerId = customerId;
+        this.siteId = siteId;
+        this.status = status;
+        this.smsPin = smsPin;
+        this.flags = flags;
+        this.qrCode = qrCode;
+        this.startTime = startTime;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * Function to create a record from a booking returned by the api
+     * @param booking booking as returned by the api
+     * @return record for the booking, or null if the booking has no ID
+     */
+    public static BookingRecord fromNode(JsonNode booking) {
+        String id = text(booking.get("id"));
+        if (id == null) {
+            return null;
+        }
+        String customerId = booking.has("customer") ? text(booking.get("customer").get("id")) : text(booking.get("customerId"));
+        String siteId = booking.has("testingSite") ? text(booking.get("testingSite").get("id")) : text(booking.get("testingSiteId"));
+        JsonNode info = booking.get("additionalInfo");
+        String qrCode = null;
+        int flags = 0;
+        if (info != null) {
+            qrCode = text(info.get("qrCode"));
+            flags = flags(info.path("modified").asBoolean(), info.path("homeTest").asBoolean(),
+                    info.path("ratKitRequired").asBoolean(), text(info.get("ratKitStatus")));
+        }
+        return new BookingRecord(id, customerId, siteId, text(booking.get("status")), text(booking.get("smsPin")), flags,
+                qrCode, text(booking.get("startTime")), text(booking.get("updatedAt")));
+    }
+
+    /**
+     * Function to create a record from a booking read into its typed model
+     * @param booking the booking as returned by the api
+     * @return the record, or null if the booking has no ID
+     */
+    public static BookingRecord fromDto(BookingDto booking) {
+        if (booking.getId() == null) {
+            return null;
+        }
+        BookingDto.Info info = booking.getAdditionalInfo();
+        int flags = flags(info.isModified(), info.isHomeTest(), info.isRatKitRequired(), info.getRatKitStatus());
+        return new BookingRecord(booking.getId(), booking.getCustomerId(), booking.getTestingSiteId(), booking.getStatus(),
+                booking.getSmsPin(), flags, info.getQrCode(), booking.getStartTime(), booking.getUpdatedAt());
+    }
+
+    /**
+     * Function to pack the flags of a booking from its additional info
+     * @param modified whether the booking has been modified
+     * @param homeTest whether the booking is a home booking
+     * @param ratKitRequired whether the customer collects RAT kits from a test center
+     * @param ratKitStatus status of the RAT kits (e.g. NOT RECEIVED, RECEIVED, N/A), may be null
+     * @return the flags
+     */
+    public static int flags(boolean modified, boolean homeTest, boolean ratKitRequired, String ratKitStatus) {
+        return (modified ? MODIFIED : 0) | (homeTest ? HOME_TEST : 0) | (ratKitRequired ? RAT_KIT_REQUIRED : 0)
+                | ("RECEIVED".equals(ratKitStatus) ? RAT_KIT_RECEIVED : 0);
+    }
+
+    /**
+     * Function to get a copy of this record at another testing site, e.g. for a change returned without its testing site
+     * @param siteId ID of the testing site
+     * @return the copy
+     */
+    public BookingRecord withSiteId(String siteId) {
+        return new BookingRecord(id, customerId, siteId, status, smsPin, flags, qrCode, startTime, updatedAt);
+    }
+
+    /**
+     * Function to check whether this record was changed after another record of the same booking. Timestamps are
+     * compared as instants, since a record rebuilt from the booking store may print its time differently from the api,
+     * and as text if they cannot be read; a record without a timestamp counts as newer.
+     * @param other other record of the booking
+     * @return true if this record is older than the other one
+     */
+    public boolean isOlderThan(BookingRecord other) {
+        if (updatedAt == null || other.updatedAt == null) {
+            return false;
+        }
+        try {
+            return Instant.parse(updatedAt).isBefore(Instant.parse(other.updatedAt));
+        } catch (DateTimeParseException e) {
+            return updatedAt.compareTo(other.updatedAt) < 0;
+        }
+    }
+
+    /**
+     * Function to read a text value which may be missing
+     * @param node node holding the value
+     * @return the text, or null if the node is missing
+     */
+    private static String text(JsonNode node) {
+        return node == null || node.isNull() ? null : node.textValue();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public String getSiteId() {
+        return siteId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getSmsPin() {
+        return smsPin;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean isModified() {
+        return (flags & MODIFIED) != 0;
+    }
+
+    public boolean isHomeTest() {
+        return (flags & HOME_TEST) != 0;
+    }
+
+    public boolean isRatKitRequired() {
+        return (flags & RAT_KIT_REQUIRED) != 0;
+    }
+
+    public boolean isRatKitReceived() {
+        return (flags & RAT_KIT_RECEIVED) != 0;
+    }
+
+    public String getQrCode() {
+        return qrCode;
+    }
+
+    public String getStartTime() {
+        return startTime;
+    }
+
+    public String getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -0,0 +1,484 @@
+package booking;
+
+import utilities.SnapshotFiles;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Local copy of the booking list, so that booking lookups do not download and parse every booking. The full list is
+ * downloaded once; after that only the bookings whose updatedAt is at or after the most recent updatedAt already seen
+ * (the watermark) are downloaded and merged in, in the background once the copy is older than its sync interval.
+ * Bookings deleted by another application cannot be seen in those changes, so the full list is downloaded again every
+ * few minutes, and the bookings this application creates, changes and deletes are applied straight away (BookingEvents).
+ * Every booking carries its updatedAt, and an older version of a booking never replaces a newer one, so a slow sync
+ * cannot undo a change this application has just made. The bookings are held in a column store (BookingStore) rather
+ * than one object per booking, so that the copy of a large booking list stays small and cheap for the garbage collector.
+ * After every sync which changed it the copy is saved as a snapshot file (SnapshotFiles), and a new process starts from
+ * that snapshot instead of downloading the full list, catching up with the changes in the background.
+ */
+public class BookingReplica {
+
+    /**
+     * Instance of BookingReplica class
+     */
+    private static BookingReplica firstInstance = null;
+
+    /**
+     * System property holding how long (in seconds) the copy is used before the changed bookings are downloaded
+     */
+    public static final String SYNC_PROPERTY = "replica.syncSeconds";
+
+    /**
+     * System property holding how long (in seconds) the copy is kept up to date with changes before the full list is downloaded again
+     */
+    public static final String FULL_SYNC_PROPERTY = "replica.fullSyncSeconds";
+
+    /**
+     * Shortest time (in milliseconds) between two syncs caused by unknown booking IDs or QR codes
+     */
+    private static final long MIN_SYNC_ON_MISS_MILLIS = 5000;
+
+    /**
+     * Name of the snapshot file of the copy
+     */
+    private static final String SNAPSHOT_NAME = "bookings";
+
+    /**
+     * The bookings, held column by column
+     */
+    private final BookingStore store = new BookingStore();
+
+    /**
+     * Most recent updatedAt of the bookings downloaded so far, or null before the first download
+     */
+    private volatile String watermark;
+
+    /**
+     * Time (in milliseconds) of the last download, full or incremental, or 0 if nothing has been downloaded yet
+     */
+    private volatile long syncedAtMillis = 0;
+
+    /**
+     * Time (in milliseconds) of the last download of the full list
+     */
+    private volatile long fullSyncedAtMillis = 0;
+
+    /**
+     * How long (in milliseconds) the copy is used before the changed bookings are downloaded
+     */
+    private volatile long syncMillis = Long.getLong(SYNC_PROPERTY, 30) * 1000;
+
+    /**
+     * How long (in milliseconds) the copy is kept up to date with changes before the full list is downloaded again
+     */
+    private volatile long fullSyncMillis = Long.getLong(FULL_SYNC_PROPERTY, 600) * 1000;
+
+    /**
+     * Whether the snapshot file has been read yet (guarded by syncLock)
+     */
+    private boolean snapshotRead = false;
+
+    /**
+     * Whether saving the snapshot is waiting on the sync thread
+     */
+    private final AtomicBoolean saveScheduled = new AtomicBoolean(false);
+
+    /**
+     * Whether a background sync is currently running
+     */
+    private final AtomicBoolean syncing = new AtomicBoolean(false);
+
+    /**
+     * Lock making sure only one download runs at a time (a lock rather than synchronized, so that virtual threads
+     * waiting on the download do not pin their carrier thread)
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * Thread downloading changes in the background
+     */
+    private final ExecutorService syncer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-replica-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor for the BookingReplica class
+     */
+    private BookingReplica() {}
+
+    /**
+     * Function to return the singleton BookingReplica instance
+     * @return firstInstance Singleton instance of BookingReplica class
+     */
+    public static synchronized BookingReplica getInstance() {
+        if (firstInstance == null) {
+            firstInstance = new BookingReplica();
+        }
+        return firstInstance;
+    }
+
+    /**
+     * Mutator for how long the copy is used before the changed bookings are downloaded
+     * @param syncSeconds time in seconds
+     */
+    public void setSyncSeconds(long syncSeconds) {
+        this.syncMillis = syncSeconds * 1000;
+    }
+
+    /**
+     * Mutator for how long the copy is kept up to date with changes before the full list is downloaded again
+     * @param fullSyncSeconds time in seconds
+     */
+    public void setFullSyncSeconds(long fullSyncSeconds) {
+        this.fullSyncMillis = fullSyncSeconds * 1000;
+    }
+
+    /**
+     * Function to find a booking by its ID
+     * @param bookingId ID of the booking
+     * @return the booking, or null if there is no booking with this ID
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public BookingRecord get(String bookingId) throws IOException, InterruptedException {
+        ensureSynced();
+        BookingRecord booking = store.get(bookingId);
+        if (booking == null) {
+            // the booking may have been made by another desk since the last sync
+            sync(MIN_SYNC_ON_MISS_MILLIS);
+            booking = store.get(bookingId);
+        }
+        return booking;
+    }
+
+    /**
+     * Function to find a booking by its ID without blocking the calling thread; the first download and the sync made
+     * for an unknown ID run on the sync thread
+     * @param bookingId ID of the booking
+     * @return future completed with the booking, or with null if there is no booking with this ID
+     */
+    public CompletableFuture<BookingRecord> getAsync(String bookingId) {
+        if (syncedAtMillis != 0) {
+            BookingRecord booking = store.get(bookingId);
+            if (booking != null) {
+                syncInBackgroundIfStale();
+                return CompletableFuture.completedFuture(booking);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return get(bookingId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+        }, syncer);
+    }
+
+    /**
+     * Function to find the bookings of a customer
+     * @param customerId ID of the customer
+     * @return bookings of the customer
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public List<BookingRecord> byCustomer(String customerId) throws IOException, InterruptedException {
+        ensureSynced();
+        return store.byCustomer(customerId);
+    }
+
+    /**
+     * Function to find the bookings at a testing site
+     * @param siteId ID of the testing site
+     * @return bookings at the testing site
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public List<BookingRecord> bySite(String siteId) throws IOException, InterruptedException {
+        ensureSynced();
+        return store.bySite(siteId);
+    }
+
+    /**
+     * Function to find the home booking with a QR code
+     * @param qrCode QR code of the home booking
+     * @return the booking, or null if no booking has this QR code
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public BookingRecord byQrCode(String qrCode) throws IOException, InterruptedException {
+        ensureSynced();
+        BookingRecord booking = store.byQrCode(qrCode);
+        if (booking == null) {
+            sync(MIN_SYNC_ON_MISS_MILLIS);
+            booking = store.byQrCode(qrCode);
+        }
+        return booking;
+    }
+
+    /**
+     * Function to find the booking with an SMS pin
+     * @param pin SMS pin of the booking
+     * @return the booking, or null if no booking has this pin
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public BookingRecord byPin(String pin) throws IOException, InterruptedException {
+        ensureSynced();
+        BookingRecord booking = store.byPin(pin);
+        if (booking == null) {
+            sync(MIN_SYNC_ON_MISS_MILLIS);
+            booking = store.byPin(pin);
+        }
+        return booking;
+    }
+
+    /**
+     * Function to record a booking which was created or changed by this application
+     * @param booking the booking as returned by the api
+     */
+    public void update(BookingRecord booking) {
+        put(booking);
+    }
+
+    /**
+     * Function to record a booking which was deleted by this application
+     * @param bookingId ID of the booking
+     */
+    public synchronized void remove(String bookingId) {
+        if (store.remove(bookingId)) {
+            // a snapshot still holding the booking would bring it back until the next full sync
+            saveSnapshotLater();
+        }
+    }
+
+    /**
+     * Function to download the changes straight away, e.g. before a report which must be current
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public void syncNow() throws IOException, InterruptedException {
+        sync(0);
+    }
+
+    /**
+     * Function to make sure the copy has been read from its snapshot or downloaded, and to download the changes in the
+     * background once it is too old
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private void ensureSynced() throws IOException, InterruptedException {
+        if (syncedAtMillis == 0) {
+            sync(Long.MAX_VALUE);
+        }
+        syncInBackgroundIfStale();
+    }
+
+    /**
+     * Function to download the changes in the background if the copy is older than its sync interval
+     */
+    private void syncInBackgroundIfStale() {
+        if (System.currentTimeMillis() - syncedAtMillis > syncMillis && syncing.compareAndSet(false, true)) {
+            syncer.execute(() -> {
+                try {
+                    sync(syncMillis);
+                } catch (IOException e) {
+                    // keep serving the current copy, the next lookup will try again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    syncing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Function to download the bookings changed since the watermark, or the full list when it is due
+     * @param minIntervalMillis the download is skipped if the copy was synced less than this many milliseconds ago
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private void sync(long minIntervalMillis) throws IOException, InterruptedException {
+        syncLock.lock();
+        try {
+            if (!snapshotRead) {
+                snapshotRead = true;
+                readSnapshot();
+            }
+            long startedAt = System.currentTimeMillis();
+            if (syncedAtMillis != 0 && startedAt - syncedAtMillis < minIntervalMillis) {
+                return;
+            }
+            String since = watermark;
+            boolean changed;
+            if (since == null || startedAt - fullSyncedAtMillis > fullSyncMillis) {
+                Map<String, BookingRecord> downloaded = new HashMap<>();
+                BookingStream.forEach(booking -> true, booking -> {
+                    advanceWatermark(booking);
+                    downloaded.put(booking.getId(), booking);
+                });
+                replaceAll(downloaded);
+                fullSyncedAtMillis = startedAt;
+                changed = true;
+            } else {
+                // the bookings changed at the watermark itself are downloaded again, but do not count as changes
+                int[] merged = {0};
+                BookingStream.forEachUpdatedSince(since, booking -> {
+                    advanceWatermark(booking);
+                    if (merge(booking)) {
+                        merged[0]++;
+                    }
+                });
+                changed = merged[0] > 0;
+            }
+            syncedAtMillis = startedAt;
+            if (changed) {
+                saveSnapshotLater();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Function to start from the snapshot file written by an earlier process, if there is one. The copy then counts as
+     * synced when the snapshot was written, so the changes since are downloaded in the background (or the full list,
+     * if the snapshot's full sync is too old).
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void readSnapshot() throws IOException {
+        SnapshotFiles.Snapshot snapshot = SnapshotFiles.read(SNAPSHOT_NAME);
+        if (snapshot == null) {
+            return;
+        }
+        ByteBuffer in = snapshot.getBody();
+        try {
+            long fullSyncedAt = in.getLong();
+            String restoredWatermark = SnapshotFiles.readString(in);
+            store.readFrom(in);
+            watermark = restoredWatermark;
+            fullSyncedAtMillis = fullSyncedAt;
+            syncedAtMillis = snapshot.getSavedAtMillis();
+        } catch (RuntimeException e) {
+            // a snapshot written by another version, start with a download instead
+            store.clear();
+        }
+    }
+
+    /**
+     * Function to save the copy as a snapshot file on the sync thread, once for any number of calls made meanwhile
+     */
+    private void saveSnapshotLater() {
+        if (saveScheduled.compareAndSet(false, true)) {
+            syncer.execute(() -> {
+                saveScheduled.set(false);
+                syncLock.lock();
+                try {
+                    // the watermark is read before the bookings, so it is never ahead of them
+                    String savedWatermark = watermark;
+                    long savedFullSyncedAt = fullSyncedAtMillis;
+                    SnapshotFiles.write(SNAPSHOT_NAME, out -> {
+                        out.writeLong(savedFullSyncedAt);
+                        SnapshotFiles.writeString(out, savedWatermark);
+                        store.writeTo(out);
+                    });
+                } catch (IOException e) {
+                    // the snapshot only speeds up the next start
+                } finally {
+                    syncLock.unlock();
+                }
+            });
+        }
+    }
+
+    /**
+     * Function to move the watermark past a downloaded booking. Only downloaded bookings move it: a change made by this
+     * application may be more recent than changes made elsewhere which have not been downloaded yet.
+     * @param booking downloaded booking
+     */
+    private void advanceWatermark(BookingRecord booking) {
+        String updatedAt = booking.getUpdatedAt();
+        if (updatedAt != null && (watermark == null || updatedAt.compareTo(watermark) > 0)) {
+            watermark = updatedAt;
+        }
+    }
+
+    /**
+     * Function to replace the copy with the full booking list. Changes this application made while the list was
+     * downloaded win over the older bookings in the list; the list is brought up to date and applied under the lock of
+     * BookingEvents, so such a change is either already known when the list is brought up to date or applied after it.
+     * @param downloaded the full booking list keyed by booking ID
+     */
+    private void replaceAll(Map<String, BookingRecord> downloaded) {
+        BookingEvents.apply(downloaded, this::putAll);
+    }
+
+    /**
+     * Function to replace the copy with a booking list which is up to date with the changes of this application
+     * @param downloaded the full booking list keyed by booking ID
+     */
+    private synchronized void putAll(Map<String, BookingRecord> downloaded) {
+        downloaded.values().forEach(this::put);
+        // bookings missing from the full list were deleted by another application
+        for (String bookingId : store.ids()) {
+            if (!downloaded.containsKey(bookingId)) {
+                remove(bookingId);
+            }
+        }
+    }
+
+    /**
+     * Function to merge a downloaded booking into the copy, unless this application has changed or deleted it since
+     * @param downloaded the booking as downloaded
+     * @return true if the copy changed
+     */
+    private boolean merge(BookingRecord downloaded) {
+        boolean[] changed = {false};
+        BookingEvents.apply(downloaded, current -> changed[0] = put(current));
+        return changed[0];
+    }
+
+    /**
+     * Function to add or replace a booking, unless the copy already holds this or a more recent change of it
+     * @param booking the booking
+     * @return true if the copy changed
+     */
+    private synchronized boolean put(BookingRecord booking) {
+        BookingRecord previous = store.get(booking.getId());
+        if (previous != null && (booking.isOlderThan(previous) || isSameChange(previous, booking))) {
+            return false;
+        }
+        if (booking.getSiteId() == null && previous != null) {
+            // changes returned without their testing site stay at the site they were booked at
+            booking = booking.withSiteId(previous.getSiteId());
+        }
+        store.put(booking);
+        return true;
+    }
+
+    /**
+     * Function to check whether two records of a booking hold the same change, i.e. were both changed at the same time
+     * @param previous record held by the copy
+     * @param booking record which may replace it
+     * @return true if neither record is older than the other
+     */
+    private static boolean isSameChange(BookingRecord previous, BookingRecord booking) {
+        return previous.getUpdatedAt() != null && booking.getUpdatedAt() != null && !previous.isOlderThan(booking);
+    }
+}
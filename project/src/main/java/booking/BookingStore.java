@@ -0,0 +1,971 @@
+package booking;
+
+import utilities.SnapshotFiles;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Column store for the bookings held by the booking replica. Instead of one object (or JSON tree) per booking, every
+ * field is kept in a primitive array indexed by row: booking IDs as the two halves of their UUID, status, testing site
+ * and customer as int codes of a dictionary, SMS pins as numbers, start and update times as epoch milliseconds and the
+ * flags of the booking packed into a byte. IDs, pins and times which cannot be held that way are kept as text for the
+ * rows which have them. Rows are kept dense (a removed row is filled with the last one), so a scan
+ * of a column touches nothing but that array. Bookings are found by ID and by pin through open addressing hash tables
+ * of row numbers, by customer, site and QR code by scanning the column.
+ * A BookingRecord is built for each booking returned; the store itself only holds the arrays, which are also what
+ * a snapshot of the store is made of (writeTo / readFrom).
+ */
+class BookingStore {
+
+    /**
+     * Value of a time column for a booking without a (readable) time
+     */
+    private static final long NO_TIME = Long.MIN_VALUE;
+
+    /**
+     * Value of the pin column for a booking without a numeric pin
+     */
+    private static final long NO_PIN = -1;
+
+    /**
+     * Format the times of the api are printed in
+     */
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    /**
+     * Dictionary of the booking statuses
+     */
+    private final Dictionary statuses = new Dictionary();
+
+    /**
+     * Dictionary of the testing site IDs
+     */
+    private final Dictionary sites = new Dictionary();
+
+    /**
+     * Dictionary of the customer IDs
+     */
+    private final Dictionary customers = new Dictionary();
+
+    /**
+     * Number of rows in use
+     */
+    private int size = 0;
+
+    /**
+     * Most significant half of the booking ID of each row
+     */
+    private long[] idHigh = new long[16];
+
+    /**
+     * Least significant half of the booking ID of each row
+     */
+    private long[] idLow = new long[16];
+
+    /**
+     * Booking ID of each row whose ID is not a UUID, null for the others
+     */
+    private String[] otherId = new String[16];
+
+    /**
+     * Status code of each row, -1 if the booking has no status
+     */
+    private int[] status = new int[16];
+
+    /**
+     * Testing site code of each row, -1 if the booking has no testing site
+     */
+    private int[] site = new int[16];
+
+    /**
+     * Customer code of each row, -1 if the booking has no customer
+     */
+    private int[] customer = new int[16];
+
+    /**
+     * SMS pin of each row as a number, prefixed with a 1 to keep its leading zeros, or NO_PIN
+     */
+    private long[] pin = new long[16];
+
+    /**
+     * SMS pin of each row whose pin is not a number, null for the others
+     */
+    private String[] otherPin = new String[16];
+
+    /**
+     * Start time of each row in epoch milliseconds, or NO_TIME
+     */
+    private long[] startTime = new long[16];
+
+    /**
+     * Start time of each row whose start time is not an ISO-8601 instant (e.g. a time booked as yyyy-MM-dd hh:mm:ss),
+     * null for the others
+     */
+    private String[] otherStartTime = new String[16];
+
+    /**
+     * Time each row was last changed in epoch milliseconds, or NO_TIME
+     */
+    private long[] updatedAt = new long[16];
+
+    /**
+     * Time each row was last changed, for rows whose time is not an ISO-8601 instant, null for the others
+     */
+    private String[] otherUpdatedAt = new String[16];
+
+    /**
+     * Flags of each row (see BookingRecord)
+     */
+    private byte[] flags = new byte[16];
+
+    /**
+     * QR code of each row holding a home booking, null for the others
+     */
+    private String[] qrCode = new String[16];
+
+    /**
+     * Rows keyed by booking ID
+     */
+    private final RowHash rowsById = new RowHash(this::idHash);
+
+    /**
+     * Rows keyed by SMS pin, only holding the rows which have a pin
+     */
+    private final RowHash rowsByPin = new RowHash(this::pinHash);
+
+    /**
+     * Lock letting lookups run together while a change runs alone (a lock rather than synchronized, so that virtual
+     * threads waiting on it do not pin their carrier thread)
+     */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Dictionary giving each distinct value of a column a small int code
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        /**
+         * Function to get the code of a value, adding the value if it is new
+         * @param value the value, may be null
+         * @return code of the value, or -1 for null
+         */
+        private int encode(String value) {
+            if (value == null) {
+                return -1;
+            }
+            return codes.computeIfAbsent(value, key -> {
+                values.add(key);
+                return values.size() - 1;
+            });
+        }
+
+        /**
+         * Function to get the code of a value without adding it
+         * @param value the value, may be null
+         * @return code of the value, or -1 if the dictionary does not have it
+         */
+        private int find(String value) {
+            Integer code = value == null ? null : codes.get(value);
+            return code == null ? -1 : code;
+        }
+
+        /**
+         * Function to get the value of a code
+         * @param code code of the value
+         * @return the value, or null for -1
+         */
+        private String decode(int code) {
+            return code < 0 ? null : values.get(code);
+        }
+
+        /**
+         * Function to write the values in the order of their codes
+         * @param out stream written to
+         * @throws IOException Exception that occurs when an IO operation fails
+         */
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(values.size());
+            for (String value : values) {
+                SnapshotFiles.writeString(out, value);
+            }
+        }
+
+        /**
+         * Function to replace the values with values written by writeTo
+         * @param in buffer read from
+         */
+        private void readFrom(ByteBuffer in) {
+            codes.clear();
+            values.clear();
+            int count = in.getInt();
+            for (int code = 0; code < count; code++) {
+                String value = SnapshotFiles.readString(in);
+                values.add(value);
+                codes.put(value, code);
+            }
+        }
+    }
+
+    /**
+     * Open addressing hash table (linear probing) from a key to the row holding it. The table only stores row numbers
+     * plus one (0 is an empty slot); the keys themselves are read from the columns.
+     */
+    private static final class RowHash {
+        private final RowHasher hasher;
+        private int[] slots = new int[32];
+        private int count = 0;
+
+        private RowHash(RowHasher hasher) {
+            this.hasher = hasher;
+        }
+
+        /**
+         * Function to find the row holding a key
+         * @param hash hash of the key
+         * @param matches whether a row holds the key
+         * @return the row, or -1 if no row holds the key
+         */
+        private int find(int hash, IntPredicate matches) {
+            int mask = slots.length - 1;
+            for (int i = spread(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (matches.test(slots[i] - 1)) {
+                    return slots[i] - 1;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Function to add a row whose key is not in the table yet
+         * @param row the row
+         */
+        private void add(int row) {
+            if ((count + 1) * 2 > slots.length) {
+                resize(slots.length * 2);
+            }
+            insert(slots, row);
+            count++;
+        }
+
+        /**
+         * Function to remove a row from the table, shifting back the rows probed past it
+         * @param row the row, whose key must still be in the columns
+         */
+        private void remove(int row) {
+            int i = slotOf(row);
+            if (i < 0) {
+                return;
+            }
+            int mask = slots.length - 1;
+            int j = i;
+            while (true) {
+                j = (j + 1) & mask;
+                if (slots[j] == 0) {
+                    break;
+                }
+                int home = spread(hasher.hash(slots[j] - 1)) & mask;
+                // the row at j stays if its home slot lies cyclically in (i, j]
+                boolean stays = i <= j ? i < home && home <= j : i < home || home <= j;
+                if (!stays) {
+                    slots[i] = slots[j];
+                    i = j;
+                }
+            }
+            slots[i] = 0;
+            count--;
+        }
+
+        /**
+         * Function to record that a row has been moved
+         * @param from the old row, whose key must still be in the columns
+         * @param to the new row
+         */
+        private void move(int from, int to) {
+            int i = slotOf(from);
+            if (i >= 0) {
+                slots[i] = to + 1;
+            }
+        }
+
+        /**
+         * Function to find the slot of a row
+         * @param row the row
+         * @return the slot, or -1 if the row is not in the table
+         */
+        private int slotOf(int row) {
+            int mask = slots.length - 1;
+            for (int i = spread(hasher.hash(row)) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                if (slots[i] == row + 1) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Function to empty the table
+         */
+        private void clear() {
+            slots = new int[32];
+            count = 0;
+        }
+
+        /**
+         * Function to write the table as it is
+         * @param out stream written to
+         * @throws IOException Exception that occurs when an IO operation fails
+         */
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeInt(count);
+            out.writeInt(slots.length);
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+        }
+
+        /**
+         * Function to read the table back as written, so that it does not have to be built again
+         * @param in buffer read from
+         * @param rows number of rows of the store
+         */
+        private void readFrom(ByteBuffer in, int rows) {
+            int restoredCount = in.getInt();
+            int length = in.getInt();
+            if (length < 32 || Integer.bitCount(length) != 1 || restoredCount > rows || restoredCount * 2 > length) {
+                throw new IllegalArgumentException("Damaged row table");
+            }
+            int[] restored = new int[length];
+            in.asIntBuffer().get(restored);
+            in.position(in.position() + length * Integer.BYTES);
+            for (int slot : restored) {
+                if (slot < 0 || slot > rows) {
+                    throw new IllegalArgumentException("Damaged row table");
+                }
+            }
+            slots = restored;
+            count = restoredCount;
+        }
+
+        /**
+         * Function to move the rows to a table of another size
+         * @param length new number of slots, a power of two
+         */
+        private void resize(int length) {
+            int[] resized = new int[length];
+            for (int slot : slots) {
+                if (slot != 0) {
+                    insert(resized, slot - 1);
+                }
+            }
+            slots = resized;
+        }
+
+        /**
+         * Function to put a row in the first free slot from its home slot
+         * @param table the slots
+         * @param row the row
+         */
+        private void insert(int[] table, int row) {
+            int mask = table.length - 1;
+            int i = spread(hasher.hash(row)) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = row + 1;
+        }
+
+        /**
+         * Function to mix the high bits of a hash into the low bits used to pick a slot
+         * @param hash the hash
+         * @return the mixed hash
+         */
+        private static int spread(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Hash of the key held by a row
+     */
+    private interface RowHasher {
+        int hash(int row);
+    }
+
+    /**
+     * Function to find a booking by its ID
+     * @param bookingId ID of the booking
+     * @return the booking, or null if the store does not have it
+     */
+    BookingRecord get(String bookingId) {
+        lock.readLock().lock();
+        try {
+            int row = rowOf(bookingId);
+            return row < 0 ? null : record(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to find a booking by its SMS pin
+     * @param smsPin SMS pin of the booking
+     * @return the booking, or null if no booking in the store has this pin
+     */
+    BookingRecord byPin(String smsPin) {
+        if (smsPin == null) {
+            return null;
+        }
+        long code = pinCode(smsPin);
+        lock.readLock().lock();
+        try {
+            int row = rowsByPin.find(hash(code, smsPin),
+                    candidate -> pin[candidate] == code && (code != NO_PIN || smsPin.equals(otherPin[candidate])));
+            return row < 0 ? null : record(row);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to find the bookings of a customer
+     * @param customerId ID of the customer
+     * @return bookings of the customer
+     */
+    List<BookingRecord> byCustomer(String customerId) {
+        lock.readLock().lock();
+        try {
+            int code = customers.find(customerId);
+            return code < 0 ? new ArrayList<>() : scan(customer, code);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to find the bookings at a testing site
+     * @param siteId ID of the testing site
+     * @return bookings at the testing site
+     */
+    List<BookingRecord> bySite(String siteId) {
+        lock.readLock().lock();
+        try {
+            int code = sites.find(siteId);
+            return code < 0 ? new ArrayList<>() : scan(site, code);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to find the home booking with a QR code
+     * @param code QR code of the home booking
+     * @return the booking, or null if no booking in the store has this QR code
+     */
+    BookingRecord byQrCode(String code) {
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < size; row++) {
+                if (qrCode[row] != null && qrCode[row].equals(code)) {
+                    return record(row);
+                }
+            }
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to get the IDs of all the bookings in the store
+     * @return the booking IDs
+     */
+    List<String> ids() {
+        lock.readLock().lock();
+        try {
+            List<String> ids = new ArrayList<>(size);
+            for (int row = 0; row < size; row++) {
+                ids.add(id(row));
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to get the number of bookings in the store
+     * @return number of bookings
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to add a booking or replace the booking with the same ID
+     * @param booking the booking
+     */
+    void put(BookingRecord booking) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(booking.getId());
+            if (row < 0) {
+                row = size;
+                ensureCapacity(size + 1);
+                size++;
+                setId(row, booking.getId());
+                rowsById.add(row);
+            } else if (hasPin(row)) {
+                rowsByPin.remove(row);
+            }
+            status[row] = statuses.encode(booking.getStatus());
+            site[row] = sites.encode(booking.getSiteId());
+            customer[row] = customers.encode(booking.getCustomerId());
+            pin[row] = pinCode(booking.getSmsPin());
+            otherPin[row] = pin[row] == NO_PIN ? booking.getSmsPin() : null;
+            startTime[row] = epochMillis(booking.getStartTime());
+            otherStartTime[row] = startTime[row] == NO_TIME ? booking.getStartTime() : null;
+            updatedAt[row] = epochMillis(booking.getUpdatedAt());
+            otherUpdatedAt[row] = updatedAt[row] == NO_TIME ? booking.getUpdatedAt() : null;
+            flags[row] = (byte) booking.getFlags();
+            qrCode[row] = booking.getQrCode();
+            if (hasPin(row)) {
+                rowsByPin.add(row);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function to remove a booking
+     * @param bookingId ID of the booking
+     * @return true if the store had the booking
+     */
+    boolean remove(String bookingId) {
+        lock.writeLock().lock();
+        try {
+            int row = rowOf(bookingId);
+            if (row < 0) {
+                return false;
+            }
+            rowsById.remove(row);
+            if (hasPin(row)) {
+                rowsByPin.remove(row);
+            }
+            int last = size - 1;
+            if (row != last) {
+                // the last row fills the gap, so the rows stay dense
+                rowsById.move(last, row);
+                if (hasPin(last)) {
+                    rowsByPin.move(last, row);
+                }
+                copyRow(last, row);
+            }
+            otherId[last] = null;
+            otherPin[last] = null;
+            otherStartTime[last] = null;
+            otherUpdatedAt[last] = null;
+            qrCode[last] = null;
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function to remove every booking, keeping the dictionaries
+     */
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            Arrays.fill(otherId, 0, size, null);
+            Arrays.fill(otherPin, 0, size, null);
+            Arrays.fill(otherStartTime, 0, size, null);
+            Arrays.fill(otherUpdatedAt, 0, size, null);
+            Arrays.fill(qrCode, 0, size, null);
+            size = 0;
+            rowsById.clear();
+            rowsByPin.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function to write the store as a snapshot body: the dictionaries, the columns of the rows in use, the rows with
+     * a text ID, text pin, text time or QR code, and the ID and pin tables
+     * @param out stream written to
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            statuses.writeTo(out);
+            sites.writeTo(out);
+            customers.writeTo(out);
+            out.writeInt(size);
+            for (long[] column : new long[][] {idHigh, idLow, pin, startTime, updatedAt}) {
+                for (int row = 0; row < size; row++) {
+                    out.writeLong(column[row]);
+                }
+            }
+            for (int[] column : new int[][] {status, site, customer}) {
+                for (int row = 0; row < size; row++) {
+                    out.writeInt(column[row]);
+                }
+            }
+            out.write(flags, 0, size);
+            for (String[] column : new String[][] {otherId, otherPin, otherStartTime, otherUpdatedAt, qrCode}) {
+                int count = 0;
+                for (int row = 0; row < size; row++) {
+                    count += column[row] == null ? 0 : 1;
+                }
+                out.writeInt(count);
+                for (int row = 0; row < size; row++) {
+                    if (column[row] != null) {
+                        out.writeInt(row);
+                        SnapshotFiles.writeString(out, column[row]);
+                    }
+                }
+            }
+            rowsById.writeTo(out);
+            rowsByPin.writeTo(out);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Function to replace the contents of the store with a snapshot body written by writeTo. The columns are copied
+     * out of the buffer in bulk; if the body turns out to be damaged the store is left empty.
+     * @param in buffer read from
+     * @throws IllegalArgumentException if the body is damaged
+     */
+    void readFrom(ByteBuffer in) {
+        lock.writeLock().lock();
+        try {
+            statuses.readFrom(in);
+            sites.readFrom(in);
+            customers.readFrom(in);
+            int rows = in.getInt();
+            if (rows < 0 || rows > in.remaining() / (5 * Long.BYTES + 3 * Integer.BYTES + 1)) {
+                throw new IllegalArgumentException("Damaged booking store");
+            }
+            int length = Math.max(16, rows);
+            idHigh = readLongs(in, rows, length);
+            idLow = readLongs(in, rows, length);
+            pin = readLongs(in, rows, length);
+            startTime = readLongs(in, rows, length);
+            updatedAt = readLongs(in, rows, length);
+            status = readCodes(in, rows, length, statuses);
+            site = readCodes(in, rows, length, sites);
+            customer = readCodes(in, rows, length, customers);
+            flags = new byte[length];
+            in.get(flags, 0, rows);
+            otherId = readSparse(in, rows, length);
+            otherPin = readSparse(in, rows, length);
+            otherStartTime = readSparse(in, rows, length);
+            otherUpdatedAt = readSparse(in, rows, length);
+            qrCode = readSparse(in, rows, length);
+            size = rows;
+            rowsById.readFrom(in, rows);
+            rowsByPin.readFrom(in, rows);
+        } catch (RuntimeException e) {
+            clear();
+            throw e instanceof IllegalArgumentException ? e : new IllegalArgumentException("Damaged booking store", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Function to read a column of longs
+     * @param in buffer read from
+     * @param rows number of values
+     * @param length length of the column
+     * @return the column
+     */
+    private static long[] readLongs(ByteBuffer in, int rows, int length) {
+        long[] column = new long[length];
+        in.asLongBuffer().get(column, 0, rows);
+        in.position(in.position() + rows * Long.BYTES);
+        return column;
+    }
+
+    /**
+     * Function to read a column of dictionary codes
+     * @param in buffer read from
+     * @param rows number of values
+     * @param length length of the column
+     * @param dictionary dictionary the codes belong to
+     * @return the column
+     */
+    private static int[] readCodes(ByteBuffer in, int rows, int length, Dictionary dictionary) {
+        int[] column = new int[length];
+        in.asIntBuffer().get(column, 0, rows);
+        in.position(in.position() + rows * Integer.BYTES);
+        for (int row = 0; row < rows; row++) {
+            if (column[row] < -1 || column[row] >= dictionary.values.size()) {
+                throw new IllegalArgumentException("Damaged booking store");
+            }
+        }
+        return column;
+    }
+
+    /**
+     * Function to read a column of texts which only some rows have
+     * @param in buffer read from
+     * @param rows number of rows
+     * @param length length of the column
+     * @return the column
+     */
+    private static String[] readSparse(ByteBuffer in, int rows, int length) {
+        String[] column = new String[length];
+        int count = in.getInt();
+        for (int i = 0; i < count; i++) {
+            int row = in.getInt();
+            if (row < 0 || row >= rows) {
+                throw new IllegalArgumentException("Damaged booking store");
+            }
+            column[row] = SnapshotFiles.readString(in);
+        }
+        return column;
+    }
+
+    /**
+     * Function to find the row of a booking ID
+     * @param bookingId ID of the booking
+     * @return the row, or -1 if the store does not have the booking
+     */
+    private int rowOf(String bookingId) {
+        UUID uuid = uuid(bookingId);
+        if (uuid != null) {
+            long high = uuid.getMostSignificantBits();
+            long low = uuid.getLeastSignificantBits();
+            return rowsById.find(Long.hashCode(high ^ low),
+                    row -> otherId[row] == null && idHigh[row] == high && idLow[row] == low);
+        }
+        return rowsById.find(bookingId.hashCode(), row -> bookingId.equals(otherId[row]));
+    }
+
+    /**
+     * Function to store the booking ID of a row
+     * @param row the row
+     * @param bookingId ID of the booking
+     */
+    private void setId(int row, String bookingId) {
+        UUID uuid = uuid(bookingId);
+        if (uuid != null) {
+            idHigh[row] = uuid.getMostSignificantBits();
+            idLow[row] = uuid.getLeastSignificantBits();
+            otherId[row] = null;
+        } else {
+            otherId[row] = bookingId;
+        }
+    }
+
+    /**
+     * Function to get the booking ID of a row
+     * @param row the row
+     * @return ID of the booking
+     */
+    private String id(int row) {
+        return otherId[row] != null ? otherId[row] : new UUID(idHigh[row], idLow[row]).toString();
+    }
+
+    /**
+     * Function to hash the booking ID of a row the same way rowOf hashes the ID it looks up
+     * @param row the row
+     * @return hash of the booking ID
+     */
+    private int idHash(int row) {
+        return otherId[row] != null ? otherId[row].hashCode() : Long.hashCode(idHigh[row] ^ idLow[row]);
+    }
+
+    /**
+     * Function to hash the SMS pin of a row the same way byPin hashes the pin it looks up
+     * @param row the row
+     * @return hash of the pin
+     */
+    private int pinHash(int row) {
+        return hash(pin[row], otherPin[row]);
+    }
+
+    /**
+     * Function to hash an SMS pin
+     * @param code the pin as a number, or NO_PIN
+     * @param text the pin as text, used if it is not a number
+     * @return hash of the pin
+     */
+    private static int hash(long code, String text) {
+        return code != NO_PIN ? Long.hashCode(code) : text.hashCode();
+    }
+
+    /**
+     * Function to check whether a row has an SMS pin
+     * @param row the row
+     * @return true if the booking has a pin
+     */
+    private boolean hasPin(int row) {
+        return pin[row] != NO_PIN || otherPin[row] != null;
+    }
+
+    /**
+     * Function to build the record of a row
+     * @param row the row
+     * @return the booking
+     */
+    private BookingRecord record(int row) {
+        String smsPin = pin[row] != NO_PIN ? Long.toString(pin[row]).substring(1) : otherPin[row];
+        return new BookingRecord(id(row), customers.decode(customer[row]), sites.decode(site[row]),
+                statuses.decode(status[row]), smsPin, flags[row], qrCode[row], time(startTime[row], otherStartTime[row]),
+                time(updatedAt[row], otherUpdatedAt[row]));
+    }
+
+    /**
+     * Function to build the records of the rows holding a code in a column
+     * @param column the column
+     * @param code the code
+     * @return bookings of the rows
+     */
+    private List<BookingRecord> scan(int[] column, int code) {
+        List<BookingRecord> bookings = new ArrayList<>();
+        for (int row = 0; row < size; row++) {
+            if (column[row] == code) {
+                bookings.add(record(row));
+            }
+        }
+        return bookings;
+    }
+
+    /**
+     * Function to copy every column of a row to another row
+     * @param from the row copied
+     * @param to the row overwritten
+     */
+    private void copyRow(int from, int to) {
+        idHigh[to] = idHigh[from];
+        idLow[to] = idLow[from];
+        otherId[to] = otherId[from];
+        status[to] = status[from];
+        site[to] = site[from];
+        customer[to] = customer[from];
+        pin[to] = pin[from];
+        otherPin[to] = otherPin[from];
+        startTime[to] = startTime[from];
+        otherStartTime[to] = otherStartTime[from];
+        updatedAt[to] = updatedAt[from];
+        otherUpdatedAt[to] = otherUpdatedAt[from];
+        flags[to] = flags[from];
+        qrCode[to] = qrCode[from];
+    }
+
+    /**
+     * Function to grow the columns so that they hold at least a number of rows
+     * @param rows number of rows
+     */
+    private void ensureCapacity(int rows) {
+        if (rows <= idHigh.length) {
+            return;
+        }
+        int length = Math.max(rows, idHigh.length * 2);
+        idHigh = Arrays.copyOf(idHigh, length);
+        idLow = Arrays.copyOf(idLow, length);
+        otherId = Arrays.copyOf(otherId, length);
+        status = Arrays.copyOf(status, length);
+        site = Arrays.copyOf(site, length);
+        customer = Arrays.copyOf(customer, length);
+        pin = Arrays.copyOf(pin, length);
+        otherPin = Arrays.copyOf(otherPin, length);
+        startTime = Arrays.copyOf(startTime, length);
+        otherStartTime = Arrays.copyOf(otherStartTime, length);
+        updatedAt = Arrays.copyOf(updatedAt, length);
+        otherUpdatedAt = Arrays.copyOf(otherUpdatedAt, length);
+        flags = Arrays.copyOf(flags, length);
+        qrCode = Arrays.copyOf(qrCode, length);
+    }
+
+    /**
+     * Function to read a booking ID as a UUID
+     * @param bookingId ID of the booking
+     * @return the UUID, or null if the ID is not a UUID printed the way UUID prints it
+     */
+    private static UUID uuid(String bookingId) {
+        if (bookingId.length() != 36) {
+            return null;
+        }
+        try {
+            UUID uuid = UUID.fromString(bookingId);
+            return uuid.toString().equals(bookingId) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Function to turn an SMS pin into a number, keeping its leading zeros by putting a 1 in front of it
+     * @param smsPin the pin, may be null
+     * @return the pin as a number, or NO_PIN if there is no pin or it is not a number of up to 17 digits
+     */
+    private static long pinCode(String smsPin) {
+        if (smsPin == null || smsPin.isEmpty() || smsPin.length() > 17) {
+            return NO_PIN;
+        }
+        for (int i = 0; i < smsPin.length(); i++) {
+            if (smsPin.charAt(i) < '0' || smsPin.charAt(i) > '9') {
+                return NO_PIN;
+            }
+        }
+        return Long.parseLong("1" + smsPin);
+    }
+
+    /**
+     * Function to read a time of the api
+     * @param time the time as text, may be null
+     * @return the time in epoch milliseconds, or NO_TIME if there is no time or it cannot be read
+     */
+    private static long epochMillis(String time) {
+        if (time == null) {
+            return NO_TIME;
+        }
+        try {
+            return Instant.parse(time).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return NO_TIME;
+        }
+    }
+
+    /**
+     * Function to print a time the way the api does
+     * @param epochMillis the time in epoch milliseconds, or NO_TIME
+     * @param otherTime the time as it was received if it is not an ISO-8601 instant, otherwise null
+     * @return the time as text, or null if there is no time
+     */
+    private static String time(long epochMillis, String otherTime) {
+        return epochMillis == NO_TIME ? otherTime : TIME_FORMAT.format(Instant.ofEpochMilli(epochMillis));
+    }
+}
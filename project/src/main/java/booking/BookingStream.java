@@ -0,0 +1,281 @@
+package booking;
+
+import api.ApiGateway;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Class which reads the full booking list from the api as a stream, one booking at a time.
+ * Only the fields kept in a BookingRecord are read from each booking (the nested customer and testing site are skipped
+ * apart from their IDs), and bookings are filtered as they are parsed, so no JSON tree is ever built for the whole list.
+ * Callers reading the list while another caller is already downloading it wait for that download and filter the same
+ * records instead of downloading the list again, and the list is only downloaded again when the api answers a
+ * conditional GET with a new version of it.
+ */
+public class BookingStream {
+
+    /**
+     * URL endpoint for all bookings
+     */
+    private static final String bookingPath = "/booking";
+
+    /**
+     * Factory for the streaming parsers (thread safe, so it is shared)
+     */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Download of the booking list currently in progress, completed with every booking it read, or null if none is running
+     */
+    private static final AtomicReference<CompletableFuture<List<BookingRecord>>> inFlight = new AtomicReference<>();
+
+    /**
+     * Bookings read by the last download with the validators the api sent for them, or null if it sent none
+     */
+    private static volatile Snapshot lastDownload;
+
+    /**
+     * Bookings read by a download of the booking list, with the ETag and Last-Modified headers of the response
+     */
+    private static final class Snapshot {
+        private final String etag;
+        private final String lastModified;
+        private final List<BookingRecord> bookings;
+
+        private Snapshot(String etag, String lastModified, List<BookingRecord> bookings) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.bookings = bookings;
+        }
+    }
+
+    /**
+     * Constructor for the BookingStream class
+     */
+    private BookingStream() {}
+
+    /**
+     * Function to get the bookings from the api which match a filter
+     * @param filter filter which bookings must match
+     * @return list of matching bookings
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public static List<BookingRecord> fetch(Predicate<BookingRecord> filter) throws IOException, InterruptedException {
+        List<BookingRecord> bookings = new ArrayList<>();
+        forEach(filter, bookings::add);
+        return bookings;
+    }
+
+    /**
+     * Function to pass each booking from the api which matches a filter to a consumer, as it is parsed
+     * @param filter filter which bookings must match
+     * @param consumer consumer receiving each matching booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public static void forEach(Predicate<BookingRecord> filter, Consumer<BookingRecord> consumer) throws IOException, InterruptedException {
+        CompletableFuture<List<BookingRecord>> download = new CompletableFuture<>();
+        CompletableFuture<List<BookingRecord>> running = inFlight.compareAndExchange(null, download);
+        if (running != null) {
+            // the records are immutable, so the bookings read by the running download can be handed to every waiter
+            for (BookingRecord booking : ApiGateway.await(running)) {
+                if (filter.test(booking)) {
+                    consumer.accept(booking);
+                }
+            }
+            return;
+        }
+        List<BookingRecord> bookings = new ArrayList<>();
+        // a failing consumer only fails this caller, the waiters still get the whole list
+        AtomicReference<RuntimeException> consumerFailure = new AtomicReference<>();
+        try {
+            ApiGateway api = ApiGateway.getInstance();
+            Snapshot previous = lastDownload;
+            HttpRequest.Builder request = api.request(bookingPath).GET();
+            if (previous != null) {
+                ApiGateway.conditional(request, previous.etag, previous.lastModified);
+            }
+            HttpResponse<InputStream> response = api.sendStream(request.build());
+            try (InputStream body = response.body()) {
+                if (response.statusCode() == 304 && previous != null) {
+                    // the list has not changed since the last download, so the bookings read then are used again
+                    download.complete(previous.bookings);
+                    for (BookingRecord booking : previous.bookings) {
+                        if (filter.test(booking)) {
+                            consumer.accept(booking);
+                        }
+                    }
+                    return;
+                }
+                read(body, booking -> true, booking -> {
+                    bookings.add(booking);
+                    if (consumerFailure.get() == null && filter.test(booking)) {
+                        try {
+                            consumer.accept(booking);
+                        } catch (RuntimeException e) {
+                            consumerFailure.set(e);
+                        }
+                    }
+                });
+            }
+            List<BookingRecord> downloaded = Collections.unmodifiableList(bookings);
+            String etag = response.headers().firstValue("ETag").orElse(null);
+            String lastModified = response.headers().firstValue("Last-Modified").orElse(null);
+            lastDownload = etag == null && lastModified == null ? null : new Snapshot(etag, lastModified, downloaded);
+            download.complete(downloaded);
+            if (consumerFailure.get() != null) {
+                throw consumerFailure.get();
+            }
+        } catch (IOException | RuntimeException e) {
+            download.completeExceptionally(e);
+            throw e;
+        } catch (InterruptedException e) {
+            download.completeExceptionally(new IOException("Download of the booking list was interrupted", e));
+            throw e;
+        } finally {
+            inFlight.compareAndSet(download, null);
+        }
+    }
+
+    /**
+     * Function to pass each booking changed at or after a time to a consumer, as it is parsed. The time is sent to the
+     * api as the updatedSince query parameter so that only the changed bookings are downloaded; the bookings are still
+     * filtered here for a web service which ignores the parameter and returns the full list.
+     * @param updatedSince updatedAt of the most recent change already known, in the format returned by the api
+     * @param consumer consumer receiving each changed booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public static void forEachUpdatedSince(String updatedSince, Consumer<BookingRecord> consumer) throws IOException, InterruptedException {
+        String path = bookingPath + "?updatedSince=" + URLEncoder.encode(updatedSince, StandardCharsets.UTF_8);
+        try (InputStream body = ApiGateway.getInstance().getStream(path).body()) {
+            read(body, booking -> booking.getUpdatedAt() == null || booking.getUpdatedAt().compareTo(updatedSince) >= 0, consumer);
+        }
+    }
+
+    /**
+     * Function to parse a JSON array of bookings, passing each booking which matches a filter to a consumer
+     * @param in stream holding the JSON array
+     * @param filter filter which bookings must match
+     * @param consumer consumer receiving each matching booking
+     * @throws IOException Exception that occurs when an IO operation fails or the stream is not an array of bookings
+     */
+    public static void read(InputStream in, Predicate<BookingRecord> filter, Consumer<BookingRecord> consumer) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a list of bookings from the api");
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                BookingRecord booking = readBooking(parser);
+                if (booking != null && filter.test(booking)) {
+                    consumer.accept(booking);
+                }
+            }
+        }
+    }
+
+    /**
+     * Function to read one booking object, positioned at its START_OBJECT token
+     * @param parser parser positioned at the start of the booking
+     * @return the booking, or null if it has no ID
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static BookingRecord readBooking(JsonParser parser) throws IOException {
+        String id = null;
+        String customerId = null;
+        String siteId = null;
+        String status = null;
+        String smsPin = null;
+        String[] info = new String[5];
+        String startTime = null;
+        String updatedAt = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "id":
+                    id = parser.getValueAsString();
+                    break;
+                case "status":
+                    status = parser.getValueAsString();
+                    break;
+                case "smsPin":
+                    smsPin = parser.getValueAsString();
+                    break;
+                case "startTime":
+                    startTime = parser.getValueAsString();
+                    break;
+                case "updatedAt":
+                    updatedAt = parser.getValueAsString();
+                    break;
+                case "customer":
+                    customerId = readFields(parser, "id")[0];
+                    break;
+                case "testingSite":
+                    siteId = readFields(parser, "id")[0];
+                    break;
+                case "additionalInfo":
+                    info = readFields(parser, "modified", "qrCode", "homeTest", "ratKitRequired", "ratKitStatus");
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return id == null ? null : new BookingRecord(id, customerId, siteId, status, smsPin,
+                BookingRecord.flags(Boolean.parseBoolean(info[0]), Boolean.parseBoolean(info[2]),
+                        Boolean.parseBoolean(info[3]), info[4]), info[1], startTime, updatedAt);
+    }
+
+    /**
+     * Function to read some fields of a nested object, skipping the rest of the object
+     * @param parser parser positioned at the start of the nested object
+     * @param names names of the fields to read
+     * @return text of each field, in the order of the names, null for fields the object does not have or if the object is null
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static String[] readFields(JsonParser parser, String... names) throws IOException {
+        String[] values = new String[names.length];
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return values;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            for (int i = 0; i < names.length; i++) {
+                if (field.equals(names[i])) {
+                    values[i] = parser.getValueAsString();
+                }
+            }
+            parser.skipChildren();
+        }
+        return values;
+    }
+
+    /**
+     * Filter for the bookings at a testing site
+     * @param siteId ID of the testing site
+     * @return the filter
+     */
+    public static Predicate<BookingRecord> bySite(String siteId) {
+        return booking -> Objects.equals(booking.getSiteId(), siteId);
+    }
+}
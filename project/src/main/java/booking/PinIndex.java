@@ -0,0 +1,92 @@
+package booking;
+
+import api.ApiGateway;
+import api.ApiStatusException;
+import api.Deadline;
+import api.Json;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+
+/**
+ * Lookup of bookings by SMS pin, so that checking a booking in by its pin does not download and scan every booking.
+ * The pins are held by the booking replica's column store, which is kept up to date with the bookings this application
+ * creates, changes and deletes and synced when a pin is not found (at most once every few seconds).
+ */
+public class PinIndex {
+
+    /**
+     * Instance of PinIndex class
+     */
+    private static PinIndex firstInstance = null;
+
+    /**
+     * URL endpoint for all bookings
+     */
+    private static final String bookingPath = "/booking";
+
+    /**
+     * Time (in milliseconds) downloading the booking of a pin may take, unless set with -Ddeadline.pinCheckMs
+     */
+    private static final long PIN_CHECK_BUDGET_MILLIS = 300;
+
+    /**
+     * Constructor for the PinIndex class
+     */
+    private PinIndex() {}
+
+    /**
+     * Function to return the singleton PinIndex instance
+     * @return firstInstance Singleton instance of PinIndex class
+     */
+    public static synchronized PinIndex getInstance() {
+        if (firstInstance == null) {
+            firstInstance = new PinIndex();
+        }
+        return firstInstance;
+    }
+
+    /**
+     * Function to find the booking with the given SMS pin
+     * @param pin SMS pin of the booking
+     * @return the booking, or null if no booking has this pin
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public BookingRecord lookup(String pin) throws IOException, InterruptedException {
+        return BookingReplica.getInstance().byPin(pin);
+    }
+
+    /**
+     * Function to find the booking with the given SMS pin and refresh it from the api, so that its status is current.
+     * Only the single booking is downloaded, with a hedged GET which must finish within its deadline. Finding the pin
+     * is not part of the deadline, since the local copy may first have to be synced (e.g. on a cold start).
+     * @param pin SMS pin of the booking
+     * @return the up-to-date booking, or null if no booking has this pin
+     * @throws IOException Exception that occurs when an IO operation fails, including an HttpTimeoutException when the
+     * download takes longer than its deadline and an ApiStatusException if the api did not return the booking
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public ObjectNode lookupBooking(String pin) throws IOException, InterruptedException {
+        BookingRecord record = lookup(pin);
+        if (record == null) {
+            return null;
+        }
+        Deadline deadline = Deadline.budget("pinCheck", PIN_CHECK_BUDGET_MILLIS);
+        HttpResponse<String> response = ApiGateway.getInstance().getHedged(bookingPath + "/" + record.getId(), deadline);
+        if (response.statusCode() == 404) {
+            BookingReplica.getInstance().remove(record.getId());
+            return null;
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(response, "The pin cannot be checked");
+        }
+        ObjectNode booking = Json.readNode(response.body());
+        BookingRecord current = BookingRecord.fromNode(booking);
+        if (current != null) {
+            BookingReplica.getInstance().update(current);
+        }
+        return booking;
+    }
+}
@@ -1,17 +1,17 @@
 package facilities;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import api.ApiGateway;
+import api.Deadline;
+import api.Json;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import utilities.AccessToken;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -30,24 +30,24 @@ public class CovidTestingSite {
     private String description;
 
     /**
-     * Root URL for the web service
+     * Testing site as received from the api, when it is already known (e.g. from the site catalog)
      */
-    private static final String rootUrl = "https://fit3077.com/api/v2";
+    private ObjectNode site;
 
     /**
      * URL endpoint for all testing sites
      */
-    String siteUrl = rootUrl + "/testing-site";
+    private static final String sitePath = "/testing-site";
 
     /**
-     * Http client which can be used to send requests and retrieve their response
+     * Time (in milliseconds) looking up a testing site by its ID may take, unless set with -Ddeadline.siteLookupMs
      */
-    private HttpClient client;
+    private static final long SITE_LOOKUP_BUDGET_MILLIS = 2000;
 
     /**
-     * HttpRequest to send requests
+     * Gateway used to send requests to the web service
      */
-    private HttpRequest request;
+    protected final ApiGateway api = ApiGateway.getInstance();
 
     /**
      * HttpResponse to retrieve responses
@@ -62,6 +62,16 @@ public class CovidTestingSite {
         this.id = id;
     }
 
+    /**
+     * Constructor for CovidTestingSite class from a testing site which has already been received from the api,
+     * so that describing it does not request it again
+     * @param site the testing site as received from the api
+     */
+    public CovidTestingSite(ObjectNode site) {
+        this(site.get("id").textValue());
+        this.site = site;
+    }
+
     public String getSiteId() {
         return id;
     }
@@ -73,16 +83,11 @@ public class CovidTestingSite {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public ObjectNode getSite() throws IOException, InterruptedException {
-        String finalSiteUrl = siteUrl + "/" + id;
-        client = HttpClient.newHttpClient();
-        request = HttpRequest
-                .newBuilder(URI.create(finalSiteUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        return new ObjectMapper().readValue(response.body(), ObjectNode.class);
+        if (site == null) {
+            response = api.getHedged(sitePath + "/" + id, Deadline.budget("siteLookup", SITE_LOOKUP_BUDGET_MILLIS));
+            site = Json.readNode(response.body());
+        }
+        return site;
     }
 
     /**
@@ -92,38 +97,46 @@ public class CovidTestingSite {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public String getDescription() throws IOException, InterruptedException {
-        ObjectNode site = this.getSite();
-        description = "  " + site.get("name") + "\n     " + site.get("description") + "\n     " + "This site is currently: " + this.getState() + "\n     " + "Waiting time: " + getWaitingTime() + " hours";
+        description = describe(getSite(), getWaitingTime());
         return description;
     }
 
     /**
-     * Function to get the waiting time at the current covid testing site. Assumes each booking takes an hour
-     * @return waiting time at the testing site
+     * Function to get the descriptions of many covid test sites at once, e.g. to list search results.
+     * The waiting times of all the sites are read from the waiting time table, and sites created from the
+     * site catalog are not requested again, so listing N sites needs no requests once both are loaded.
+     * @param sites covid test sites to describe
+     * @return descriptions of the sites, in the same order
      * @throws IOException Exception that occurs when an IO operation fails
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
-    public String getWaitingTime() throws IOException, InterruptedException {
-        // Assumes each booking takes an hour
-        String bookingsUrl = siteUrl + "/" + id +"?fields=bookings";
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(bookingsUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-        ObjectNode testSite = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-
-        int bookingsNum = 0;
-
-        bookingsNum = testSite.get("bookings").size();
-
-        return Integer.toString(bookingsNum);
+    public static List<String> getDescriptions(List<CovidTestingSite> sites) throws IOException, InterruptedException {
+        List<String> descriptions = new ArrayList<>(sites.size());
+        for (CovidTestingSite testSite : sites) {
+            testSite.description = describe(testSite.getSite(), testSite.getWaitingTime());
+            descriptions.add(testSite.description);
+        }
+        return descriptions;
+    }
 
+    /**
+     * Function to build the description of a covid test site
+     * @param site the testing site as received from the api
+     * @param waitingTime waiting time at the site, in hours
+     * @return Description of covid test site including its name, description, open/closed and waiting time
+     */
+    private static String describe(ObjectNode site, String waitingTime) {
+        return "  " + site.get("name") + "\n     " + site.get("description") + "\n     " + "This site is currently: " + stateOf(site) + "\n     " + "Waiting time: " + waitingTime + " hours";
+    }
 
+    /**
+     * Function to get the waiting time at the current covid testing site. Assumes each active booking takes an hour
+     * @return waiting time at the testing site
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public String getWaitingTime() throws IOException, InterruptedException {
+        return Integer.toString(WaitingTimeTable.getInstance().getWaitingTime(id));
     }
 
     /**
@@ -133,7 +146,15 @@ public class CovidTestingSite {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public String getState() throws IOException, InterruptedException {
-        ObjectNode site = this.getSite();
+        return stateOf(getSite());
+    }
+
+    /**
+     * Function to work out whether a covid test site is open or closed from its opening hours
+     * @param site the testing site as received from the api
+     * @return State of the covid test site i.e. whether it is open or closed
+     */
+    private static String stateOf(ObjectNode site) {
         String open = site.get("additionalInfo").get("openTime").textValue();
         String close = site.get("additionalInfo").get("closeTime").textValue();
         LocalTime openTime = LocalTime.parse(open);
@@ -147,25 +168,4 @@ public class CovidTestingSite {
             return "Closed";
         }
     }
-
-    /**
-     * Function to get list of bookings
-     * @return List of bookings
-     * @throws IOException Exception that occurs when an IO operation fails
-     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
-     */
-    public ObjectNode[] getBookings() throws IOException, InterruptedException {
-        String bookingUrl = "https://fit3077.com/api/v2/booking";
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-        // so we can loop through the response
-        return new ObjectMapper().readValue(response.body(), ObjectNode[].class);
-    }
 }
@@ -1,14 +1,18 @@
 package facilities;
 
+import api.ApiGateway;
+import api.ApiStatusException;
+import api.RequestBodies;
+import api.dto.BookingDto;
+import booking.BookingRecord;
+import booking.BookingEvents;
+import booking.PinIndex;
+import api.Json;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import utilities.AccessToken;
 import utilities.Question;
 import utilities.SymptomsCollection;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
@@ -125,15 +129,7 @@ public class OnSiteTesting extends CovidTestingSite {
         catch (IllegalArgumentException e){
             System.out.println(e.getMessage());
         }
-        String test;
-        if(RATPositive || overseasTravel || levelOfContact == 1 || severeSymptoms > 0 || moderateSymptoms > 2 || mildSymptoms == 4){
-            test = "PCR";
-        }
-        else{
-            test = "RAT";
-        }
-        ArrayList<String> userAndBookingId = getUserAndBookingIdWithPin(pinCode);  // users id + booking id
-        addTestType(userAndBookingId.get(0), userAndBookingId.get(1), test);
+        String test = submitTestForm(overseasTravel, RATPositive, levelOfContact, mildSymptoms, moderateSymptoms, severeSymptoms);
         if(test.equals("PCR")) {
             System.out.println("The System recommends that the Resident should take a " + test + " test");
         }
@@ -142,33 +138,59 @@ public class OnSiteTesting extends CovidTestingSite {
         }
     }
 
+    /**
+     * Function to record the answers of the on site testing form without asking anything, i.e. recommend the type of
+     * covid test and add it to the booking of the resident holding the pin code
+     * @param overseasTravel whether the resident has travelled overseas in the last 7 days
+     * @param RATPositive whether the resident has received a positive RAT test result in the last 7 days
+     * @param levelOfContact level of contact with a covid 19 case (1 to 3)
+     * @param mildSymptoms number of mild symptoms the resident has
+     * @param moderateSymptoms number of moderate symptoms the resident has
+     * @param severeSymptoms number of severe symptoms the resident has
+     * @return test type recommended by the system, i.e. PCR or RAT
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public String submitTestForm(boolean overseasTravel, boolean RATPositive, int levelOfContact, int mildSymptoms,
+                                 int moderateSymptoms, int severeSymptoms) throws IOException, InterruptedException {
+        String test = recommendTest(overseasTravel, RATPositive, levelOfContact, mildSymptoms, moderateSymptoms, severeSymptoms);
+        ArrayList<String> userAndBookingId = getUserAndBookingIdWithPin(pinCode);  // users id + booking id
+        addTestType(userAndBookingId.get(0), userAndBookingId.get(1), test);
+        return test;
+    }
+
+    /**
+     * Function to recommend the type of covid test that a resident should take from their answers to the on site testing form
+     * @param overseasTravel whether the resident has travelled overseas in the last 7 days
+     * @param RATPositive whether the resident has received a positive RAT test result in the last 7 days
+     * @param levelOfContact level of contact with a covid 19 case (1 to 3)
+     * @param mildSymptoms number of mild symptoms the resident has
+     * @param moderateSymptoms number of moderate symptoms the resident has
+     * @param severeSymptoms number of severe symptoms the resident has
+     * @return test type, i.e. PCR or RAT
+     */
+    public static String recommendTest(boolean overseasTravel, boolean RATPositive, int levelOfContact, int mildSymptoms,
+                                       int moderateSymptoms, int severeSymptoms) {
+        if(RATPositive || overseasTravel || levelOfContact == 1 || severeSymptoms > 0 || moderateSymptoms > 2 || mildSymptoms == 4){
+            return "PCR";
+        }
+        return "RAT";
+    }
+
     /***
      * Function to get the User and Booking ID from the pin code generated
      * @param pin The pin code of the booking
      * @return users.User's ID and booking ID
      */
     public ArrayList<String> getUserAndBookingIdWithPin(String pin) throws IOException, InterruptedException {
-
-        String userId;
-        String bookingId;
-        ArrayList<String> pinInfo = new ArrayList<>();
-        ObjectNode[] bookingNodes = getBookings();
-        boolean validity = false;
-        for (ObjectNode node: bookingNodes) {
-            if (Objects.equals(node.get("smsPin").textValue(), pin)){
-                userId = node.get("customer").get("id").textValue();
-                pinInfo.add(userId);
-                bookingId = node.get("id").textValue();
-                pinInfo.add(bookingId);
-                validity = true;
-            }
-        }
-        if(!validity){
+        BookingRecord booking = PinIndex.getInstance().lookup(pin);
+        if(booking == null){
             throw new IllegalArgumentException("Invalid PIN");
         }
-        else{
-            return pinInfo;
-        }
+        ArrayList<String> pinInfo = new ArrayList<>();
+        pinInfo.add(booking.getCustomerId());
+        pinInfo.add(booking.getId());
+        return pinInfo;
     }
 
     /**
@@ -176,53 +198,32 @@ public class OnSiteTesting extends CovidTestingSite {
      * @param userId ID of the resident
      * @param bookingId ID of the booking
      * @param testType test type recommended by the system
-     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws IOException Exception that occurs when an IO operation fails, including an ApiStatusException if the api
+     * refused the test or the status change
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public void addTestType(String userId, String bookingId, String testType) throws IOException, InterruptedException {
-        String testUrl = "https://fit3077.com/api/v2/covid-test";
-
-        String testString = "{\n" +
-                "  \"type\": \""+ testType + "\",\n" +
-                "  \"patientId\": \"" + userId + "\",\n" +
-                "  \"administererId\": \"" + adminId + "\",\n" +
-                "  \"bookingId\": \"" + bookingId + "\",\n" +
-                "  \"result\": \"PENDING\",\n" +
-                "  \"status\": \"NOT INITIATED\",\n" +
-                "  \"notes\": \"Test type recommended\",\n" +
-                "  \"additionalInfo\": {}\n" +
-                "}";
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder(URI.create(testUrl)) // Return a JWT so we can use it in Part 5 later.
-                .setHeader("Authorization", AccessToken.token)
-                .header("Content-Type","application/json") // This header needs to be set when sending a JSON request body.
-                .POST(HttpRequest.BodyPublishers.ofString(testString))
-                .build();
-        client.send(request, HttpResponse.BodyHandlers.ofString());
+        byte[] testJson = RequestBodies.covidTest(testType, userId, adminId, bookingId, "PENDING", "NOT INITIATED",
+                "Test type recommended");
+
+        HttpResponse<String> created = api.post("/covid-test", testJson, ApiGateway.newIdempotencyKey());
+        if (created.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(created, "The test cannot be recorded");
+        }
 
         // patch booking status to PROCESSED
-        String bookingUrl = "https://fit3077.com/api/v2/booking/" + bookingId;
 
         Date date = Calendar.getInstance().getTime();
         DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
         String strDate = dateFormat.format(date);
 
-        String bookingString = "{\n" +
-                "  \"customerId\": \"" + userId + "\",\n" +
-                "  \"testingSiteId\": \"" + getSiteId() + "\",\n" +
-                "  \"startTime\": \"" + strDate + "\",\n" +
-                "  \"status\": \"PROCESSED\",\n" +
-                "  \"notes\": \"Test type recommended\",\n" +
-                "  \"additionalInfo\": {}\n" +
-                "}";
-
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(bookingUrl)) // Return a JWT so we can use it in Part 5 later.
-                .setHeader("Authorization", AccessToken.token)
-                .header("Content-Type","application/json") // This header needs to be set when sending a JSON request body.
-                .method("PATCH", HttpRequest.BodyPublishers.ofString(bookingString))
-                .build();
-        client.send(request, HttpResponse.BodyHandlers.ofString());
+        byte[] bookingJson = RequestBodies.booking(userId, getSiteId(), strDate, "PROCESSED", "Test type recommended",
+                RequestBodies.none());
+
+        HttpResponse<String> response = api.patch("/booking/" + bookingId, bookingJson);
+        if (response.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(response, "The booking cannot be processed");
+        }
+        BookingEvents.changed(Json.read(response.body(), BookingDto.class));
     }
 }
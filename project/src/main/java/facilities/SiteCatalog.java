@@ -0,0 +1,202 @@
+package facilities;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of all covid testing sites, with a bitset per searchable attribute and per suburb so that searches
+ * (and combinations of them) are answered with bitwise operations instead of scanning the sites. The snapshot is shared
+ * by every session, so the sites it hands out are copies: a caller changing one cannot change the catalog.
+ */
+public final class SiteCatalog {
+
+    /**
+     * Attributes of a testing site which can be searched for
+     */
+    public enum Attribute {
+        DRIVE_THROUGH("driveThrough"),
+        WALK_IN("walkIn"),
+        HOSPITAL("hospital"),
+        GP("GP"),
+        HOME_TESTING("homeTesting");
+
+        /**
+         * Name of the flag in the additionalInfo of a testing site
+         */
+        private final String field;
+
+        Attribute(String field) {
+            this.field = field;
+        }
+    }
+
+    /**
+     * Testing sites, in the order returned by the api
+     */
+    private final List<ObjectNode> sites;
+
+    /**
+     * Position of each testing site, keyed by its ID
+     */
+    private final Map<String, Integer> positionById;
+
+    /**
+     * Testing sites having each attribute
+     */
+    private final Map<Attribute, BitSet> attributes;
+
+    /**
+     * Testing sites in each suburb, keyed by the lower case suburb name
+     */
+    private final Map<String, BitSet> suburbs;
+
+    /**
+     * Time (in milliseconds) at which the snapshot was taken
+     */
+    private final long loadedAtMillis;
+
+    /**
+     * Constructor for the SiteCatalog class
+     * @param siteNodes testing sites as returned by the api
+     * @param loadedAtMillis Time (in milliseconds) at which the sites were downloaded
+     */
+    public SiteCatalog(ObjectNode[] siteNodes, long loadedAtMillis) {
+        List<ObjectNode> siteList = new ArrayList<>(siteNodes.length);
+        Map<String, Integer> positions = new HashMap<>();
+        Map<Attribute, BitSet> attributeSets = new EnumMap<>(Attribute.class);
+        Map<String, BitSet> suburbSets = new HashMap<>();
+        for (Attribute attribute : Attribute.values()) {
+            attributeSets.put(attribute, new BitSet(siteNodes.length));
+        }
+        for (int i = 0; i < siteNodes.length; i++) {
+            ObjectNode node = siteNodes[i];
+            siteList.add(node);
+            positions.put(node.get("id").textValue(), i);
+            JsonNode info = node.get("additionalInfo");
+            for (Attribute attribute : Attribute.values()) {
+                if (info != null && info.path(attribute.field).booleanValue()) {
+                    attributeSets.get(attribute).set(i);
+                }
+            }
+            String suburb = node.path("address").path("suburb").textValue();
+            if (suburb != null) {
+                suburbSets.computeIfAbsent(suburb.toLowerCase(), key -> new BitSet(siteNodes.length)).set(i);
+            }
+        }
+        this.sites = Collections.unmodifiableList(siteList);
+        this.positionById = Collections.unmodifiableMap(positions);
+        this.attributes = Collections.unmodifiableMap(attributeSets);
+        this.suburbs = Collections.unmodifiableMap(suburbSets);
+        this.loadedAtMillis = loadedAtMillis;
+    }
+
+    /**
+     * Constructor for a copy of a snapshot which the api confirmed is still current
+     * @param current snapshot to copy
+     * @param loadedAtMillis Time (in milliseconds) at which the api confirmed the snapshot
+     */
+    private SiteCatalog(SiteCatalog current, long loadedAtMillis) {
+        this.sites = current.sites;
+        this.positionById = current.positionById;
+        this.attributes = current.attributes;
+        this.suburbs = current.suburbs;
+        this.loadedAtMillis = loadedAtMillis;
+    }
+
+    /**
+     * Function to get this snapshot with a new time, after the api confirmed the testing sites have not changed
+     * @param loadedAtMillis Time (in milliseconds) at which the api confirmed the snapshot
+     * @return snapshot sharing the sites and indexes of this one
+     */
+    public SiteCatalog revalidated(long loadedAtMillis) {
+        return new SiteCatalog(this, loadedAtMillis);
+    }
+
+    /**
+     * Accessor for the time at which the snapshot was taken
+     * @return time in milliseconds
+     */
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    /**
+     * Accessor for all testing sites
+     * @return copies of the testing sites
+     */
+    public List<ObjectNode> getSites() {
+        List<ObjectNode> copies = new ArrayList<>(sites.size());
+        for (ObjectNode site : sites) {
+            copies.add(site.deepCopy());
+        }
+        return copies;
+    }
+
+    /**
+     * Function to find a testing site by its ID
+     * @param siteId ID of the testing site
+     * @return copy of the testing site, or null if there is none with this ID
+     */
+    public ObjectNode getSite(String siteId) {
+        Integer position = positionById.get(siteId);
+        return position == null ? null : sites.get(position).deepCopy();
+    }
+
+    /**
+     * Function to get the set of testing sites in a suburb
+     * @param suburb name of the suburb (any case)
+     * @return copy of the set of positions of the matching sites
+     */
+    public BitSet inSuburb(String suburb) {
+        BitSet set = suburbs.get(suburb.toLowerCase());
+        return set == null ? new BitSet() : (BitSet) set.clone();
+    }
+
+    /**
+     * Function to get the set of testing sites having all the given attributes
+     * @param required attributes the sites must have
+     * @return copy of the set of positions of the matching sites
+     */
+    public BitSet withAll(Set<Attribute> required) {
+        BitSet set = new BitSet(sites.size());
+        set.set(0, sites.size());
+        for (Attribute attribute : required) {
+            set.and(attributes.get(attribute));
+        }
+        return set;
+    }
+
+    /**
+     * Function to get the set of testing sites not having an attribute
+     * @param attribute attribute the sites must not have
+     * @return copy of the set of positions of the matching sites
+     */
+    public BitSet without(Attribute attribute) {
+        BitSet set = new BitSet(sites.size());
+        set.set(0, sites.size());
+        set.andNot(attributes.get(attribute));
+        return set;
+    }
+
+    /**
+     * Function to turn a set of positions into testing sites
+     * @param set positions of the sites
+     * @return testing sites at these positions, each holding its own copy of the site
+     */
+    public List<CovidTestingSite> toSites(BitSet set) {
+        List<CovidTestingSite> returnSites = new ArrayList<>(set.cardinality());
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            returnSites.add(new CovidTestingSite(sites.get(i).deepCopy()));
+        }
+        return returnSites;
+    }
+}
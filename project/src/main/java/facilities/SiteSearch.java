@@ -1,16 +1,20 @@
 package facilities;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import api.ApiGateway;
+import api.Deadline;
+import api.Json;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import utilities.AccessToken;
+import utilities.SnapshotFiles;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class SiteSearch {
     /**
@@ -19,19 +23,54 @@ public class SiteSearch {
     private static SiteSearch firstInstance = null;
 
     /**
-     * Root URL for the web service
+     * URL endpoint for all testing sites
      */
-    private static final String rootUrl = "https://fit3077.com/api/v2";
+    private static final String sitePath = "/testing-site";
 
     /**
-     * URL endpoint for all testing sites
+     * Time (in milliseconds) downloading the list of testing sites may take, unless set with -Ddeadline.siteListMs
+     */
+    public static final long SITE_LIST_BUDGET_MILLIS = 5000;
+
+    /**
+     * System property holding how long (in seconds) the testing site catalog is used before it is refreshed
+     */
+    public static final String TTL_PROPERTY = "sites.ttlSeconds";
+
+    /**
+     * Name of the snapshot file of the testing sites
+     */
+    private static final String SNAPSHOT_NAME = "sites";
+
+    /**
+     * Snapshot of all testing sites used to answer searches, or null until the first search
+     */
+    private volatile SiteCatalog catalog;
+
+    /**
+     * How long (in milliseconds) a catalog is used before it is refreshed
+     */
+    private volatile long ttlMillis = Long.getLong(TTL_PROPERTY, 60) * 1000;
+
+    /**
+     * Whether a background refresh of the catalog is currently running
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /**
+     * Lock making sure the first catalog is only downloaded once (a lock rather than synchronized, so that virtual
+     * threads waiting on the download do not pin their carrier thread)
      */
-    private String siteUrl = rootUrl + "/testing-site";
+    private final ReentrantLock loadLock = new ReentrantLock();
 
     /**
-     * Nodes for linked list with testing sites in each node
+     * Thread refreshing the catalog in the background
      */
-    private ObjectNode[] sites;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "site-catalog-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     /**
      * Constructor for the Search class
@@ -42,13 +81,21 @@ public class SiteSearch {
      * Function to return the singleton Search class instance
      * @return firstInstance Singleton instance of Search class
      */
-    public static SiteSearch getInstance() {
+    public static synchronized SiteSearch getInstance() {
         if(firstInstance == null){
             firstInstance = new SiteSearch();
         }
         return firstInstance;
     }
 
+    /**
+     * Mutator for how long the testing site catalog is used before it is refreshed
+     * @param ttlSeconds time in seconds
+     */
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
     /**
      * Function to search for covid testing sites based on suburb
      * @param suburb Suburb in which we need to search for covid testing sites
@@ -57,19 +104,8 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchSuburb(String suburb) throws IOException, InterruptedException {
-        String finalSuburb = suburb.toLowerCase();
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site with suburb name
-        for (ObjectNode node: sites) {
-            String siteSuburb = node.get("address").get("suburb").textValue();
-            if (siteSuburb.toLowerCase().equals(finalSuburb)){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
-            }
-        }
-        return returnSites;
+        SiteCatalog sites = getCatalog();
+        return sites.toSites(sites.inSuburb(suburb));
     }
 
     /**
@@ -79,18 +115,7 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchDriveThrough() throws IOException, InterruptedException {
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site with suburb name
-        for (ObjectNode node: sites) {
-            boolean siteDriveThrough = node.get("additionalInfo").get("driveThrough").booleanValue();
-            if (siteDriveThrough){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
-            }
-        }
-        return returnSites;
+        return search(EnumSet.of(SiteCatalog.Attribute.DRIVE_THROUGH));
     }
 
     /**
@@ -100,18 +125,7 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchWalkIn() throws IOException, InterruptedException {
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site with suburb name
-        for (ObjectNode node: sites) {
-            boolean siteWalkIn = node.get("additionalInfo").get("walkIn").booleanValue();
-            if (siteWalkIn){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
-            }
-        }
-        return returnSites;
+        return search(EnumSet.of(SiteCatalog.Attribute.WALK_IN));
     }
 
     /**
@@ -121,18 +135,8 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchClinics() throws IOException, InterruptedException {
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site with suburb name
-        for (ObjectNode node: sites) {
-            boolean siteHospital = node.get("additionalInfo").get("hospital").booleanValue();
-            if (!siteHospital){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
-            }
-        }
-        return returnSites;
+        SiteCatalog sites = getCatalog();
+        return sites.toSites(sites.without(SiteCatalog.Attribute.HOSPITAL));
     }
 
     /**
@@ -142,18 +146,7 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchHospital() throws IOException, InterruptedException {
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site with suburb name
-        for (ObjectNode node: sites) {
-            boolean siteHospital = node.get("additionalInfo").get("hospital").booleanValue();
-            if (siteHospital){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
-            }
-        }
-        return returnSites;
+        return search(EnumSet.of(SiteCatalog.Attribute.HOSPITAL));
     }
 
     /**
@@ -163,18 +156,7 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchGPs() throws IOException, InterruptedException {
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site with suburb name
-        for (ObjectNode node: sites) {
-            boolean siteGP = node.get("additionalInfo").get("GP").booleanValue();
-            if (siteGP){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
-            }
-        }
-        return returnSites;
+        return search(EnumSet.of(SiteCatalog.Attribute.GP));
     }
 
     /**
@@ -184,37 +166,122 @@ public class SiteSearch {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public List<CovidTestingSite> searchHomeTesting() throws IOException, InterruptedException {
-        sites = this.getTestSites();
-        List<CovidTestingSite> returnSites = new ArrayList<>();
-        // loop through test sites and look for test site which provides home testing
-        for (ObjectNode node: sites) {
-            boolean siteHomeTesting = node.get("additionalInfo").get("homeTesting").booleanValue();
-            if (siteHomeTesting){
-                String id = node.get("id").textValue();
-                CovidTestingSite testSite = new CovidTestingSite(id);
-                returnSites.add(testSite);
+        return search(EnumSet.of(SiteCatalog.Attribute.HOME_TESTING));
+    }
+
+    /**
+     * Function to search for test sites which have all the given attributes (e.g. drive through hospitals)
+     * @param attributes attributes the sites must have
+     * @return returnSites Covid test sites which have all the attributes
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public List<CovidTestingSite> search(Set<SiteCatalog.Attribute> attributes) throws IOException, InterruptedException {
+        SiteCatalog sites = getCatalog();
+        return sites.toSites(sites.withAll(attributes));
+    }
+
+    /**
+     * Function to get the current snapshot of all testing sites. The api is only called when there is no snapshot yet,
+     * neither in memory nor in the snapshot file; once the snapshot is older than its time to live it is still returned
+     * while a new one is downloaded in the background.
+     * @return snapshot of all testing sites
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public SiteCatalog getCatalog() throws IOException, InterruptedException {
+        SiteCatalog loaded = catalog;
+        SiteCatalog current = loaded != null ? loaded : loadCatalog();
+        if (System.currentTimeMillis() - current.getLoadedAtMillis() > ttlMillis && refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    catalog = downloadCatalog(current);
+                } catch (IOException e) {
+                    // keep serving the current snapshot, the next search will try again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * Function to read the first snapshot of all testing sites from the snapshot file, or to download it if there is
+     * none, making sure it is only loaded once
+     * @return snapshot of all testing sites
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private SiteCatalog loadCatalog() throws IOException, InterruptedException {
+        loadLock.lock();
+        try {
+            if (catalog == null) {
+                SiteCatalog saved = readSnapshot();
+                catalog = saved != null ? saved : downloadCatalog(null);
             }
+            return catalog;
+        } finally {
+            loadLock.unlock();
         }
-        return returnSites;
     }
 
     /**
-     * Function to get list of all covid test sites from the api
-     * @return jsonSiteNodes Nodes for linked list with testing sites in each node
+     * Function to download a snapshot of all testing sites, keeping the current snapshot if the api answers that the
+     * testing sites have not changed since it was downloaded
+     * @param current current snapshot, or null if there is none
+     * @return snapshot of all testing sites
      * @throws IOException Exception that occurs when an IO operation fails
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
-    public ObjectNode[] getTestSites() throws IOException, InterruptedException {
+    private SiteCatalog downloadCatalog(SiteCatalog current) throws IOException, InterruptedException {
+        HttpResponse<String> response = ApiGateway.getInstance().get(sitePath);
+        if (current != null && ApiGateway.isRevalidated(response)) {
+            return current.revalidated(System.currentTimeMillis());
+        }
+        long loadedAtMillis = System.currentTimeMillis();
+        SiteCatalog downloaded = new SiteCatalog(Json.readNodes(response.body()), loadedAtMillis);
+        try {
+            SnapshotFiles.write(SNAPSHOT_NAME, out -> SnapshotFiles.writeString(out, response.body()));
+        } catch (IOException e) {
+            // the snapshot only speeds up the next start
+        }
+        return downloaded;
+    }
 
-        HttpClient client = HttpClient.newHttpClient();
+    /**
+     * Function to read the testing sites saved by an earlier process. The catalog counts as loaded when they were saved,
+     * so it is refreshed in the background once it is older than its time to live.
+     * @return snapshot of all testing sites, or null if there is no snapshot file
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private SiteCatalog readSnapshot() throws IOException {
+        SnapshotFiles.Snapshot snapshot = SnapshotFiles.read(SNAPSHOT_NAME);
+        if (snapshot == null) {
+            return null;
+        }
+        String body = SnapshotFiles.readString(snapshot.getBody());
+        return new SiteCatalog(Json.readNodes(body), snapshot.getSavedAtMillis());
+    }
 
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(siteUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
+    /**
+     * Function to throw away the current snapshot, so that the next search downloads the testing sites again
+     */
+    public void invalidate() {
+        catalog = null;
+    }
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        return new ObjectMapper().readValue(response.body(), ObjectNode[].class);
+    /**
+     * Function to get list of all covid test sites from the api
+     * @return jsonSiteNodes Nodes for linked list with testing sites in each node
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public ObjectNode[] getTestSites() throws IOException, InterruptedException {
+        Deadline deadline = Deadline.budget("siteList", SITE_LIST_BUDGET_MILLIS);
+        HttpResponse<String> response = ApiGateway.getInstance().getHedged(sitePath, deadline);
+        return Json.readNodes(response.body());
     }
 }
@@ -0,0 +1,262 @@
+package facilities;
+
+import booking.BookingEvents;
+import booking.BookingRecord;
+import booking.BookingStream;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Table of the number of bookings at each testing site, split by booking status, used for the waiting time of a site.
+ * It is built from one pass over the booking list and then kept up to date as this application creates, changes and
+ * deletes bookings, so the waiting time of any site is read without calling the api.
+ * The table is rebuilt in the background once it is older than its time to live, to pick up bookings made elsewhere.
+ */
+public class WaitingTimeTable {
+
+    /**
+     * Instance of WaitingTimeTable class
+     */
+    private static WaitingTimeTable firstInstance = null;
+
+    /**
+     * System property holding how long (in seconds) the table is used before it is rebuilt
+     */
+    public static final String TTL_PROPERTY = "waiting.ttlSeconds";
+
+    /**
+     * Booking statuses which no longer add to the waiting time of a site
+     */
+    private static final String[] FINISHED_STATUSES = {"CANCELLED", "COMPLETED"};
+
+    /**
+     * Number of bookings at each site, keyed by site ID and then by booking status
+     */
+    private Map<String, Map<String, Integer>> countsBySite = new HashMap<>();
+
+    /**
+     * Site and status of every counted booking, keyed by booking ID, so that a change can be moved between counters
+     */
+    private Map<String, BookingRecord> bookings = new HashMap<>();
+
+    /**
+     * Time (in milliseconds) at which the table was built, or 0 if it has not been built yet
+     */
+    private long builtAtMillis = 0;
+
+    /**
+     * How long (in milliseconds) the table is used before it is rebuilt
+     */
+    private volatile long ttlMillis = Long.getLong(TTL_PROPERTY, 300) * 1000;
+
+    /**
+     * Whether a background rebuild is currently running
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+
+    /**
+     * Lock making sure the table is only built once (a lock rather than synchronized, so that virtual threads waiting
+     * on the booking list do not pin their carrier thread)
+     */
+    private final ReentrantLock buildLock = new ReentrantLock();
+
+    /**
+     * Thread rebuilding the table in the background
+     */
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "waiting-time-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor for the WaitingTimeTable class
+     */
+    private WaitingTimeTable() {}
+
+    /**
+     * Function to return the singleton WaitingTimeTable instance
+     * @return firstInstance Singleton instance of WaitingTimeTable class
+     */
+    public static synchronized WaitingTimeTable getInstance() {
+        if (firstInstance == null) {
+            firstInstance = new WaitingTimeTable();
+        }
+        return firstInstance;
+    }
+
+    /**
+     * Function to get the waiting time at a testing site, assuming each booking which is not cancelled or completed takes an hour
+     * @param siteId ID of the testing site
+     * @return waiting time in hours
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public int getWaitingTime(String siteId) throws IOException, InterruptedException {
+        Map<String, Integer> counts = getCounts(siteId);
+        int waiting = 0;
+        for (Map.Entry<String, Integer> count : counts.entrySet()) {
+            if (!isFinished(count.getKey())) {
+                waiting += count.getValue();
+            }
+        }
+        return waiting;
+    }
+
+    /**
+     * Function to get the number of bookings at a testing site for each booking status
+     * @param siteId ID of the testing site
+     * @return copy of the counts, keyed by booking status
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public Map<String, Integer> getCounts(String siteId) throws IOException, InterruptedException {
+        ensureBuilt();
+        synchronized (this) {
+            Map<String, Integer> counts = countsBySite.get(siteId);
+            return counts == null ? new HashMap<>() : new HashMap<>(counts);
+        }
+    }
+
+    /**
+     * Function to count a booking which was created or changed, moving it out of the counter it was in before
+     * @param booking the booking as it is now
+     */
+    public synchronized void update(BookingRecord booking) {
+        if (builtAtMillis == 0) {
+            // the table will include the booking when it is built
+            return;
+        }
+        BookingRecord previous = bookings.get(booking.getId());
+        if (previous != null && booking.isOlderThan(previous)) {
+            // the table already holds a more recent change of the booking
+            return;
+        }
+        if (booking.getSiteId() == null && previous != null) {
+            // changes returned without their testing site stay at the site they were booked at
+            booking = booking.withSiteId(previous.getSiteId());
+        }
+        if (previous != null) {
+            count(previous, -1);
+        }
+        bookings.put(booking.getId(), booking);
+        count(booking, 1);
+    }
+
+    /**
+     * Function to stop counting a booking which was deleted
+     * @param bookingId ID of the booking
+     */
+    public synchronized void remove(String bookingId) {
+        BookingRecord previous = bookings.remove(bookingId);
+        if (previous != null) {
+            count(previous, -1);
+        }
+    }
+
+    /**
+     * Mutator for how long the table is used before it is rebuilt
+     * @param ttlSeconds time in seconds
+     */
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Function to add to the counter of a booking's site and status
+     * @param booking the booking
+     * @param delta amount to add
+     */
+    private void count(BookingRecord booking, int delta) {
+        if (booking.getSiteId() == null) {
+            return;
+        }
+        String status = booking.getStatus() == null ? "UNKNOWN" : booking.getStatus();
+        Map<String, Integer> counts = countsBySite.computeIfAbsent(booking.getSiteId(), key -> new HashMap<>());
+        counts.merge(status, delta, Integer::sum);
+    }
+
+    /**
+     * Function to build the table if it has not been built yet, or start a background rebuild if it is too old
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private void ensureBuilt() throws IOException, InterruptedException {
+        long builtAt;
+        synchronized (this) {
+            builtAt = builtAtMillis;
+        }
+        if (builtAt == 0) {
+            buildLock.lock();
+            try {
+                if (!isBuilt()) {
+                    rebuild();
+                }
+            } finally {
+                buildLock.unlock();
+            }
+        } else if (System.currentTimeMillis() - builtAt > ttlMillis && rebuilding.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                try {
+                    rebuild();
+                } catch (IOException e) {
+                    // keep the current counts, the next read will try again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Function to check whether the table has been built
+     * @return true if the table has been built
+     */
+    private synchronized boolean isBuilt() {
+        return builtAtMillis != 0;
+    }
+
+    /**
+     * Function to rebuild the table from one pass over the booking list
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private void rebuild() throws IOException, InterruptedException {
+        long startedAt = System.currentTimeMillis();
+        Map<String, BookingRecord> newBookings = new HashMap<>();
+        BookingStream.forEach(booking -> true, booking -> newBookings.put(booking.getId(), booking));
+        // changes made while the list was downloaded must not be replaced by the older bookings in the list
+        BookingEvents.apply(newBookings, reconciled -> {
+            synchronized (this) {
+                countsBySite = new HashMap<>();
+                bookings = reconciled;
+                for (BookingRecord booking : bookings.values()) {
+                    count(booking, 1);
+                }
+                builtAtMillis = startedAt;
+            }
+        });
+    }
+
+    /**
+     * Function to check whether a booking status no longer adds to the waiting time
+     * @param status booking status
+     * @return true if bookings with this status are finished
+     */
+    private static boolean isFinished(String status) {
+        for (String finished : FINISHED_STATUSES) {
+            if (finished.equals(status)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -61,8 +61,9 @@ public class ResidentModel {
         }
         else{
             System.out.println("Select site to book:");
+            List<String> descriptions = CovidTestingSite.getDescriptions(options);
             for(int i=0; i<options.size(); i++){
-                System.out.println((i + 1) + ") " + options.get(i).getDescription());
+                System.out.println((i + 1) + ") " + descriptions.get(i));
             }
             Scanner selection = new Scanner(System.in);
             int siteChoice = selection.nextInt();
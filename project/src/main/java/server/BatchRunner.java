@@ -0,0 +1,326 @@
+package server;
+
+import api.ApiGateway;
+import booking.Booking;
+import booking.PinIndex;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import users.Receptionist;
+import utilities.VirtualThreads;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Non-interactive runner for bulk receptionist work. It reads a command file, runs the commands with a bounded number
+ * in flight at a time against the shared caches, and writes a results file with the outcome and latency of each command.
+ * <p>
+ * Command file: one command per line, blank lines and lines starting with # are skipped.
+ * <ul>
+ *     <li>check-pin &lt;pin&gt;</li>
+ *     <li>check-booking &lt;bookingId&gt;</li>
+ *     <li>cancel &lt;bookingId&gt;</li>
+ *     <li>modify &lt;bookingId&gt; &lt;siteId or -&gt; [&lt;yyyy-MM-dd hh:mm:ss&gt;]</li>
+ *     <li>delete &lt;bookingId&gt;</li>
+ *     <li>verify-qr &lt;qrCode&gt;</li>
+ * </ul>
+ * Results file: tab separated line number, command, OK or ERROR, latency in milliseconds and details, in the order of the
+ * command file.
+ * <p>
+ * Usage: BatchRunner &lt;command file&gt; &lt;results file&gt; [parallelism] [receptionist ID]
+ */
+public class BatchRunner {
+
+    /**
+     * Default number of commands running at the same time
+     */
+    private static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * Receptionist the commands are run as
+     */
+    private final Receptionist receptionist;
+
+    /**
+     * Number of commands running at the same time
+     */
+    private final int parallelism;
+
+    /**
+     * Outcome of one command
+     */
+    public static final class Result {
+        private final int lineNumber;
+        private final String command;
+        private final boolean ok;
+        private final long latencyMillis;
+        private final String detail;
+
+        private Result(int lineNumber, String command, boolean ok, long latencyMillis, String detail) {
+            this.lineNumber = lineNumber;
+            this.command = command;
+            this.ok = ok;
+            this.latencyMillis = latencyMillis;
+            this.detail = detail;
+        }
+
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public boolean isOk() {
+            return ok;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    /**
+     * Constructor for the BatchRunner class
+     * @param receptionistId ID of the receptionist the commands are run as
+     * @param parallelism number of commands running at the same time
+     */
+    public BatchRunner(String receptionistId, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.receptionist = new Receptionist(receptionistId);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Function to run all the commands of a command file and write their results
+     * @param commandFile file holding the commands
+     * @param resultsFile file the results are written to
+     * @return results of the commands, in the order of the command file
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public List<Result> run(Path commandFile, Path resultsFile) throws IOException, InterruptedException {
+        List<String> lines = Files.readAllLines(commandFile, StandardCharsets.UTF_8);
+        Semaphore permits = new Semaphore(parallelism);
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("batch");
+        List<Future<Result>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i).trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                int lineNumber = i + 1;
+                // waiting here keeps at most `parallelism` commands in flight without queueing the whole file
+                permits.acquire();
+                futures.add(executor.submit(() -> {
+                    try {
+                        return runCommand(lineNumber, line);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<Result> results = new ArrayList<>(futures.size());
+            for (Future<Result> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+            }
+            writeResults(resultsFile, results);
+            return results;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Function to run one command and time it
+     * @param lineNumber line of the command in the command file
+     * @param line the command
+     * @return the outcome of the command
+     */
+    private Result runCommand(int lineNumber, String line) {
+        long start = System.nanoTime();
+        boolean ok = true;
+        String detail;
+        try {
+            detail = execute(line.split("\\s+"));
+        } catch (IOException | RuntimeException e) {
+            ok = false;
+            detail = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ok = false;
+            detail = "Interrupted";
+        }
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        return new Result(lineNumber, line, ok, latencyMillis, detail);
+    }
+
+    /**
+     * Function to execute one command
+     * @param args the command followed by its arguments
+     * @return description of the outcome
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     * @throws IllegalArgumentException if the command is unknown or its arguments are wrong
+     * @throws IllegalStateException if the booking cannot be changed
+     */
+    private String execute(String[] args) throws IOException, InterruptedException {
+        String command = args[0].toLowerCase();
+        switch (command) {
+            case "check-pin": {
+                requireArgs(args, 2);
+                ObjectNode booking = PinIndex.getInstance().lookupBooking(args[1]);
+                if (booking == null) {
+                    throw new IllegalArgumentException("Pin code is invalid");
+                }
+                return booking.get("id").textValue() + " " + booking.get("status").textValue();
+            }
+            case "check-booking": {
+                requireArgs(args, 2);
+                return getBooking(args[1]).get("status").textValue();
+            }
+            case "cancel": {
+                requireArgs(args, 2);
+                ObjectNode booking = getBooking(args[1]);
+                String cancelError = Booking.getCancelError(booking);
+                if (cancelError != null) {
+                    throw new IllegalStateException(cancelError);
+                }
+                new Booking(receptionist).cancelBooking(booking);
+                return "CANCELLED";
+            }
+            case "modify": {
+                requireArgs(args, 3);
+                String newSiteId = args[2].equals("-") ? null : args[2];
+                Date newDate = null;
+                if (args.length > 3) {
+                    String dateInput = String.join(" ", Arrays.copyOfRange(args, 3, args.length));
+                    DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+                    try {
+                        newDate = dateFormat.parse(dateInput);
+                    } catch (ParseException e) {
+                        throw new IllegalArgumentException("Date must be formatted as yyyy-MM-dd hh:mm:ss");
+                    }
+                }
+                if (newSiteId == null && newDate == null) {
+                    throw new IllegalArgumentException("Nothing to modify");
+                }
+                return "new booking " + new Booking(receptionist).modifyBooking(getBooking(args[1]), newDate, newSiteId);
+            }
+            case "delete": {
+                requireArgs(args, 2);
+                ApiGateway.await(new Booking(receptionist).delete_bookingAsync(args[1]));
+                return "DELETED";
+            }
+            case "verify-qr": {
+                requireArgs(args, 2);
+                if (!receptionist.validateQrCode(args[1])) {
+                    throw new IllegalArgumentException("Invalid QR code");
+                }
+                return "QR code valid";
+            }
+            default:
+                throw new IllegalArgumentException("Unknown command " + args[0]);
+        }
+    }
+
+    /**
+     * Function to get a booking, failing if there is no booking with this ID
+     * @param bookingId ID of the booking
+     * @return the booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private ObjectNode getBooking(String bookingId) throws IOException, InterruptedException {
+        ObjectNode booking = receptionist.getBookingById(bookingId);
+        if (!booking.hasNonNull("status")) {
+            throw new IllegalArgumentException("Invalid Booking ID");
+        }
+        return booking;
+    }
+
+    /**
+     * Function to check that a command has enough arguments
+     * @param args the command followed by its arguments
+     * @param count minimum number of tokens including the command
+     */
+    private static void requireArgs(String[] args, int count) {
+        if (args.length < count) {
+            throw new IllegalArgumentException("Missing arguments for " + args[0]);
+        }
+    }
+
+    /**
+     * Function to write the results file
+     * @param resultsFile file the results are written to
+     * @param results results of the commands
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static void writeResults(Path resultsFile, List<Result> results) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8)) {
+            writer.write("line\tcommand\tresult\tlatencyMs\tdetail");
+            writer.newLine();
+            for (Result result : results) {
+                writer.write(result.lineNumber + "\t" + result.command + "\t" + (result.ok ? "OK" : "ERROR") + "\t"
+                        + result.latencyMillis + "\t" + result.detail.replace('\t', ' ').replace('\n', ' '));
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Function to run a command file from the command line and print a summary
+     * @param args command file, results file, optional parallelism and optional receptionist ID
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.out.println("Usage: BatchRunner <command file> <results file> [parallelism] [receptionist ID]");
+            return;
+        }
+        int parallelism = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_PARALLELISM;
+        String receptionistId = args.length > 3 ? args[3] : "batch";
+        long start = System.nanoTime();
+        List<Result> results = new BatchRunner(receptionistId, parallelism).run(Paths.get(args[0]), Paths.get(args[1]));
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        long[] latencies = results.stream().mapToLong(Result::getLatencyMillis).sorted().toArray();
+        long failed = results.stream().filter(result -> !result.isOk()).count();
+        System.out.println(results.size() + " commands, " + failed + " failed, in " + elapsedMillis + " ms");
+        if (latencies.length > 0) {
+            System.out.println("latency p50 " + latencies[latencies.length / 2] + " ms, p95 "
+                    + latencies[(int) Math.min(latencies.length - 1, Math.round(latencies.length * 0.95))] + " ms, max "
+                    + latencies[latencies.length - 1] + " ms");
+        }
+        ApiGateway api = ApiGateway.getInstance();
+        System.out.println("concurrency limit " + api.getConcurrencyLimit() + ", " + api.getBackoffs() + " back offs, "
+                + api.getRetriedRequests() + " retries, " + api.getRejectedRequests() + " failed fast");
+    }
+}
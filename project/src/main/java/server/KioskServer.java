@@ -0,0 +1,638 @@
+package server;
+
+import api.ApiGateway;
+import api.ApiStatusException;
+import api.CircuitOpenException;
+import api.Json;
+import booking.Booking;
+import booking.PinIndex;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import facilities.CovidTestingSite;
+import facilities.OnSiteTesting;
+import facilities.SiteCatalog;
+import facilities.SiteSearch;
+import users.BookableUser;
+import utilities.SymptomsCollection;
+import utilities.VirtualThreads;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Embedded HTTP service which exposes the booking operations as non-interactive JSON calls, so that check-in kiosks can
+ * use the system without the console menus. Every request runs on its own thread (a virtual thread on Java 21) and
+ * reuses the Booking, SiteSearch and OnSiteTesting logic and the shared caches.
+ * <p>
+ * Endpoints (all under /kiosk):
+ * <ul>
+ *     <li>GET /sites[?suburb=...][&amp;attributes=DRIVE_THROUGH,WALK_IN,...] - search testing sites</li>
+ *     <li>POST /bookings {customerId, siteId} - make a booking</li>
+ *     <li>POST /home-bookings {customerId, siteId, ratKitRequired} - make a home booking</li>
+ *     <li>GET /bookings/status?pin=... or ?bookingId=... - status of a booking</li>
+ *     <li>POST /bookings/{id}/modify {startTime "yyyy-MM-dd hh:mm:ss", siteId} - modify the time and/or venue</li>
+ *     <li>POST /bookings/{id}/cancel - cancel a booking</li>
+ *     <li>POST /bookings/{id}/revert {pastBookingId} - change a booking back to a previous booking</li>
+ *     <li>POST /triage {siteId, pin, administererId, overseasTravel, ratPositive, levelOfContact, symptoms} - on site test form</li>
+ *     <li>GET /metrics - request limits and counters of the connection to the web service</li>
+ * </ul>
+ * Errors are returned as {statusCode, message}, like the web service.
+ * <p>
+ * The endpoints act with the api key of the system, so every request must carry the shared kiosk token in the
+ * X-Kiosk-Token header, and the service only listens on this machine unless kiosk.host says otherwise.
+ */
+public class KioskServer {
+
+    /**
+     * System property holding the port to listen on
+     */
+    public static final String PORT_PROPERTY = "kiosk.port";
+
+    /**
+     * System property holding the address to listen on (e.g. 0.0.0.0 to serve kiosks on other machines)
+     */
+    public static final String HOST_PROPERTY = "kiosk.host";
+
+    /**
+     * Address listened on unless HOST_PROPERTY is set
+     */
+    public static final String DEFAULT_HOST = "127.0.0.1";
+
+    /**
+     * System property holding the token kiosks must send; a random one is made (and printed) when it is not set
+     */
+    public static final String TOKEN_PROPERTY = "kiosk.token";
+
+    /**
+     * Header carrying the kiosk token
+     */
+    public static final String TOKEN_HEADER = "X-Kiosk-Token";
+
+    /**
+     * Base path of all endpoints
+     */
+    private static final String basePath = "/kiosk";
+
+    /**
+     * URL endpoint for all bookings of the web service
+     */
+    private static final String bookingPath = "/booking";
+
+    /**
+     * Mapper for request and response bodies, shared with the rest of the application
+     */
+    private static final ObjectMapper mapper = Json.mapper();
+
+    /**
+     * Embedded HTTP server
+     */
+    private final HttpServer server;
+
+    /**
+     * Executor running the requests
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Token every request must carry, as UTF-8 bytes
+     */
+    private final byte[] token;
+
+    /**
+     * Gateway used to send requests to the web service
+     */
+    private final ApiGateway api = ApiGateway.getInstance();
+
+    /**
+     * Exception carrying the HTTP status to answer a request with
+     */
+    private static final class KioskException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        private KioskException(int statusCode, String message) {
+            super(message);
+            this.statusCode = statusCode;
+        }
+    }
+
+    /**
+     * Customer a kiosk makes a booking for
+     */
+    private static final class KioskCustomer implements BookableUser {
+        private final String customerId;
+        private final String siteId;
+
+        private KioskCustomer(String customerId, String siteId) {
+            this.customerId = customerId;
+            this.siteId = siteId;
+        }
+
+        @Override
+        public void makeBooking() {
+            try {
+                new Booking(this).addBooking();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while making the booking", e);
+            }
+        }
+
+        @Override
+        public String getSiteId() {
+            return siteId;
+        }
+
+        @Override
+        public String getBookingUserId() {
+            return customerId;
+        }
+    }
+
+    /**
+     * Constructor for the KioskServer class
+     * @param host address to listen on
+     * @param port port to listen on, or 0 for any free port
+     * @param token token every request must carry in the X-Kiosk-Token header
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public KioskServer(String host, int port, String token) throws IOException {
+        if (token == null || token.isBlank()) {
+            throw new IllegalArgumentException("A kiosk token is required");
+        }
+        this.token = token.getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName(host), port), 0);
+        executor = VirtualThreads.newPerTaskExecutor("kiosk");
+        server.setExecutor(executor);
+        server.createContext(basePath, this::handle);
+    }
+
+    /**
+     * Function to check that a request carries the kiosk token, comparing in constant time so that the token cannot be
+     * guessed from how quickly requests are refused
+     * @param exchange the request
+     * @return true if the request carries the token
+     */
+    private boolean isAuthorised(HttpExchange exchange) {
+        String sent = exchange.getRequestHeaders().getFirst(TOKEN_HEADER);
+        return sent != null && MessageDigest.isEqual(token, sent.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Function to start answering requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Function to stop answering requests
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    /**
+     * Accessor for the port the server listens on
+     * @return port number
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Function to answer one request
+     * @param exchange the request and its response
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!isAuthorised(exchange)) {
+                throw new KioskException(401, "A valid " + TOKEN_HEADER + " header is required");
+            }
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring(basePath.length()).split("/");
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (path.length == 2 && path[1].equals("sites") && method.equals("GET")) {
+                send(exchange, 200, searchSites(query));
+            } else if (path.length == 2 && path[1].equals("bookings") && method.equals("POST")) {
+                send(exchange, 201, makeBooking(readBody(exchange)));
+            } else if (path.length == 2 && path[1].equals("home-bookings") && method.equals("POST")) {
+                send(exchange, 201, makeHomeBooking(readBody(exchange)));
+            } else if (path.length == 3 && path[1].equals("bookings") && path[2].equals("status") && method.equals("GET")) {
+                send(exchange, 200, getStatus(query));
+            } else if (path.length == 4 && path[1].equals("bookings") && method.equals("POST")) {
+                switch (path[3]) {
+                    case "modify":
+                        send(exchange, 200, modifyBooking(path[2], readBody(exchange)));
+                        break;
+                    case "cancel":
+                        send(exchange, 200, cancelBooking(path[2]));
+                        break;
+                    case "revert":
+                        send(exchange, 200, revertBooking(path[2], readBody(exchange)));
+                        break;
+                    default:
+                        throw new KioskException(404, "Unknown endpoint");
+                }
+            } else if (path.length == 2 && path[1].equals("triage") && method.equals("POST")) {
+                send(exchange, 200, triage(readBody(exchange)));
+            } else if (path.length == 2 && path[1].equals("metrics") && method.equals("GET")) {
+                send(exchange, 200, metrics());
+            } else {
+                throw new KioskException(404, "Unknown endpoint");
+            }
+        } catch (KioskException e) {
+            sendError(exchange, e.statusCode, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } catch (ApiStatusException e) {
+            // the web service refused the request: its client errors are the kiosk's, anything else is a bad gateway
+            sendError(exchange, e.getStatusCode() / 100 == 4 ? e.getStatusCode() : 502, e.getMessage());
+        } catch (CircuitOpenException e) {
+            sendError(exchange, 503, e.getMessage());
+        } catch (HttpTimeoutException e) {
+            sendError(exchange, 504, "The web service did not answer in time: " + e.getMessage());
+        } catch (IOException e) {
+            sendError(exchange, 502, "The web service could not be reached: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(exchange, 503, "The request was interrupted");
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, String.valueOf(e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Function to report the request limits and counters of the connection to the web service
+     * @return the current concurrency limit, requests in flight and queued, and the gateway counters
+     */
+    private JsonNode metrics() {
+        ApiGateway api = ApiGateway.getInstance();
+        ObjectNode result = mapper.createObjectNode();
+        result.put("concurrencyLimit", api.getConcurrencyLimit());
+        result.put("inFlight", api.getInFlightRequests());
+        result.put("queued", api.getQueuedRequests());
+        result.put("backoffs", api.getBackoffs());
+        result.put("latencyMillis", api.getLatencyMillis());
+        result.put("coalescedGets", api.getCoalescedGets());
+        result.put("revalidatedGets", api.getRevalidatedGets());
+        result.put("hedgedGets", api.getHedgedGets());
+        result.put("retriedRequests", api.getRetriedRequests());
+        result.put("rejectedRequests", api.getRejectedRequests());
+        result.put("staleGets", api.getStaleGets());
+        ObjectNode openCircuits = result.putObject("openCircuits");
+        api.getOpenCircuits().forEach(openCircuits::put);
+        return result;
+    }
+
+    /**
+     * Function to search for testing sites
+     * @param query suburb and/or comma separated attributes the sites must have
+     * @return the matching sites with their state and waiting time
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode searchSites(Map<String, String> query) throws IOException, InterruptedException {
+        Set<SiteCatalog.Attribute> attributes = EnumSet.noneOf(SiteCatalog.Attribute.class);
+        if (query.containsKey("attributes")) {
+            for (String attribute : query.get("attributes").split(",")) {
+                attributes.add(SiteCatalog.Attribute.valueOf(attribute.trim().toUpperCase()));
+            }
+        }
+        SiteCatalog catalog = SiteSearch.getInstance().getCatalog();
+        BitSet matches = catalog.withAll(attributes);
+        if (query.containsKey("suburb")) {
+            matches.and(catalog.inSuburb(query.get("suburb")));
+        }
+        ArrayNode result = mapper.createArrayNode();
+        for (CovidTestingSite site : catalog.toSites(matches)) {
+            ObjectNode node = result.addObject();
+            node.put("id", site.getSiteId());
+            node.put("name", site.getSite().path("name").textValue());
+            node.put("suburb", site.getSite().path("address").path("suburb").textValue());
+            node.put("state", site.getState());
+            node.put("waitingTime", Integer.parseInt(site.getWaitingTime()));
+        }
+        return result;
+    }
+
+    /**
+     * Function to make a booking
+     * @param body customerId and siteId
+     * @return the booking returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode makeBooking(JsonNode body) throws IOException, InterruptedException {
+        Booking booking = new Booking(new KioskCustomer(requireText(body, "customerId"), requireText(body, "siteId")));
+        booking.addBooking();
+        return fetchBooking(booking.getBookingId());
+    }
+
+    /**
+     * Function to make a home booking
+     * @param body customerId, siteId and ratKitRequired
+     * @return the booking returned by the web service
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode makeHomeBooking(JsonNode body) throws IOException, InterruptedException {
+        Booking booking = new Booking(new KioskCustomer(requireText(body, "customerId"), requireText(body, "siteId")));
+        return booking.addHomeBooking(body.path("ratKitRequired").asBoolean(false));
+    }
+
+    /**
+     * Function to get the status of a booking from its pin or its ID
+     * @param query pin or bookingId
+     * @return ID and status of the booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode getStatus(Map<String, String> query) throws IOException, InterruptedException {
+        ObjectNode booking;
+        if (query.containsKey("pin")) {
+            booking = PinIndex.getInstance().lookupBooking(query.get("pin"));
+            if (booking == null) {
+                throw new KioskException(404, "Invalid Pin");
+            }
+        } else if (query.containsKey("bookingId")) {
+            booking = fetchBooking(query.get("bookingId"));
+        } else {
+            throw new IllegalArgumentException("Either pin or bookingId is required");
+        }
+        ObjectNode result = mapper.createObjectNode();
+        result.put("bookingId", booking.get("id").textValue());
+        result.put("status", booking.get("status").textValue());
+        return result;
+    }
+
+    /**
+     * Function to modify the time and/or venue of a booking
+     * @param bookingId ID of the booking
+     * @param body new startTime (yyyy-MM-dd hh:mm:ss) and/or new siteId
+     * @return ID of the new booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode modifyBooking(String bookingId, JsonNode body) throws IOException, InterruptedException {
+        Date newDate = null;
+        if (body.hasNonNull("startTime")) {
+            DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd hh:mm:ss");
+            try {
+                newDate = dateFormat.parse(body.get("startTime").textValue());
+            } catch (ParseException e) {
+                throw new IllegalArgumentException("startTime must be formatted as yyyy-MM-dd hh:mm:ss");
+            }
+        }
+        String newSiteId = body.hasNonNull("siteId") ? body.get("siteId").textValue() : null;
+        if (newDate == null && newSiteId == null) {
+            throw new IllegalArgumentException("Either startTime or siteId is required");
+        }
+        ObjectNode oldBooking = fetchBooking(bookingId);
+        Booking booking = new Booking(new KioskCustomer(oldBooking.get("customer").get("id").textValue(), newSiteId));
+        ObjectNode result = mapper.createObjectNode();
+        result.put("bookingId", booking.modifyBooking(oldBooking, newDate, newSiteId));
+        return result;
+    }
+
+    /**
+     * Function to cancel a booking
+     * @param bookingId ID of the booking
+     * @return the cancelled booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode cancelBooking(String bookingId) throws IOException, InterruptedException {
+        ObjectNode oldBooking = fetchBooking(bookingId);
+        String cancelError = Booking.getCancelError(oldBooking);
+        if (cancelError != null) {
+            throw new IllegalStateException(cancelError);
+        }
+        new Booking(new KioskCustomer(oldBooking.get("customer").get("id").textValue(), null)).cancelBooking(oldBooking);
+        return fetchBooking(bookingId);
+    }
+
+    /**
+     * Function to change a booking back to a previous booking
+     * @param bookingId ID of the current booking
+     * @param body pastBookingId
+     * @return the current and the restored booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode revertBooking(String bookingId, JsonNode body) throws IOException, InterruptedException {
+        String pastBookingId = requireText(body, "pastBookingId");
+        ObjectNode currentBooking = fetchBooking(bookingId);
+        ObjectNode pastBooking = fetchBooking(pastBookingId);
+        for (ObjectNode booking : new ObjectNode[] {currentBooking, pastBooking}) {
+            String error = Booking.getCancelError(booking);
+            if (error != null) {
+                throw new IllegalStateException(error);
+            }
+        }
+        new Booking(new KioskCustomer(currentBooking.get("customer").get("id").textValue(), null))
+                .changeToPreviousBooking(currentBooking, pastBooking);
+        ObjectNode result = mapper.createObjectNode();
+        result.set("current", fetchBooking(bookingId));
+        result.set("restored", fetchBooking(pastBookingId));
+        return result;
+    }
+
+    /**
+     * Function to fill in the on site testing form and record the recommended test type
+     * @param body siteId, pin, administererId, overseasTravel, ratPositive, levelOfContact (1 to 3) and the names of the symptoms
+     * @return the recommended test type
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private JsonNode triage(JsonNode body) throws IOException, InterruptedException {
+        int levelOfContact = body.path("levelOfContact").asInt(0);
+        if (levelOfContact <= 0 || levelOfContact > 3) {
+            throw new IllegalArgumentException("levelOfContact must be 1, 2 or 3");
+        }
+        SymptomsCollection symptoms = SymptomsCollection.getInstance();
+        int mild = 0;
+        int moderate = 0;
+        int severe = 0;
+        for (JsonNode symptom : body.path("symptoms")) {
+            String name = symptom.asText().trim();
+            mild += countMatches(symptoms.getMildSymptoms(), name);
+            moderate += countMatches(symptoms.getModerateSymptoms(), name);
+            severe += countMatches(symptoms.getSevereSymptoms(), name);
+        }
+        OnSiteTesting onSite = new OnSiteTesting(requireText(body, "siteId"), requireText(body, "pin"), requireText(body, "administererId"));
+        String test = onSite.submitTestForm(body.path("overseasTravel").asBoolean(false), body.path("ratPositive").asBoolean(false),
+                levelOfContact, mild, moderate, severe);
+        ObjectNode result = mapper.createObjectNode();
+        result.put("testType", test);
+        return result;
+    }
+
+    /**
+     * Function to count how many symptoms of a category match a symptom name
+     * @param category symptoms of the category
+     * @param name name of the symptom
+     * @return 1 if the symptom belongs to the category, else 0
+     */
+    private static int countMatches(List<String> category, String name) {
+        for (String symptom : category) {
+            if (symptom.trim().equalsIgnoreCase(name)) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Function to get a booking from the web service
+     * @param bookingId ID of the booking
+     * @return the booking
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private ObjectNode fetchBooking(String bookingId) throws IOException, InterruptedException {
+        HttpResponse<String> response = api.get(bookingPath + "/" + bookingId);
+        if (response.statusCode() == 404 || response.statusCode() == 400) {
+            throw new KioskException(404, "Invalid Booking ID");
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(String.valueOf(response.statusCode()));
+        }
+        return Json.readNode(response.body());
+    }
+
+    /**
+     * Function to read a required text field of a request body
+     * @param body request body
+     * @param field name of the field
+     * @return text of the field
+     */
+    private static String requireText(JsonNode body, String field) {
+        JsonNode value = body.get(field);
+        if (value == null || !value.isTextual() || value.textValue().isEmpty()) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+        return value.textValue();
+    }
+
+    /**
+     * Function to read the JSON body of a request
+     * @param exchange the request
+     * @return the body, or an empty object if there is none
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static JsonNode readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            if (body.length == 0) {
+                return mapper.createObjectNode();
+            }
+            try {
+                return mapper.readTree(body);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("The request body is not valid JSON");
+            }
+        }
+    }
+
+    /**
+     * Function to parse the query string of a request
+     * @param rawQuery query string, or null
+     * @return parameters keyed by name
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return query;
+    }
+
+    /**
+     * Function to send a JSON response
+     * @param exchange the request
+     * @param status HTTP status code
+     * @param body response body
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static void send(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Function to send an error response
+     * @param exchange the request
+     * @param status HTTP status code
+     * @param message description of the error
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        ObjectNode error = mapper.createObjectNode();
+        error.put("statusCode", status);
+        error.put("message", message);
+        send(exchange, status, error);
+    }
+
+    /**
+     * Function to run the kiosk service until the process is stopped
+     * @param args not used
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public static void main(String[] args) throws IOException {
+        String host = System.getProperty(HOST_PROPERTY, DEFAULT_HOST);
+        String token = System.getProperty(TOKEN_PROPERTY);
+        if (token == null || token.isBlank()) {
+            token = UUID.randomUUID().toString();
+            System.out.println("No -D" + TOKEN_PROPERTY + " given, kiosks must send " + TOKEN_HEADER + ": " + token);
+        }
+        KioskServer kiosk = new KioskServer(host, Integer.getInteger(PORT_PROPERTY, 8081), token);
+        kiosk.start();
+        System.out.println("Kiosk service listening on " + host + ":" + kiosk.getPort());
+    }
+}
@@ -0,0 +1,176 @@
+package server;
+
+import controller.LoginController;
+import model.LoginModel;
+import utilities.VirtualThreads;
+import view.LoginView;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Long running service which hosts many desks (Resident, Receptionist and HealthCareWorker sessions) in one JVM.
+ * Each TCP connection (e.g. from telnet or nc) gets its own session running the same menus as Main, on its own thread,
+ * while all sessions share the api gateway and the caches (site catalog, user directory, pin index, waiting times).
+ */
+public class SessionServer {
+
+    /**
+     * System property holding the port to listen on
+     */
+    public static final String PORT_PROPERTY = "server.port";
+
+    /**
+     * System property holding the address to listen on. Sessions are plain text and not authenticated beyond the desk
+     * login, so the default only accepts connections from this machine; set it (e.g. to 0.0.0.0) to serve other hosts.
+     */
+    public static final String HOST_PROPERTY = "server.host";
+
+    /**
+     * Address listened on unless HOST_PROPERTY is set
+     */
+    public static final String DEFAULT_HOST = "127.0.0.1";
+
+    /**
+     * System property holding how long (in seconds) a session may wait for input before it is ended
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "server.idleTimeoutSeconds";
+
+    /**
+     * How long (in milliseconds) a session may wait for input before it is ended
+     */
+    private final int idleTimeoutMillis = Integer.getInteger(IDLE_TIMEOUT_PROPERTY, 600) * 1000;
+
+    /**
+     * Socket accepting new sessions
+     */
+    private final ServerSocket serverSocket;
+
+    /**
+     * Executor running the sessions
+     */
+    private final ExecutorService sessions;
+
+    /**
+     * Number of sessions currently running
+     */
+    private final AtomicInteger activeSessions = new AtomicInteger();
+
+    /**
+     * Constructor for the SessionServer class
+     * @param host address to listen on
+     * @param port port to listen on, or 0 for any free port
+     * @param sessions executor running the sessions
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public SessionServer(String host, int port, ExecutorService sessions) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getByName(host));
+        this.sessions = sessions;
+        SessionStreams.install();
+    }
+
+    /**
+     * Function to create an executor running each session on its own thread, which is a virtual thread on Java 21 or newer
+     * @return the executor
+     */
+    public static ExecutorService sessionExecutor() {
+        return VirtualThreads.newPerTaskExecutor("session");
+    }
+
+    /**
+     * Accessor for the port the server listens on
+     * @return port number
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accessor for the number of sessions currently running
+     * @return number of sessions
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Function to accept sessions until the server is closed
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                // the server socket was closed
+                break;
+            }
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(idleTimeoutMillis);
+            sessions.execute(() -> runSession(socket));
+        }
+    }
+
+    /**
+     * Function to stop accepting sessions and wait a short time for the running ones to finish
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public void close() throws IOException, InterruptedException {
+        serverSocket.close();
+        sessions.shutdown();
+        sessions.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Function to run one session (a login followed by the menu of the user's role) over a connection
+     * @param socket connection of the session
+     */
+    private void runSession(Socket socket) {
+        activeSessions.incrementAndGet();
+        try (Socket connection = socket) {
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            SessionStreams.bind(new BufferedInputStream(connection.getInputStream()), out);
+            try {
+                LoginController loginController = new LoginController(new LoginModel(), new LoginView());
+                loginController.displayMenu();
+            } catch (NoSuchElementException e) {
+                // the client closed the connection, was idle for too long or sent something other than a menu option
+                System.out.println("Session ended");
+            } catch (IOException | InterruptedException | RuntimeException e) {
+                System.out.println(e.getMessage());
+            }
+            System.out.flush();
+        } catch (IOException e) {
+            // the connection is already gone
+        } finally {
+            SessionStreams.unbind();
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    /**
+     * Function to run the session server until the process is stopped
+     * @param args not used
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public static void main(String[] args) throws IOException {
+        String host = System.getProperty(HOST_PROPERTY, DEFAULT_HOST);
+        int port = Integer.getInteger(PORT_PROPERTY, 5050);
+        SessionServer server = new SessionServer(host, port, sessionExecutor());
+        System.err.println("Session server listening on " + host + ":" + server.getPort()
+                + (VirtualThreads.isEnabled() ? " (virtual threads)" : ""));
+        server.serve();
+    }
+}
@@ -0,0 +1,174 @@
+package server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Class which routes System.in and System.out to the streams of the session running on the current thread, so that the
+ * console menus of the role classes (which read from System.in and print to System.out) can serve many sessions in one
+ * JVM. Threads which are not bound to a session keep using the original console streams.
+ */
+public class SessionStreams {
+
+    /**
+     * Console input stream before the routing streams were installed
+     */
+    private static final InputStream consoleIn = System.in;
+
+    /**
+     * Console output stream before the routing streams were installed
+     */
+    private static final PrintStream consoleOut = System.out;
+
+    /**
+     * Input stream of the session bound to each thread
+     */
+    private static final ThreadLocal<InputStream> sessionIn = new ThreadLocal<>();
+
+    /**
+     * Output stream of the session bound to each thread
+     */
+    private static final ThreadLocal<OutputStream> sessionOut = new ThreadLocal<>();
+
+    /**
+     * Whether the routing streams have been installed
+     */
+    private static boolean installed = false;
+
+    /**
+     * Constructor for the SessionStreams class
+     */
+    private SessionStreams() {}
+
+    /**
+     * Function to replace System.in and System.out with streams routing to the session of the calling thread
+     */
+    public static synchronized void install() {
+        if (!installed) {
+            System.setIn(new RoutedInputStream());
+            System.setOut(new PrintStream(new RoutedOutputStream(), true));
+            installed = true;
+        }
+    }
+
+    /**
+     * Function to bind the calling thread to the streams of a session
+     * @param in input of the session
+     * @param out output of the session
+     */
+    public static void bind(InputStream in, OutputStream out) {
+        sessionIn.set(new LineInputStream(in));
+        sessionOut.set(out);
+    }
+
+    /**
+     * Function to unbind the calling thread from its session, so it uses the console streams again
+     */
+    public static void unbind() {
+        sessionIn.remove();
+        sessionOut.remove();
+    }
+
+    /**
+     * Input stream reading from the session of the calling thread
+     */
+    private static final class RoutedInputStream extends InputStream {
+
+        private InputStream target() {
+            InputStream in = sessionIn.get();
+            return in == null ? consoleIn : in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return target().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return target().read(b, off, len);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return target().available();
+        }
+    }
+
+    /**
+     * Output stream writing to the session of the calling thread.
+     * PrintStream writes through to this stream while holding its lock, so each write comes from the printing thread.
+     */
+    private static final class RoutedOutputStream extends OutputStream {
+
+        private OutputStream target() {
+            OutputStream out = sessionOut.get();
+            return out == null ? consoleOut : out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            target().write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            target().write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target().flush();
+        }
+    }
+
+    /**
+     * Input stream returning at most one line per read and reporting nothing as available.
+     * The role classes create a new Scanner for every answer, and a Scanner keeps whatever it has read ahead, so a
+     * session stream must never hand over more than the line being answered.
+     */
+    private static final class LineInputStream extends InputStream {
+
+        private final InputStream in;
+
+        private LineInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < len) {
+                int next = in.read();
+                if (next < 0) {
+                    return count == 0 ? -1 : count;
+                }
+                b[off + count++] = (byte) next;
+                if (next == '\n') {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
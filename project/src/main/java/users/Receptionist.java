@@ -1,20 +1,25 @@
 package users;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.text.ParseException;
 import java.util.*;
 
 import controller.ReceptionistController;
 import view.ReceptionistView;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import api.ApiStatusException;
+import api.CircuitOpenException;
+import api.Deadline;
+import api.Json;
+import api.dto.BookingDto;
+import api.RequestBodies;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import booking.Booking;
-import facilities.OnSiteTesting;
-import utilities.AccessToken;
+import booking.BookingEvents;
+import booking.BookingRecord;
+import booking.BookingReplica;
+import booking.PinIndex;
+import facilities.SiteSearch;
 
 /**
  * Receptionist class for users.Receptionist who can book on site tests, check booking status or give an RAT kit
@@ -46,26 +51,6 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
      */
     private ReceptionistView receptionistView;
 
-    /**
-     * API key needed to access the web service
-     */
-    private static final String myApiKey = AccessToken.token;
-
-    /**
-     * Http client which can be used to send requests and retrieve their response
-     */
-    private HttpClient client;
-
-    /**
-     * HttpRequest to send requests
-     */
-    private HttpRequest request;
-
-    /**
-     * HttpResponse to retrieve responses
-     */
-    private HttpResponse<String> response;
-
     /**
      * Constructor for Receptionist class
      *
@@ -93,8 +78,12 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
         Booking booking = new Booking(this);
         try {
             booking.addBooking();
+        } catch (CircuitOpenException e) {
+            System.out.println("Error: The booking cannot be made. " + e.getMessage());
+            return;
         } catch (IOException | InterruptedException e) {
             System.out.println("Error: The booking cannot be made. Invalid user or test site ID");
+            return;
         }
         System.out.println("Your booking has been created successfully");
         System.out.println("You will receive your PIN number shortly");
@@ -183,7 +172,12 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
                 System.out.println("Please enter the customer ID: ");
                 String cID= sc.nextLine();
                 if(customerID.equalsIgnoreCase(cID)) {
-                    booking.cancelBooking(cancelBooking);
+                    String cancelError = Booking.getCancelError(cancelBooking);
+                    if (cancelError != null) {
+                        System.out.println(cancelError);
+                    } else {
+                        booking.cancelBooking(cancelBooking);
+                    }
                 }
                 else{
                     System.out.println("You have entered an incorrect customer ID");
@@ -220,39 +214,16 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
     }
 
     public void view_notifs(String notifSiteId) throws IOException, InterruptedException {
-        // siteId
-        // obtaining all bookings
-        String bookingUrl = "https://fit3077.com/api/v2/booking";
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode[] bookingNodes = new ObjectMapper().readValue(response.body(), ObjectNode[].class);
+        List<BookingRecord> bookings = BookingReplica.getInstance().bySite(notifSiteId);
         int index = 1;
-        for (ObjectNode node: bookingNodes) {
-
-            // if booking was made at this testing site
-            String siteId = node.get("testingSite").get("id").textValue();
-            if (Objects.equals(siteId, notifSiteId)){
-                // and if booking was modified
-                try{
-                    if (node.get("additionalInfo").get("modified").booleanValue()){
-                        Booking booking = new Booking(this);
-                        System.out.println(index + ")" +booking.display_booking_description(node.get("id").textValue()));
-                        index++;
-                        System.out.println("---------------------------------------------------------------------");
-                    }
-                } catch(NullPointerException ignored){
-
-                }
-
+        for (BookingRecord node: bookings) {
+            if (!node.isModified()) {
+                continue;
             }
-
+            Booking booking = new Booking(this);
+            System.out.println(index + ")" +booking.display_booking_description(node.getId()));
+            index++;
+            System.out.println("---------------------------------------------------------------------");
         }
     }
 
@@ -264,19 +235,26 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public boolean validateQrCode(String qrCode) throws IOException, InterruptedException {
-        OnSiteTesting onSite = new OnSiteTesting(siteId, customerId, userID);
-        ObjectNode[] bookingNodes = onSite.getBookings();
-        boolean validity = false;
-        for (ObjectNode node : bookingNodes) {
-            if (node.get("testingSite").get("additionalInfo").get("homeTesting").booleanValue()) {
-                try {
-                    if (Objects.equals(node.get("additionalInfo").get("qrCode").textValue(), qrCode)) {
-                        validity = true;
-                        updateRATState(node);
-                    }
-                } catch (NullPointerException ignored) {
-                }
+        // the replica finds the booking by its QR code, then only that booking is downloaded to check it is current
+        BookingRecord record = BookingReplica.getInstance().byQrCode(qrCode);
+        if (record == null) {
+            return false;
+        }
+        ObjectNode node;
+        try {
+            node = getBookingById(record.getId());
+        } catch (ApiStatusException e) {
+            if (e.getStatusCode() != 404) {
+                throw e;
             }
+            BookingReplica.getInstance().remove(record.getId());
+            return false;
+        }
+        boolean validity = false;
+        if (node.path("testingSite").path("additionalInfo").path("homeTesting").booleanValue()
+                && Objects.equals(node.path("additionalInfo").path("qrCode").textValue(), qrCode)) {
+            validity = true;
+            updateRATState(node);
         }
         return validity;
     }
@@ -292,25 +270,13 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
         String bookingId = booking.get("id").textValue();
         String ratUrl = booking.get("additionalInfo").get("url").textValue();
 
-        String bookingUrl = "https://fit3077.com/api/v2/booking/" + bookingId;
+        byte[] bookingJson = RequestBodies.additionalInfo(
+                RequestBodies.homeTest(true, "RECEIVED", actualQrCode, ratUrl, null));
 
-        String bookingString = "{\n" +
-                "  \"additionalInfo\": {\n" +
-                "      \"homeTest\": true,\n" +
-                "      \"ratKitRequired\": true,\n" +
-                "      \"ratKitStatus\": \"RECEIVED\",\n" +
-                "      \"qrCode\": \"" + actualQrCode + "\",\n" +
-                "      \"url\": \"" + ratUrl + "\"\n" +
-                "   }\n" +
-                "}";
-
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest.newBuilder(URI.create(bookingUrl)) // Return a JWT, so we can use it in Part 5 later.
-                .setHeader("Authorization", AccessToken.token)
-                .header("Content-Type", "application/json") // This header needs to be set when sending a JSON request body.
-                .method("PATCH", HttpRequest.BodyPublishers.ofString(bookingString))
-                .build();
-        client.send(request, HttpResponse.BodyHandlers.ofString());
+        HttpResponse<String> response = api.patch("/booking/" + bookingId, bookingJson);
+        if (response.statusCode() / 100 == 2) {
+            BookingEvents.changed(Json.read(response.body(), BookingDto.class));
+        }
     }
 
     /**
@@ -320,17 +286,9 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public ObjectNode[] getTestSites() throws IOException, InterruptedException {
-        String siteUrl = "https://fit3077.com/api/v2/testing-site";
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest request = HttpRequest
-                .newBuilder(URI.create(siteUrl))
-                .setHeader("Authorization", AccessToken.token)
-                .GET()
-                .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
         // so we can loop through the response
-        return new ObjectMapper().readValue(response.body(), ObjectNode[].class);
+        Deadline deadline = Deadline.budget("siteList", SiteSearch.SITE_LIST_BUDGET_MILLIS);
+        return Json.readNodes(api.getHedged("/testing-site", deadline).body());
     }
 
     /**
@@ -375,23 +333,23 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
     }
 
     /**
-     * Function to return the booking object using the booking ID
+     * Function to return the booking object using the booking ID, with a hedged GET bounded by a deadline
      * @param bookingId ID of the booking
      * @return booking object
-     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws IOException Exception that occurs when an IO operation fails, including an ApiStatusException if there is
+     * no booking with this ID or the api did not return it
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public ObjectNode getBookingById(String bookingId)throws IOException, InterruptedException {
-        String bookingUrl = "https://fit3077.com/api/v2/booking/"+bookingId;
-        client = HttpClient.newHttpClient();
-        request = HttpRequest
-                .newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", myApiKey)
-                .GET()
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
+        Deadline deadline = Deadline.budget("bookingLookup", Booking.BOOKING_LOOKUP_BUDGET_MILLIS);
+        HttpResponse<String> response = api.getHedged("/booking/" + bookingId, deadline);
+        if (response.statusCode() == 404) {
+            throw new ApiStatusException(404, "Invalid Booking ID");
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(response, "The booking cannot be looked up");
+        }
+        ObjectNode jsonNode = Json.readNode(response.body());
         return jsonNode;
     }
     /**
@@ -402,18 +360,11 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public ObjectNode getBookingByPin(String pin)throws IOException, InterruptedException {
-        OnSiteTesting onSite = new OnSiteTesting(siteId, customerId, userID);
-        ObjectNode[] bookingNodes = onSite.getBookings();
-        for (ObjectNode node : bookingNodes) {
-            if (Objects.equals(node.get("smsPin").textValue(), pin)) {
-                return node;
-            }
-            else{
-                System.out.println("Pin code is invalid");
-                return null;
-            }
+        ObjectNode booking = PinIndex.getInstance().lookupBooking(pin);
+        if (booking == null) {
+            System.out.println("Pin code is invalid");
         }
-        return null;
+        return booking;
     }
 
     /**
@@ -425,14 +376,7 @@ public class Receptionist extends ValidateUser implements User, BookableUser {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public String getBookingStatus(String bookingId) throws IOException, InterruptedException {
-        OnSiteTesting onSite = new OnSiteTesting(siteId, customerId, userID);
-        ObjectNode[] bookingNodes = onSite.getBookings();
-        String status = "Invalid Booking ID";
-        for (ObjectNode node : bookingNodes) {
-            if (Objects.equals(node.get("id").textValue(), bookingId)) {
-                status = node.get("status").textValue();
-            }
-        }
-        return status;
+        BookingRecord booking = BookingReplica.getInstance().get(bookingId);
+        return booking == null ? "Invalid Booking ID" : booking.getStatus();
     }
 }
\ No newline at end of file
@@ -4,15 +4,16 @@ import controller.ResidentController;
 import model.ResidentModel;
 import view.ResidentView;
 import booking.Booking;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import booking.BookingRecord;
+import booking.BookingReplica;
+import api.ApiStatusException;
+import api.CircuitOpenException;
+import api.Deadline;
+import api.Json;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import facilities.CovidTestingSite;
-import utilities.AccessToken;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -56,26 +57,6 @@ public class Resident extends ValidateUser implements User, BookableUser {
      */
     private String siteId;
 
-    /**
-     * API key needed to access the web service
-     */
-    private static final String myApiKey = AccessToken.token;
-
-    /**
-     * Http client which can be used to send requests and retrieve their response
-     */
-    private HttpClient client;
-
-    /**
-     * HttpRequest to send requests
-     */
-    private HttpRequest request;
-
-    /**
-     * HttpResponse to retrieve responses
-     */
-    private HttpResponse<String> response;
-
     /**
      * Instance of ResidentController class
      */
@@ -141,6 +122,7 @@ public class Resident extends ValidateUser implements User, BookableUser {
                     System.out.println("Please enter the booking ID");
                     String bookingId = sc.nextLine();
                     System.out.println("Your booking status is: " + booking.getBookingIdStatus(bookingId, siteId));
+                    break;
                 case 10:
                     System.out.println("Please enter the booking ID");
                     String bookingID = sc.nextLine();
@@ -150,8 +132,13 @@ public class Resident extends ValidateUser implements User, BookableUser {
                 case 11:
                     System.out.println("Please enter the booking ID");
                     String ID = sc.nextLine();
-                    ObjectNode Booking = getBookingById(ID);
-                    booking.cancelBooking(Booking);
+                    ObjectNode cancelBooking = getBookingById(ID);
+                    String cancelError = Booking.getCancelError(cancelBooking);
+                    if (cancelError != null) {
+                        System.out.println(cancelError);
+                    } else {
+                        booking.cancelBooking(cancelBooking);
+                    }
                     break;
                 case 12:
                     System.out.println("Please enter the current booking ID: ");
@@ -186,8 +173,12 @@ public class Resident extends ValidateUser implements User, BookableUser {
             } else {
                 booking.addHomeBooking();
             }
+        } catch (CircuitOpenException e) {
+            System.out.println("Error: The booking cannot be made. " + e.getMessage());
+            return;
         } catch (IOException | InterruptedException e) {
             System.out.println("Error: The booking cannot be made. Invalid user or test site ID");
+            return;
         }
         System.out.println("Your booking has been created successfully !");
     }
@@ -232,65 +223,42 @@ public class Resident extends ValidateUser implements User, BookableUser {
     }
 
     /**
-     * Function to return the booking object using the booking ID
+     * Function to return the booking object using the booking ID, with a hedged GET bounded by a deadline
      * @param bookingId ID of the booking
      * @return booking object
-     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws IOException Exception that occurs when an IO operation fails, including an ApiStatusException if there is
+     * no booking with this ID or the api did not return it
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public ObjectNode getBookingById(String bookingId)throws IOException, InterruptedException {
-        String bookingUrl = "https://fit3077.com/api/v2/booking/"+bookingId;
-        client = HttpClient.newHttpClient();
-        request = HttpRequest
-                .newBuilder(URI.create(bookingUrl))
-                .setHeader("Authorization", myApiKey)
-                .GET()
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
+        Deadline deadline = Deadline.budget("bookingLookup", Booking.BOOKING_LOOKUP_BUDGET_MILLIS);
+        HttpResponse<String> response = api.getHedged("/booking/" + bookingId, deadline);
+        if (response.statusCode() == 404) {
+            throw new ApiStatusException(404, "Invalid Booking ID");
+        }
+        if (response.statusCode() / 100 != 2) {
+            throw ApiStatusException.of(response, "The booking cannot be looked up");
+        }
+        ObjectNode jsonNode = Json.readNode(response.body());
         return jsonNode;
     }
 
+    /**
+     * Function to print the bookings of a customer which have not been cancelled, described from the local booking
+     * replica rather than downloading each booking
+     * @param customerId ID of the customer
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
     public void getActiveBookings(String customerId) throws IOException, InterruptedException {
-        ArrayList<Integer> bookingIds = new ArrayList<Integer>();
-        String usersIdUrl = "https://fit3077.com/api/v2/booking";
-        client = HttpClient.newHttpClient();
-        request = HttpRequest
-                .newBuilder(URI.create(usersIdUrl))
-                .setHeader("Authorization", myApiKey)
-                .GET()
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-        ObjectNode[] bookingNodes = new ObjectMapper().readValue(response.body(), ObjectNode[].class);
+        List<BookingRecord> bookings = BookingReplica.getInstance().byCustomer(customerId);
         int index = 0;
-        for(ObjectNode booking: bookingNodes){
-            String bookingId = booking.get("customer").get("id").textValue();
-            if (Objects.equals(bookingId, customerId)){
-                if (!Objects.equals(booking.get("status").textValue(), "CANCELLED")){
-                    index += 1;
-                    Booking newBooking = new Booking(this);
-                    String stringAns = newBooking.display_booking_description(booking.get("id").textValue());
-                    System.out.println(index + ") " + stringAns);
-                }
-
+        for(BookingRecord booking: bookings){
+            if (!Objects.equals(booking.getStatus(), "CANCELLED")){
+                index += 1;
+                System.out.println(index + ") " + Booking.describeBooking(booking));
             }
         }
-//        System.out.println(response.body());
-
-        /**
-         ObjectNode jsonNodes = new ObjectMapper().readValue(response.body(), ObjectNode.class);
-         ObjectNode[] array = new ObjectNode[0];
-         for (JsonNode node : jsonNodes) {
-         if (!Objects.equals(node.get("status").textValue(), "CANCELLED")) {
-         }
-
-         }
-
-
-         }
-         */
     }
 }
 
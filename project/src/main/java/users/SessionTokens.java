@@ -0,0 +1,136 @@
+package users;
+
+import api.Json;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Store of the JWTs issued to users who have logged in, keyed by username.
+ * The expiry (exp claim) of each token is decoded locally, so a user whose verified token is still valid is
+ * authenticated again without calling /user/login and /user/verify-token.
+ */
+public class SessionTokens {
+
+    /**
+     * Instance of SessionTokens class
+     */
+    private static SessionTokens firstInstance = null;
+
+    /**
+     * System property holding how long (in seconds) before its expiry a token is no longer reused
+     */
+    public static final String MARGIN_PROPERTY = "session.expiryMarginSeconds";
+
+    /**
+     * Verified tokens keyed by username
+     */
+    private final Map<String, Token> tokens = new ConcurrentHashMap<>();
+
+    /**
+     * How long (in milliseconds) before its expiry a token is no longer reused
+     */
+    private volatile long marginMillis = Long.getLong(MARGIN_PROPERTY, 60) * 1000;
+
+    /**
+     * A verified token and the time (in milliseconds) at which it expires
+     */
+    private static final class Token {
+        private final String jwt;
+        private final long expiresAtMillis;
+
+        private Token(String jwt, long expiresAtMillis) {
+            this.jwt = jwt;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * Constructor for the SessionTokens class
+     */
+    private SessionTokens() {}
+
+    /**
+     * Function to return the singleton SessionTokens instance
+     * @return firstInstance Singleton instance of SessionTokens class
+     */
+    public static synchronized SessionTokens getInstance() {
+        if (firstInstance == null) {
+            firstInstance = new SessionTokens();
+        }
+        return firstInstance;
+    }
+
+    /**
+     * Mutator for how long before its expiry a token is no longer reused
+     * @param marginSeconds time in seconds
+     */
+    public void setExpiryMarginSeconds(long marginSeconds) {
+        this.marginMillis = marginSeconds * 1000;
+    }
+
+    /**
+     * Function to get the verified token of a user, if it is not expired or about to expire
+     * @param username Username of the user
+     * @return the token, or null if the user has to log in again
+     */
+    public String getValidToken(String username) {
+        Token token = tokens.get(username);
+        if (token == null) {
+            return null;
+        }
+        if (token.expiresAtMillis - marginMillis <= System.currentTimeMillis()) {
+            tokens.remove(username, token);
+            return null;
+        }
+        return token.jwt;
+    }
+
+    /**
+     * Function to store a token which has been verified by the api. Tokens without a readable expiry are not stored,
+     * so they are verified every time.
+     * @param username Username of the user
+     * @param jwt the verified token
+     */
+    public void store(String username, String jwt) {
+        long expiresAtMillis = expiryOf(jwt);
+        if (expiresAtMillis > 0) {
+            tokens.put(username, new Token(jwt, expiresAtMillis));
+        }
+    }
+
+    /**
+     * Function to forget the token of a user, e.g. when they log out
+     * @param username Username of the user
+     */
+    public void remove(String username) {
+        tokens.remove(username);
+    }
+
+    /**
+     * Function to read the expiry of a JWT from its payload, without checking its signature (the api has done that)
+     * @param jwt the token
+     * @return time in milliseconds at which the token expires, or 0 if it cannot be read
+     */
+    static long expiryOf(String jwt) {
+        if (jwt == null) {
+            return 0;
+        }
+        String[] parts = jwt.split("\\.");
+        if (parts.length < 2) {
+            return 0;
+        }
+        try {
+            byte[] payload = Base64.getUrlDecoder().decode(parts[1]);
+            JsonNode claims = Json.readTree(new String(payload, StandardCharsets.UTF_8));
+            JsonNode exp = claims == null ? null : claims.get("exp");
+            return exp != null && exp.canConvertToLong() ? exp.asLong() * 1000 : 0;
+        } catch (IllegalArgumentException | IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package users;
+
+import api.ApiGateway;
+import api.Json;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cached directory of all users of the system, indexed by username, so that logins and customer lookups do not
+ * download the full user list every time. The list is downloaded on the first lookup, refreshed in the background once
+ * it is older than its time to live, and downloaded again straight away when a username is not found (at most once
+ * every few seconds), so users registered since the last download are still found.
+ */
+public class UserDirectory {
+
+    /**
+     * Instance of UserDirectory class
+     */
+    private static UserDirectory firstInstance = null;
+
+    /**
+     * URL of endpoint for all users
+     */
+    private static final String usersPath = "/user";
+
+    /**
+     * System property holding how long (in seconds) the user list is used before it is refreshed
+     */
+    public static final String TTL_PROPERTY = "users.ttlSeconds";
+
+    /**
+     * Shortest time (in milliseconds) between two downloads caused by unknown usernames
+     */
+    private static final long MIN_RELOAD_INTERVAL_MILLIS = 5000;
+
+    /**
+     * Users keyed by username, or null until the first lookup
+     */
+    private volatile Map<String, ObjectNode> usersByName;
+
+    /**
+     * Time (in milliseconds) at which the user list was downloaded
+     */
+    private volatile long loadedAtMillis = 0;
+
+    /**
+     * How long (in milliseconds) the user list is used before it is refreshed
+     */
+    private volatile long ttlMillis = Long.getLong(TTL_PROPERTY, 300) * 1000;
+
+    /**
+     * Whether a background refresh of the user list is currently running
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean(false);
+
+    /**
+     * Lock making sure only one download runs at a time (a lock rather than synchronized, so that virtual threads
+     * waiting on the download do not pin their carrier thread)
+     */
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    /**
+     * Thread refreshing the user list in the background
+     */
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-directory-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Constructor for the UserDirectory class
+     */
+    private UserDirectory() {}
+
+    /**
+     * Function to return the singleton UserDirectory instance
+     * @return firstInstance Singleton instance of UserDirectory class
+     */
+    public static synchronized UserDirectory getInstance() {
+        if (firstInstance == null) {
+            firstInstance = new UserDirectory();
+        }
+        return firstInstance;
+    }
+
+    /**
+     * Mutator for how long the user list is used before it is refreshed
+     * @param ttlSeconds time in seconds
+     */
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Function to find a user by their username
+     * @param username Username of the user
+     * @return the user, or null if there is no user with this username
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public ObjectNode findByUsername(String username) throws IOException, InterruptedException {
+        ObjectNode user = getUsers().get(username);
+        if (user == null) {
+            user = reload(MIN_RELOAD_INTERVAL_MILLIS).get(username);
+        }
+        return user;
+    }
+
+    /**
+     * Function to find a user by their ID in the cached user list
+     * @param userId ID of the user
+     * @return the user, or null if the cached list has no user with this ID
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    public ObjectNode findById(String userId) throws IOException, InterruptedException {
+        for (ObjectNode user : getUsers().values()) {
+            if (userId.equals(user.path("id").textValue())) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Function to throw away the cached user list, e.g. after a user was added or changed, so the next lookup downloads it again
+     */
+    public void invalidate() {
+        usersByName = null;
+    }
+
+    /**
+     * Function to get the cached users, downloading them on first use and refreshing them in the background once they are too old
+     * @return users keyed by username
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private Map<String, ObjectNode> getUsers() throws IOException, InterruptedException {
+        Map<String, ObjectNode> current = usersByName;
+        if (current == null) {
+            return reload(Long.MAX_VALUE);
+        }
+        if (System.currentTimeMillis() - loadedAtMillis > ttlMillis && refreshing.compareAndSet(false, true)) {
+            refresher.execute(() -> {
+                try {
+                    reload(0);
+                } catch (IOException e) {
+                    // keep serving the current list, the next lookup will try again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * Function to download the user list again
+     * @param minIntervalMillis the download is skipped if the list was downloaded less than this many milliseconds ago
+     * @return users keyed by username
+     * @throws IOException Exception that occurs when an IO operation fails
+     * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
+     */
+    private Map<String, ObjectNode> reload(long minIntervalMillis) throws IOException, InterruptedException {
+        reloadLock.lock();
+        try {
+            Map<String, ObjectNode> current = usersByName;
+            if (current != null && System.currentTimeMillis() - loadedAtMillis < minIntervalMillis) {
+                return current;
+            }
+            long startedAt = System.currentTimeMillis();
+            HttpResponse<String> response = ApiGateway.getInstance().get(usersPath);
+            if (current != null && ApiGateway.isRevalidated(response)) {
+                // the web service answered 304 Not Modified, so the users parsed last time are still current
+                loadedAtMillis = startedAt;
+                return current;
+            }
+            ObjectNode[] jsonNodes = Json.readNodes(response.body());
+            Map<String, ObjectNode> users = new HashMap<>();
+            for (ObjectNode node : jsonNodes) {
+                if (node.hasNonNull("userName")) {
+                    users.put(node.get("userName").textValue(), node);
+                }
+            }
+            current = Collections.unmodifiableMap(users);
+            usersByName = current;
+            loadedAtMillis = startedAt;
+            return current;
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+}
@@ -1,17 +1,14 @@
 package users;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import api.ApiGateway;
+import api.Json;
+import api.RequestBodies;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import utilities.AccessToken;
 
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Objects;
 import java.util.Scanner;
 
 /**
@@ -23,30 +20,15 @@ public class ValidateUser {
      * The User to be validated/ who is logging in to the system
      */
     public ObjectNode user;
-    /**
-     * Access Token to access the api
-     */
-    private static final String myApiKey = AccessToken.token;   // note access token is saved in a separate file named AccessToken
-
-    /**
-     * Root URL for the web service
-     */
-    private static final String rootUrl = "https://fit3077.com/api/v2";
-
     /**
      * URL of endpoint for all users
      */
-    String usersUrl = rootUrl + "/user";
-
-    /**
-     * Http client which can be used to send requests and retrieve their response
-     */
-    private HttpClient client;
+    private static final String usersPath = "/user";
 
     /**
-     * HttpRequest to send requests
+     * Gateway used to send requests to the web service (the access token is attached by the gateway)
      */
-    private HttpRequest request;
+    protected final ApiGateway api = ApiGateway.getInstance();
 
     /**
      * HttpResponse to retrieve responses
@@ -87,74 +69,47 @@ public class ValidateUser {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public boolean returnUser(String username) throws IOException, InterruptedException {
-
-        client = HttpClient.newHttpClient();
-        request = HttpRequest
-                .newBuilder(URI.create(usersUrl))
-                .setHeader("Authorization", myApiKey)
-                .GET()
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-        // so we can loop through the response
-        ObjectNode[] jsonNodes = new ObjectMapper().readValue(response.body(), ObjectNode[].class);
-
-        boolean userValid = false;
-        for (ObjectNode node: jsonNodes) {
-            if (Objects.equals(node.get("userName").textValue(), username)){
-                userValid = true;
-                this.user = node;
-            }
+        ObjectNode node = UserDirectory.getInstance().findByUsername(username);
+        if (node == null) {
+            return false;
         }
+        this.user = node;
         AuthenticateUser(this.user);
 
-        return userValid;
+        return true;
     }
 
     /**
-     * Function to authenticate a user's credentials using a jwt
+     * Function to authenticate a user's credentials using a jwt. A user who still has a verified token which is not
+     * about to expire is not authenticated with the api again.
      * @param user User who is logging in
      * @throws IOException Exception that occurs when an IO operation fails
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public void AuthenticateUser(ObjectNode user) throws IOException, InterruptedException {
-        // create request body
-        String jsonString = "{" +
-                "\"userName\":\"" + user.get("userName").textValue() + "\"," +
-                "\"password\":\"" + user.get("userName").textValue() + "\"" +
-                "}";
+        String username = user.get("userName").textValue();
+        if (SessionTokens.getInstance().getValidToken(username) != null) {
+            return;
+        }
 
-        String usersLoginUrl = usersUrl + "/login";
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(usersLoginUrl + "?jwt=true")) // Return a JWT so we can use it for verification
-                .setHeader("Authorization", myApiKey)
-                .header("Content-Type","application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonString))
-                .build();
+        // create request body
+        byte[] loginJson = RequestBodies.login(username, username);
 
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        response = api.post(usersPath + "/login?jwt=true", loginJson); // Return a JWT so we can use it for verification
 
         // verifying the jwt
-        ObjectNode jsonNode = new ObjectMapper().readValue(response.body(), ObjectNode.class);
+        ObjectNode jsonNode = Json.readNode(response.body());
 
-        jsonString = "{\"jwt\":\"" + jsonNode.get("jwt").textValue() + "\"}";
+        String jwt = jsonNode.get("jwt").textValue();
 
         // Note the POST() method being used here, and the request body is supplied to it.
         // A request body needs to be supplied to this endpoint, otherwise a 400 Bad Request error will be returned.
-        String usersVerifyTokenUrl = usersUrl + "/verify-token";
-        client = HttpClient.newHttpClient();
-        request = HttpRequest.newBuilder(URI.create(usersVerifyTokenUrl)) // Return a JWT so we can verify the user.
-                .setHeader("Authorization", myApiKey)
-                .header("Content-Type","application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(jsonString))
-                .build();
-
-        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        response = api.post(usersPath + "/verify-token", RequestBodies.token(jwt));
 
         if (!response.body().equals("")){
             throw new IOException(String.valueOf(response.statusCode()));
         }
+        SessionTokens.getInstance().store(username, jwt);
     }
 
     /**
@@ -10,14 +10,9 @@ import java.io.IOException;
 public class CovidFacade {
 
     /**
-     * Creating a new instance of User class
+     * User logged in on each thread, as several sessions can be logged in at the same time
      */
-    private User user;
-
-    /**
-     * Instance of UserFacade class
-     */
-    private UserFacade userFacade;
+    private final ThreadLocal<User> user = new ThreadLocal<>();
 
     /**
      * Instance of CovidFacade class
@@ -28,7 +23,7 @@ public class CovidFacade {
      * Constructor for CovidFacade class
      * @return first instance of CovidFacade class
      */
-    public static CovidFacade getInstance()  {
+    public static synchronized CovidFacade getInstance()  {
         if (firstInstance == null) {
             firstInstance = new CovidFacade();
         }
@@ -37,10 +32,10 @@ public class CovidFacade {
 
     /**
      * Accessor for user
-     * @return
+     * @return the user logged in on the current thread
      */
     public User getNewUser() {
-        return this.user;
+        return this.user.get();
     }
 
     /**
@@ -50,9 +45,13 @@ public class CovidFacade {
      * @throws InterruptedException Exception that occurs when a thread is waiting or otherwise occupied and is interrupted
      */
     public void login(User newUser) throws IOException, InterruptedException {
-        this.user = newUser;
-        userFacade = new UserFacade(user);
-        userFacade.login();
+        this.user.set(newUser);
+        try {
+            UserFacade userFacade = new UserFacade(newUser);
+            userFacade.login();
+        } finally {
+            this.user.remove();
+        }
     }
 
     /**
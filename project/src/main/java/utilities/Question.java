@@ -10,16 +10,13 @@ public class Question {
     /**
      * Question being asked
      */
-    private static Question firstInstance = null;
+    private static final Question firstInstance = new Question();
 
     /**
      * Function to create a new instance of the class
      * @return question-First Instance of the question class
      */
     public static Question getInstance() {
-        if (firstInstance == null) {
-            firstInstance = new Question();
-        }
         return firstInstance;
     }
 
@@ -0,0 +1,231 @@
+package utilities;
+
+import api.ApiGateway;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Class which keeps local data (e.g. the booking replica and the testing site catalog) in binary snapshot files, so that
+ * a restarted process can answer from them straight away and catch up with the api afterwards. A snapshot is written to
+ * a temporary file which then replaces the old one, and is read back through a memory mapping of the file. Snapshots
+ * are only read back for the api root URL they were written for, and are ignored if their checksum does not match.
+ * The booking snapshot holds customer IDs, SMS pins and QR codes, so snapshots are only kept when a directory is given
+ * with snapshot.dir, and the directory and files are only readable by their owner.
+ * <p>
+ * File layout: magic number, format version, api root URL, time written, body length, CRC32 of the body, body.
+ */
+public class SnapshotFiles {
+
+    /**
+     * System property holding the directory of the snapshot files; snapshots are off unless it is set
+     */
+    public static final String DIRECTORY_PROPERTY = "snapshot.dir";
+
+    /**
+     * First four bytes of every snapshot file ("CTBS")
+     */
+    private static final int MAGIC = 0x43544253;
+
+    /**
+     * Version of the file layout, to be increased whenever a snapshot body changes its layout
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Snapshot read back from its file
+     */
+    public static final class Snapshot {
+        private final long savedAtMillis;
+        private final ByteBuffer body;
+
+        private Snapshot(long savedAtMillis, ByteBuffer body) {
+            this.savedAtMillis = savedAtMillis;
+            this.body = body;
+        }
+
+        /**
+         * Accessor for the time the snapshot was written
+         * @return time in epoch milliseconds
+         */
+        public long getSavedAtMillis() {
+            return savedAtMillis;
+        }
+
+        /**
+         * Accessor for the body of the snapshot
+         * @return the body, mapped from the file and positioned at its start
+         */
+        public ByteBuffer getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * Writer of the body of a snapshot
+     */
+    public interface BodyWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Constructor for the SnapshotFiles class
+     */
+    private SnapshotFiles() {}
+
+    /**
+     * Function to write a snapshot, replacing the previous one
+     * @param name name of the snapshot (e.g. bookings)
+     * @param writer writer of the body
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public static void write(String name, BodyWriter writer) throws IOException {
+        Path file = path(name);
+        if (file == null) {
+            return;
+        }
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream body = new DataOutputStream(bodyBytes)) {
+            writer.write(body);
+        }
+        byte[] body = bodyBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(body);
+
+        Path temporary = createPrivateFile(file.getParent(), name);
+        try {
+            try (OutputStream stream = Files.newOutputStream(temporary);
+                 DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeString(out, ApiGateway.getInstance().getRootUrl());
+                out.writeLong(System.currentTimeMillis());
+                out.writeInt(body.length);
+                out.writeLong(crc.getValue());
+                out.write(body);
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Function to read a snapshot back
+     * @param name name of the snapshot (e.g. bookings)
+     * @return the snapshot, or null if there is none for the current api root URL or the file is damaged
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public static Snapshot read(String name) throws IOException {
+        Path file = path(name);
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        try {
+            if (mapped.getInt() != MAGIC || mapped.getInt() != VERSION
+                    || !Objects.equals(ApiGateway.getInstance().getRootUrl(), readString(mapped))) {
+                return null;
+            }
+            long savedAtMillis = mapped.getLong();
+            int length = mapped.getInt();
+            long checksum = mapped.getLong();
+            if (length != mapped.remaining()) {
+                return null;
+            }
+            ByteBuffer body = mapped.slice();
+            CRC32 crc = new CRC32();
+            crc.update(body.duplicate());
+            return crc.getValue() == checksum ? new Snapshot(savedAtMillis, body) : null;
+        } catch (RuntimeException e) {
+            // a truncated or foreign file
+            return null;
+        }
+    }
+
+    /**
+     * Function to write a text which may be null
+     * @param out stream written to
+     * @param text the text, may be null
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    public static void writeString(DataOutputStream out, String text) throws IOException {
+        if (text == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Function to read a text written by writeString
+     * @param in buffer read from
+     * @return the text, or null
+     */
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Function to create the temporary file a snapshot is written to, creating the snapshot directory first if needed.
+     * Where the file system has POSIX permissions the directory is created rwx------ and the file rw-------.
+     * @param directory snapshot directory
+     * @param name name of the snapshot
+     * @return the empty temporary file
+     * @throws IOException Exception that occurs when an IO operation fails
+     */
+    private static Path createPrivateFile(Path directory, String name) throws IOException {
+        if (!directory.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            Files.createDirectories(directory);
+            return Files.createTempFile(directory, name, ".tmp");
+        }
+        Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        return Files.createTempFile(directory, name, ".tmp",
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+    }
+
+    /**
+     * Function to get the file of a snapshot
+     * @param name name of the snapshot
+     * @return the file, or null if snapshots are turned off
+     */
+    private static Path path(String name) {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null || directory.isBlank() ? null : Paths.get(directory, name + ".snapshot");
+    }
+}
@@ -19,29 +19,31 @@ public class SymptomsCollection {
     /**
      * List for severe symptoms
      */
-    private List<String> severeSymptoms;
+    private final List<String> severeSymptoms;
 
     /**
      * List for mild symptoms
      */
-    private List<String> mildSymptoms;
+    private final List<String> mildSymptoms;
     /**
      * List for moderate symptoms
      */
-    private List<String> moderateSymptoms;
+    private final List<String> moderateSymptoms;
 
     /**
      * Constructor for the SymptomsCollection class
      */
     private SymptomsCollection()  {
-        this.getSymptoms();
+        this.mildSymptoms = getSymptoms("src/main/java/utilities/mildsymptoms.txt");
+        this.moderateSymptoms = getSymptoms("src/main/java/utilities/moderatesymptoms.txt");
+        this.severeSymptoms = getSymptoms("src/main/java/utilities/severesymptoms.txt");
     }
 
     /**
      * Function to create a new instance of the SymptomsCollection class
      * @return firstInstance Instance of SymptomsCollection class
      */
-    public static SymptomsCollection getInstance()  {
+    public static synchronized SymptomsCollection getInstance()  {
         if (firstInstance == null) {
             firstInstance = new SymptomsCollection();
         }
@@ -49,29 +51,17 @@ public class SymptomsCollection {
     }
 
     /**
-     * Function to read the symptoms from their text files and combine them to a single list
+     * Function to read the symptoms from their text file. The lists are immutable, so they are shared by all sessions
+     * @param path path of the text file holding comma separated symptoms
+     * @return symptoms List of symptoms, empty if the file is missing
      */
-    private void getSymptoms(){
-        String mild_symptoms_path = "src/main/java/utilities/mildsymptoms.txt";
-        String moderate_symptoms_path = "src/main/java/utilities/moderatesymptoms.txt";
-        String severe_symptoms_path = "src/main/java/utilities/severesymptoms.txt";
-        try {
-            BufferedReader reader = new BufferedReader(new FileReader(mild_symptoms_path));
+    private static List<String> getSymptoms(String path){
+        try (BufferedReader reader = new BufferedReader(new FileReader(path))) {
             String[] symptoms = reader.readLine().split(",");
-            mildSymptoms = List.of(symptoms);
-            reader.close();
-
-            reader = new BufferedReader(new FileReader(moderate_symptoms_path));
-            symptoms = reader.readLine().split(",");
-            moderateSymptoms = List.of(symptoms);
-            reader.close();
-
-            reader = new BufferedReader(new FileReader(severe_symptoms_path));
-            symptoms = reader.readLine().split(",");
-            severeSymptoms = List.of(symptoms);
-            reader.close();
+            return List.of(symptoms);
         } catch (FileNotFoundException e) {
             e.printStackTrace();
+            return List.of();
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -0,0 +1,71 @@
+package utilities;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class which creates executors running each task on its own virtual thread when the JVM supports them (Java 21 or newer),
+ * and on pooled daemon platform threads otherwise. The project still compiles for Java 11, so virtual threads are looked
+ * up by reflection; running the same build on a Java 21 JVM is enough to use them.
+ */
+public class VirtualThreads {
+
+    /**
+     * System property which turns virtual threads off (set it to false) even when the JVM supports them
+     */
+    public static final String ENABLED_PROPERTY = "threads.virtual";
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor, or null if the JVM has no virtual threads
+     */
+    private static final Method virtualExecutorFactory = findVirtualExecutorFactory();
+
+    /**
+     * Constructor for the VirtualThreads class
+     */
+    private VirtualThreads() {}
+
+    /**
+     * Function to check whether executors created by this class use virtual threads
+     * @return true if the JVM supports virtual threads and they are not turned off
+     */
+    public static boolean isEnabled() {
+        return virtualExecutorFactory != null && !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    }
+
+    /**
+     * Function to create an executor which starts a new thread for every task
+     * @param name prefix of the names of the platform threads used when virtual threads are not available
+     * @return the executor
+     */
+    public static ExecutorService newPerTaskExecutor(String name) {
+        if (isEnabled()) {
+            try {
+                return (ExecutorService) virtualExecutorFactory.invoke(null);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // fall back to platform threads
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Function to find the factory method for virtual thread executors
+     * @return the method, or null if the JVM has no virtual threads
+     */
+    private static Method findVirtualExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package api;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the api gateway sends every kind of request to the web service it is pointed at, and hands back the
+ * failures of asynchronous requests as they were thrown
+ */
+class ApiGatewayTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(1, 3, 5, 0, 0);
+
+    private static ApiGateway api;
+    private static String customerId;
+    private static String siteId;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        customerId = stub.getUsers().get(0).get("id").textValue();
+        siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+    }
+
+    @Test
+    void createsChangesAndDeletesABooking() throws Exception {
+        HttpResponse<String> created = api.post("/booking", RequestBodies.booking(customerId, siteId,
+                "2099-01-01 10:00:00", null, "string", RequestBodies.modified(false)));
+        assertEquals(201, created.statusCode());
+        String path = "/booking/" + Json.readNode(created.body()).get("id").textValue();
+
+        assertEquals(200, api.get(path).statusCode());
+        HttpResponse<String> patched = api.patch(path, RequestBodies.booking(customerId, siteId,
+                "2099-01-01 10:00:00", "CANCELLED", "Booking has been cancelled", RequestBodies.modified(true)));
+        assertEquals(200, patched.statusCode());
+        assertEquals("CANCELLED", Json.readNode(patched.body()).get("status").textValue());
+        assertEquals(204, api.delete(path).statusCode());
+        assertEquals(404, api.get(path).statusCode());
+    }
+
+    @Test
+    void sendsRequestsToTheRootUrlWithTheApiKey() {
+        HttpRequest request = api.request("/booking").GET().build();
+
+        assertEquals(stub.getRootUrl() + "/booking", request.uri().toString());
+        assertTrue(request.headers().firstValue("Authorization").isPresent());
+    }
+
+    @Test
+    void loginAnswersWithATokenWhichVerifies() throws Exception {
+        String userName = stub.getUsers().get(0).get("userName").textValue();
+
+        ObjectNode login = Json.readNode(api.post("/user/login?jwt=true", RequestBodies.login(userName, userName)).body());
+        String jwt = login.get("jwt").textValue();
+
+        assertEquals(200, api.post("/user/verify-token", RequestBodies.token(jwt)).statusCode());
+        assertEquals(403, api.post("/user/login?jwt=true", RequestBodies.login(userName, "wrong")).statusCode());
+    }
+
+    @Test
+    void awaitThrowsTheFailureOfTheRequest() {
+        IOException failure = new IOException("connection reset");
+        ApiStatusException refused = new ApiStatusException(409, "The booking cannot be cancelled");
+        IllegalStateException state = new IllegalStateException("Booking has already been processed");
+
+        assertSame(failure, assertThrows(IOException.class,
+                () -> ApiGateway.await(CompletableFuture.failedFuture(failure))));
+        assertSame(refused, assertThrows(ApiStatusException.class,
+                () -> ApiGateway.await(CompletableFuture.failedFuture(new UncheckedIOException(refused)))));
+        assertSame(state, assertThrows(IllegalStateException.class,
+                () -> ApiGateway.await(CompletableFuture.supplyAsync(() -> {
+                    throw state;
+                }))));
+    }
+}
@@ -0,0 +1,96 @@
+package api;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the state transitions of a circuit breaker
+ */
+class CircuitBreakerTest {
+
+    private static final long OPEN_MILLIS = 50;
+
+    private static CircuitBreaker opened() {
+        CircuitBreaker breaker = new CircuitBreaker("/booking/*", 3, OPEN_MILLIS);
+        for (int i = 0; i < 3; i++) {
+            breaker.failed();
+        }
+        return breaker;
+    }
+
+    @Test
+    void opensAfterFailuresInARow() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker("/booking/*", 3, OPEN_MILLIS);
+        breaker.failed();
+        breaker.failed();
+        breaker.succeeded(false);
+        breaker.failed();
+        breaker.failed();
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(breaker.allow());
+
+        breaker.failed();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::allow);
+    }
+
+    @Test
+    void letsOneTrialThroughAndClosesWhenItSucceeds() throws Exception {
+        CircuitBreaker breaker = opened();
+        Thread.sleep(OPEN_MILLIS + 10);
+
+        assertTrue(breaker.allow());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::allow);
+
+        breaker.succeeded(true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void reopensWhenTheTrialFails() throws Exception {
+        CircuitBreaker breaker = opened();
+        Thread.sleep(OPEN_MILLIS + 10);
+        breaker.allow();
+
+        breaker.failed();
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitOpenException.class, breaker::allow);
+    }
+
+    @Test
+    void lateSuccessOfAnEarlierRequestDoesNotClose() throws Exception {
+        CircuitBreaker breaker = opened();
+
+        breaker.succeeded(false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        Thread.sleep(OPEN_MILLIS + 10);
+        breaker.allow();
+        breaker.succeeded(false);
+        breaker.abandoned(false);
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void abandonedTrialMayBeMadeAgain() throws Exception {
+        CircuitBreaker breaker = opened();
+        Thread.sleep(OPEN_MILLIS + 10);
+        breaker.allow();
+
+        breaker.abandoned(true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.allow());
+    }
+}
@@ -0,0 +1,72 @@
+package api;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that reads give up at the deadline of their operation and are hedged when slower than usual
+ */
+class DeadlineTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(24, 5, 10, 10, 0);
+
+    private static ApiGateway api;
+    private static String bookingPath;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        bookingPath = "/booking/" + stub.getBookings().get(0).get("id").textValue();
+    }
+
+    @BeforeEach
+    void healthyStub() {
+        stub.setLatencyMillis(0);
+        stub.setTailLatency(0, 0);
+    }
+
+    @Test
+    void readGivesUpAtItsDeadline() {
+        stub.setLatencyMillis(1000);
+        long startedAt = System.nanoTime();
+
+        assertThrows(HttpTimeoutException.class, () -> api.get(bookingPath, Deadline.budget("deadlineTest", 100)));
+
+        assertTrue(System.nanoTime() - startedAt < TimeUnit.MILLISECONDS.toNanos(800));
+    }
+
+    @Test
+    void budgetIsReadFromItsProperty() {
+        System.setProperty("deadline.propertyTestMs", "60000");
+
+        Deadline deadline = Deadline.budget("propertyTest", 10);
+
+        assertTrue(deadline.remainingNanos() > TimeUnit.SECONDS.toNanos(50));
+    }
+
+    @Test
+    void slowReadsAreHedged() throws Exception {
+        stub.setLatencyMillis(10);
+        for (int i = 0; i < 30; i++) {
+            api.getHedged(bookingPath, Deadline.budget("hedgeTest", 5000));
+        }
+        long hedged = api.getHedgedGets();
+        stub.setTailLatency(0.5, 1500);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(200, api.getHedged(bookingPath, Deadline.budget("hedgeTest", 5000)).statusCode());
+        }
+
+        assertTrue(api.getHedgedGets() > hedged);
+    }
+}
@@ -0,0 +1,50 @@
+package api;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that identical GETs made at the same time share one request, each caller keeping its own deadline
+ */
+class GetCoalescingTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(3, 5, 10, 10, 400);
+
+    private final ApiGateway api = ApiGateway.getInstance();
+
+    @Test
+    void identicalGetsShareOneRequest() throws Exception {
+        long requests = stub.getRequestCount();
+        long coalesced = api.getCoalescedGets();
+
+        CompletableFuture<HttpResponse<String>> first = api.getAsync("/testing-site");
+        CompletableFuture<HttpResponse<String>> second = api.getAsync("/testing-site");
+
+        assertEquals(first.get().body(), second.get().body());
+        assertEquals(requests + 1, stub.getRequestCount());
+        assertEquals(coalesced + 1, api.getCoalescedGets());
+    }
+
+    @Test
+    void callerWithoutDeadlineOutlivesTheDeadlineOfTheRequestItJoined() throws Exception {
+        long requests = stub.getRequestCount();
+
+        CompletableFuture<HttpResponse<String>> hurried = api.getAsync("/testing-site", Deadline.budget("test", 300));
+        HttpResponse<String> patient = api.get("/testing-site");
+
+        assertEquals(200, patient.statusCode());
+        ExecutionException timedOut = assertThrows(ExecutionException.class, hurried::get);
+        assertInstanceOf(HttpTimeoutException.class, timedOut.getCause());
+        assertEquals(requests + 1, stub.getRequestCount());
+    }
+}
@@ -0,0 +1,67 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that POSTs are retried after lost responses against a web service honouring idempotency keys, without
+ * creating a record twice
+ */
+class IdempotentRetryTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(26, 5, 10, 0, 0)
+            .withProperty(ApiGateway.IDEMPOTENCY_KEYS_PROPERTY, "true")
+            .withProperty(ApiGateway.RETRIES_PROPERTY, "20")
+            .withProperty(ApiGateway.BREAKER_FAILURES_PROPERTY, "1000");
+
+    private static ApiGateway api;
+    private static byte[] bookingJson;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        String customerId = stub.getUsers().get(0).get("id").textValue();
+        String siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+        bookingJson = RequestBodies.booking(customerId, siteId, "2099-01-01 10:00:00", null, "string",
+                RequestBodies.modified(false));
+    }
+
+    @Test
+    void everyPostMakesExactlyOneBooking() throws Exception {
+        stub.setFaultRate(0.5);
+        int bookings = stub.getBookings().size();
+        List<CompletableFuture<HttpResponse<String>>> posts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            posts.add(api.postAsync("/booking", bookingJson, ApiGateway.newIdempotencyKey()));
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (CompletableFuture<HttpResponse<String>> post : posts) {
+            HttpResponse<String> response = ApiGateway.await(post);
+            assertEquals(201, response.statusCode());
+            ids.add(Json.readNode(response.body()).get("id").textValue());
+        }
+
+        assertEquals(posts.size(), ids.size());
+        assertEquals(posts.size(), stub.getBookings().size() - bookings);
+        assertTrue(api.getRetriedRequests() > 0);
+        Set<String> stored = new HashSet<>();
+        for (JsonNode booking : stub.getBookings()) {
+            stored.add(booking.get("id").textValue());
+        }
+        assertTrue(stored.containsAll(ids));
+    }
+}
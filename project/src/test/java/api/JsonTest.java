@@ -0,0 +1,104 @@
+package api;
+
+import api.dto.BookingDto;
+import api.dto.CovidTestDto;
+import api.dto.TestingSiteDto;
+import api.dto.UserDto;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that responses of the web service are read into the typed models, with nested or plain IDs, missing details and
+ * fields the models do not know
+ */
+class JsonTest {
+
+    @Test
+    void readsBookingsAsTheStubListsThem() throws Exception {
+        StubApiServer stub = new StubApiServer(22, 3, 5, 5, 0);
+
+        for (JsonNode listed : stub.getBookings()) {
+            BookingDto booking = Json.read(listed.toString(), BookingDto.class);
+
+            assertEquals(listed.get("id").textValue(), booking.getId());
+            assertEquals(listed.get("customer").get("id").textValue(), booking.getCustomerId());
+            assertEquals(listed.get("customer").get("userName").textValue(), booking.getCustomer().getUserName());
+            assertEquals(listed.get("testingSite").get("id").textValue(), booking.getTestingSiteId());
+            assertEquals(listed.get("testingSite").get("name").textValue(), booking.getTestingSite().getName());
+            assertEquals(listed.get("smsPin").textValue(), booking.getSmsPin());
+            assertEquals(listed.get("status").textValue(), booking.getStatus());
+            assertEquals(listed.get("updatedAt").textValue(), booking.getUpdatedAt());
+        }
+    }
+
+    @Test
+    void readsBookingWithPlainIdsAndNoDetails() throws Exception {
+        BookingDto booking = Json.read("{\"id\":\"booking-1\",\"customerId\":\"customer-1\","
+                + "\"testingSiteId\":\"site-1\",\"status\":\"INITIATED\",\"unknownField\":[1,2]}", BookingDto.class);
+
+        assertEquals("customer-1", booking.getCustomerId());
+        assertEquals("site-1", booking.getTestingSiteId());
+        assertNull(booking.getCustomer());
+        assertNull(booking.getTestingSite());
+        assertFalse(booking.getAdditionalInfo().isModified());
+        assertFalse(booking.getAdditionalInfo().isHomeTest());
+        assertTrue(booking.getCovidTests().isEmpty());
+    }
+
+    @Test
+    void readsHomeTestAndCovidTests() throws Exception {
+        BookingDto booking = Json.read("{\"id\":\"booking-1\",\"additionalInfo\":{\"modified\":true,\"homeTest\":true,"
+                + "\"ratKitRequired\":true,\"ratKitStatus\":\"RECEIVED\",\"qrCode\":\"qr\",\"url\":\"https://example.org\"},"
+                + "\"covidTests\":[{\"id\":\"test-1\",\"type\":\"RAT\",\"patient\":{\"id\":\"customer-1\"},"
+                + "\"result\":\"NEGATIVE\",\"status\":\"COMPLETED\"}]}", BookingDto.class);
+
+        BookingDto.Info info = booking.getAdditionalInfo();
+        assertTrue(info.isModified());
+        assertTrue(info.isHomeTest());
+        assertTrue(info.isRatKitRequired());
+        assertEquals("RECEIVED", info.getRatKitStatus());
+        assertEquals("qr", info.getQrCode());
+        assertEquals("https://example.org", info.getUrl());
+        CovidTestDto test = booking.getCovidTests().get(0);
+        assertEquals("RAT", test.getType());
+        assertEquals("customer-1", test.getPatient().getId());
+        assertNull(test.getAdministerer());
+        assertEquals("NEGATIVE", test.getResult());
+    }
+
+    @Test
+    void readsTestingSitesAndUsers() throws Exception {
+        TestingSiteDto site = Json.read("{\"id\":\"site-1\",\"name\":\"Clinic\",\"address\":{\"suburb\":\"Clayton\"},"
+                + "\"additionalInfo\":{\"driveThrough\":true,\"GP\":true,\"openTime\":\"08:00\"}}", TestingSiteDto.class);
+        UserDto user = Json.read("{\"id\":\"user-1\",\"givenName\":\"Ana\",\"userName\":\"ana\","
+                + "\"isReceptionist\":true}", UserDto.class);
+
+        assertEquals("Clayton", site.getAddress().getSuburb());
+        assertTrue(site.getAdditionalInfo().isDriveThrough());
+        assertTrue(site.getAdditionalInfo().isGp());
+        assertFalse(site.getAdditionalInfo().isWalkIn());
+        assertEquals("08:00", site.getAdditionalInfo().getOpenTime());
+        assertEquals("ana", user.getUserName());
+        assertTrue(user.isReceptionist());
+        assertFalse(user.isCustomer());
+    }
+
+    @Test
+    void keepsOneReaderPerType() {
+        assertSame(Json.reader(BookingDto.class), Json.reader(BookingDto.class));
+    }
+
+    @Test
+    void refusesTextWhichIsNotJson() {
+        assertThrows(JsonProcessingException.class, () -> Json.read("<html>", BookingDto.class));
+        assertThrows(JsonProcessingException.class, () -> Json.readNodes("{\"id\":\"booking-1\"}"));
+    }
+}
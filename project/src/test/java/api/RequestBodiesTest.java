@@ -0,0 +1,81 @@
+package api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that request bodies are valid JSON holding the values they were given, however those values need escaping
+ */
+class RequestBodiesTest {
+
+    private static JsonNode read(byte[] body) throws Exception {
+        return Json.readTree(new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void writesBookingWithItsAdditionalInfo() throws Exception {
+        JsonNode booking = read(RequestBodies.booking("customer-1", "site-1", "2099-01-01 10:00:00", "CANCELLED",
+                "Booking has been cancelled", RequestBodies.modified(true)));
+
+        assertEquals("customer-1", booking.get("customerId").textValue());
+        assertEquals("site-1", booking.get("testingSiteId").textValue());
+        assertEquals("2099-01-01 10:00:00", booking.get("startTime").textValue());
+        assertEquals("CANCELLED", booking.get("status").textValue());
+        assertEquals("Booking has been cancelled", booking.get("notes").textValue());
+        assertTrue(booking.get("additionalInfo").get("modified").booleanValue());
+    }
+
+    @Test
+    void leavesOutMissingStatusAndModified() throws Exception {
+        JsonNode booking = read(RequestBodies.booking("customer-1", "site-1", "2099-01-01 10:00:00", null, "string",
+                RequestBodies.homeTest(false, "N/A", "qr", "https://example.org", null)));
+
+        assertFalse(booking.has("status"));
+        JsonNode additionalInfo = booking.get("additionalInfo");
+        assertTrue(additionalInfo.get("homeTest").booleanValue());
+        assertFalse(additionalInfo.get("ratKitRequired").booleanValue());
+        assertEquals("N/A", additionalInfo.get("ratKitStatus").textValue());
+        assertEquals("qr", additionalInfo.get("qrCode").textValue());
+        assertEquals("https://example.org", additionalInfo.get("url").textValue());
+        assertFalse(additionalInfo.has("modified"));
+        assertEquals(0, read(RequestBodies.additionalInfo(RequestBodies.none())).get("additionalInfo").size());
+    }
+
+    @Test
+    void escapesValues() throws Exception {
+        String notes = "said \"hi\"\\ then\nleft\t\u00e9\u20ac";
+
+        JsonNode test = read(RequestBodies.covidTest("PCR", "patient-1", "worker-1", "booking-1", "PENDING",
+                "INITIATED", notes));
+        JsonNode login = read(RequestBodies.login("user\"name", "pass}word"));
+
+        assertEquals(notes, test.get("notes").textValue());
+        assertEquals("user\"name", login.get("userName").textValue());
+        assertEquals("pass}word", login.get("password").textValue());
+        assertEquals("a.b.c", read(RequestBodies.token("a.b.c")).get("jwt").textValue());
+    }
+
+    @Test
+    void writesNullValues() throws Exception {
+        JsonNode booking = read(RequestBodies.booking(null, "site-1", null, null, null, RequestBodies.none()));
+
+        assertTrue(booking.get("customerId").isNull());
+        assertTrue(booking.get("notes").isNull());
+    }
+
+    @Test
+    void passesOnFailingFieldWriters() {
+        assertThrows(UncheckedIOException.class, () -> RequestBodies.object(json -> {
+            throw new IOException("cannot write");
+        }));
+    }
+}
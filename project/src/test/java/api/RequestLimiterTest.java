@@ -0,0 +1,120 @@
+package api;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the token bucket and the adaptive concurrency limit of the request limiter
+ */
+class RequestLimiterTest {
+
+    private static RequestLimiter limiter(int initialLimit, int maxLimit, double ratePerSecond, double burst) {
+        return new RequestLimiter(initialLimit, 1, maxLimit, ratePerSecond, burst, Runnable::run);
+    }
+
+    /**
+     * Function to send a round of requests which uses the whole concurrency limit, each answered after a round trip
+     * @param limiter the limiter
+     * @param roundTripMillis time (in milliseconds) the requests take
+     */
+    private static void fullRound(RequestLimiter limiter, long roundTripMillis) throws Exception {
+        List<RequestLimiter.Permit> permits = new ArrayList<>();
+        for (int i = limiter.getLimit(); i > 0; i--) {
+            permits.add(limiter.acquireBlocking());
+        }
+        Thread.sleep(roundTripMillis);
+        permits.forEach(permit -> limiter.release(permit, RequestLimiter.Outcome.ANSWERED));
+    }
+
+    @Test
+    void tokenBucketPacesRequestsAfterTheBurst() throws Exception {
+        RequestLimiter limiter = limiter(100, 100, 20, 5);
+        List<CompletableFuture<RequestLimiter.Permit>> permits = new ArrayList<>();
+        long startedAt = System.nanoTime();
+
+        for (int i = 0; i < 15; i++) {
+            permits.add(limiter.acquire());
+        }
+
+        assertTrue(permits.subList(0, 5).stream().allMatch(CompletableFuture::isDone));
+        assertFalse(permits.get(5).isDone());
+        assertEquals(10, limiter.getQueued());
+        CompletableFuture.allOf(permits.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        // the ten requests over the burst need half a second of tokens at 20 per second
+        assertTrue(System.nanoTime() - startedAt >= TimeUnit.MILLISECONDS.toNanos(450));
+    }
+
+    @Test
+    void requestsOverTheConcurrencyLimitWait() throws Exception {
+        RequestLimiter limiter = limiter(2, 2, 0, 1);
+        RequestLimiter.Permit first = limiter.acquireBlocking();
+        limiter.acquireBlocking();
+
+        CompletableFuture<RequestLimiter.Permit> third = limiter.acquire();
+
+        assertFalse(third.isDone());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getQueued());
+
+        limiter.release(first, RequestLimiter.Outcome.UNUSED);
+
+        assertTrue(third.isDone());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueued());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsStable() throws Exception {
+        RequestLimiter limiter = limiter(4, 64, 0, 1);
+
+        for (int i = 0; i < 20; i++) {
+            fullRound(limiter, 1);
+        }
+
+        assertTrue(limiter.getLimit() > 4, "limit " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void limitIsCutOncePerRoundTripWhenOverloaded() throws Exception {
+        RequestLimiter limiter = limiter(40, 64, 0, 1);
+        RequestLimiter.Permit measured = limiter.acquireBlocking();
+        Thread.sleep(100);
+        limiter.release(measured, RequestLimiter.Outcome.ANSWERED);
+
+        limiter.release(limiter.acquireBlocking(), RequestLimiter.Outcome.OVERLOADED);
+        limiter.release(limiter.acquireBlocking(), RequestLimiter.Outcome.OVERLOADED);
+
+        assertEquals(30, limiter.getLimit());
+        assertEquals(1, limiter.getBackoffs());
+
+        Thread.sleep(150);
+        limiter.release(limiter.acquireBlocking(), RequestLimiter.Outcome.OVERLOADED);
+
+        assertEquals(22, limiter.getLimit());
+    }
+
+    @Test
+    void limitBacksOffWhenLatencyRises() throws Exception {
+        RequestLimiter limiter = limiter(8, 64, 0, 1);
+        for (int i = 0; i < 5; i++) {
+            fullRound(limiter, 1);
+        }
+        int stableLimit = limiter.getLimit();
+
+        for (int i = 0; i < 5; i++) {
+            fullRound(limiter, 40);
+        }
+
+        assertTrue(limiter.getBackoffs() > 0);
+        assertTrue(limiter.getLimit() < stableLimit, limiter.getLimit() + " < " + stableLimit);
+    }
+}
@@ -0,0 +1,100 @@
+package api;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that requests are retried after transient failures, and POSTs only when they cannot have been carried out
+ */
+class RetryTest {
+
+    private static final int RETRIES = 3;
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(25, 5, 10, 0, 0)
+            .withProperty(ApiGateway.RETRIES_PROPERTY, Integer.toString(RETRIES))
+            // keep the circuits closed, so that every attempt reaches the stub
+            .withProperty(ApiGateway.BREAKER_FAILURES_PROPERTY, "1000");
+
+    private static ApiGateway api;
+    private static byte[] bookingJson;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        String customerId = stub.getUsers().get(0).get("id").textValue();
+        String siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+        bookingJson = RequestBodies.booking(customerId, siteId, "2099-01-01 10:00:00", null, "string",
+                RequestBodies.modified(false));
+    }
+
+    @BeforeEach
+    void healthyStub() {
+        api.setRootUrl(stub.getRootUrl());
+        stub.setFaultRate(0);
+    }
+
+    @Test
+    void patchIsRetriedAfterEveryFailure() throws Exception {
+        String bookingId = Json.readNode(api.post("/booking", bookingJson).body()).get("id").textValue();
+        stub.setFaultRate(1);
+        long faults = stub.getFaultCount();
+
+        HttpResponse<String> response = api.patch("/booking/" + bookingId, bookingJson);
+
+        assertEquals(503, response.statusCode());
+        assertEquals(RETRIES + 1, stub.getFaultCount() - faults);
+    }
+
+    @Test
+    void postIsNotRetriedAfterALostResponse() throws Exception {
+        stub.setFaultRate(1);
+        int bookings = stub.getBookings().size();
+        long faults = stub.getFaultCount();
+        List<CompletableFuture<HttpResponse<String>>> posts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            posts.add(api.postAsync("/booking", bookingJson, ApiGateway.newIdempotencyKey()));
+        }
+
+        int lost = 0;
+        for (CompletableFuture<HttpResponse<String>> post : posts) {
+            HttpResponse<String> response = ApiGateway.await(post);
+            assertEquals(503, response.statusCode());
+            // only a 503 sent before the booking was made carries a Retry-After
+            if (response.headers().firstValue("Retry-After").isEmpty()) {
+                lost++;
+            }
+        }
+
+        // every lost response was the last attempt of its POST, and made exactly one booking
+        assertEquals(lost, stub.getBookings().size() - bookings);
+        assertTrue(stub.getFaultCount() - faults < posts.size() * (RETRIES + 1));
+    }
+
+    @Test
+    void postIsRetriedWhenTheConnectionIsRefused() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        api.setRootUrl("http://127.0.0.1:" + port + "/api/v2");
+        long retried = api.getRetriedRequests();
+
+        assertThrows(ConnectException.class,
+                () -> api.post("/booking", bookingJson, ApiGateway.newIdempotencyKey()));
+        assertEquals(RETRIES, api.getRetriedRequests() - retried);
+    }
+}
@@ -0,0 +1,55 @@
+package api;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that collection GETs are revalidated with the validators of the body kept for them
+ */
+class RevalidationTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(16, 5, 10, 20, 0);
+
+    private static ApiGateway api;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+    }
+
+    @Test
+    void unchangedCollectionReusesTheKeptBody() throws Exception {
+        HttpResponse<String> first = api.get("/testing-site");
+        long revalidated = api.getRevalidatedGets();
+
+        HttpResponse<String> second = api.get("/testing-site");
+
+        assertTrue(ApiGateway.isRevalidated(second));
+        assertEquals(200, second.statusCode());
+        assertEquals(first.body(), second.body());
+        assertEquals(revalidated + 1, api.getRevalidatedGets());
+    }
+
+    @Test
+    void changedCollectionIsDownloadedAgain() throws Exception {
+        api.get("/booking");
+        String customerId = stub.getUsers().get(0).get("id").textValue();
+        String siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+        String bookingId = Json.readNode(api.post("/booking", RequestBodies.booking(customerId, siteId,
+                "2099-01-01 10:00:00", null, "string", RequestBodies.modified(false))).body()).get("id").textValue();
+
+        HttpResponse<String> changed = api.get("/booking");
+
+        assertFalse(ApiGateway.isRevalidated(changed));
+        assertTrue(changed.body().contains(bookingId));
+        assertTrue(ApiGateway.isRevalidated(api.get("/booking")));
+    }
+}
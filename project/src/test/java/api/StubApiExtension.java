@@ -0,0 +1,55 @@
+package api;
+
+import org.junit.jupiter.api.extension.AfterAllCallback;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stub web service for the tests of a class. Registered as a static field with RegisterExtension, it is started and
+ * the api gateway pointed at it before the class's own BeforeAll methods run, and it is stopped after the tests.
+ */
+public class StubApiExtension extends StubApiServer implements BeforeAllCallback, AfterAllCallback {
+
+    /**
+     * System properties set before the stub is started, in the order they were added
+     */
+    private final Map<String, String> properties = new LinkedHashMap<>();
+
+    /**
+     * Constructor for the StubApiExtension class
+     * @param seed Seed for the random data generator
+     * @param siteCount Number of testing sites to create
+     * @param userCount Number of users to create
+     * @param bookingCount Number of bookings to create
+     * @param latencyMillis Artificial delay (in milliseconds) added to every response
+     */
+    public StubApiExtension(long seed, int siteCount, int userCount, int bookingCount, long latencyMillis) {
+        super(seed, siteCount, userCount, bookingCount, latencyMillis);
+    }
+
+    /**
+     * Function to set a system property before the stub is started, and so before the api gateway is first created
+     * and reads its settings
+     * @param key name of the property
+     * @param value value of the property
+     * @return this extension
+     */
+    public StubApiExtension withProperty(String key, String value) {
+        properties.put(key, value);
+        return this;
+    }
+
+    @Override
+    public void beforeAll(ExtensionContext context) throws Exception {
+        properties.forEach(System::setProperty);
+        ApiGateway.getInstance().setRootUrl(start(0));
+    }
+
+    @Override
+    public void afterAll(ExtensionContext context) {
+        stop();
+    }
+}
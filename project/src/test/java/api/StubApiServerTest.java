@@ -0,0 +1,82 @@
+package api;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the api gateway can be pointed at the stub web service with the root URL property, and that the stub
+ * serves the same seeded data every time
+ */
+class StubApiServerTest {
+
+    private static StubApiServer stub;
+    private static ApiGateway api;
+
+    @BeforeAll
+    static void start() throws Exception {
+        stub = new StubApiServer(2, 4, 6, 10, 0);
+        System.setProperty(ApiGateway.ROOT_URL_PROPERTY, stub.start(0) + "/");
+        api = ApiGateway.getInstance();
+    }
+
+    @AfterAll
+    static void stop() {
+        System.clearProperty(ApiGateway.ROOT_URL_PROPERTY);
+        stub.stop();
+    }
+
+    @Test
+    void gatewayUsesTheConfiguredRootUrl() throws Exception {
+        assertEquals(stub.getRootUrl(), api.getRootUrl());
+        assertEquals(stub.getUsers().toString(), Json.readTree(api.get("/user").body()).toString());
+    }
+
+    @Test
+    void seedsTheSameDataForTheSameSeed() {
+        StubApiServer again = new StubApiServer(2, 4, 6, 10, 0);
+
+        assertEquals(stub.getUsers(), again.getUsers());
+        for (int i = 0; i < 10; i++) {
+            // times are seeded relative to now, so only the IDs and pins repeat exactly
+            assertEquals(stub.getBookings().get(i).get("id"), again.getBookings().get(i).get("id"));
+            assertEquals(stub.getBookings().get(i).get("smsPin"), again.getBookings().get(i).get("smsPin"));
+        }
+        assertEquals(6, stub.getUsers().size());
+        assertEquals(10, stub.getBookings().size());
+    }
+
+    @Test
+    void seedsOneUserOfEachRoleFirst() {
+        assertTrue(stub.getUsers().get(0).get("isCustomer").booleanValue());
+        assertTrue(stub.getUsers().get(1).get("isReceptionist").booleanValue());
+        assertTrue(stub.getUsers().get(2).get("isHealthcareWorker").booleanValue());
+    }
+
+    @Test
+    void answersUnknownRecordsWithErrors() throws Exception {
+        String customerId = stub.getUsers().get(0).get("id").textValue();
+
+        assertEquals(404, api.get("/booking/no-such-booking").statusCode());
+        assertEquals(404, api.get("/testing-site/no-such-site").statusCode());
+        assertEquals(400, api.post("/booking", RequestBodies.booking(customerId, "no-such-site", "2099-01-01 10:00:00",
+                null, "string", RequestBodies.none())).statusCode());
+    }
+
+    @Test
+    void listsEverySiteWithItsOpeningHours() throws Exception {
+        ObjectNode[] sites = Json.readNodes(api.get("/testing-site").body());
+
+        assertEquals(4, sites.length);
+        for (ObjectNode site : sites) {
+            assertFalse(site.get("id").textValue().isEmpty());
+            assertTrue(site.get("additionalInfo").hasNonNull("openTime"));
+            assertTrue(site.get("additionalInfo").hasNonNull("closeTime"));
+        }
+    }
+}
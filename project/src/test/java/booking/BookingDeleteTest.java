@@ -0,0 +1,70 @@
+package booking;
+
+import api.ApiGateway;
+import api.ApiStatusException;
+import api.Json;
+import api.StubApiExtension;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import users.BookableUser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that a booking is only dropped from the local indexes once the api has deleted it
+ */
+class BookingDeleteTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(12, 5, 10, 0, 0);
+
+    private static ApiGateway api;
+    private static Booking booking;
+    private static String customerId;
+    private static String siteId;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        customerId = stub.getUsers().get(0).get("id").textValue();
+        siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+        booking = new Booking(new BookableUser() {
+            @Override
+            public void makeBooking() {
+            }
+
+            @Override
+            public String getSiteId() {
+                return siteId;
+            }
+
+            @Override
+            public String getBookingUserId() {
+                return customerId;
+            }
+        });
+    }
+
+    @Test
+    void deletedBookingLeavesReplica() throws Exception {
+        booking.addBooking();
+        String bookingId = booking.getBookingId();
+        assertNotNull(BookingReplica.getInstance().get(bookingId));
+
+        ApiGateway.await(booking.delete_bookingAsync(bookingId));
+
+        assertNull(BookingReplica.getInstance().get(bookingId));
+    }
+
+    @Test
+    void refusedDeleteFails() {
+        ApiStatusException refused = assertThrows(ApiStatusException.class,
+                () -> ApiGateway.await(booking.delete_bookingAsync("no-such-booking")));
+
+        assertEquals(404, refused.getStatusCode());
+    }
+}
@@ -0,0 +1,132 @@
+package booking;
+
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that downloads older than the changes this application made do not undo them, and that changes are not passed
+ * on while a download is applied
+ */
+class BookingEventsTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(18, 5, 10, 50, 0);
+
+    private static BookingReplica replica;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        replica = BookingReplica.getInstance();
+        replica.setSyncSeconds(3600);
+        replica.setFullSyncSeconds(3600);
+        replica.syncNow();
+    }
+
+    /**
+     * Function to download the full booking list into the replica straight away
+     */
+    private static void fullSync() throws Exception {
+        replica.setFullSyncSeconds(0);
+        try {
+            replica.syncNow();
+        } finally {
+            replica.setFullSyncSeconds(3600);
+        }
+    }
+
+    /**
+     * Function to copy a booking of the stub as this application would have changed it after the download
+     * @param booking the booking as listed by the stub
+     * @param status status after the change
+     * @return the changed booking
+     */
+    private static ObjectNode changedLocally(JsonNode booking, String status) {
+        ObjectNode changed = booking.deepCopy();
+        changed.put("status", status);
+        changed.put("updatedAt", Instant.now().plusSeconds(3600).toString());
+        return changed;
+    }
+
+    @Test
+    void fullSyncKeepsNewerLocalChange() throws Exception {
+        JsonNode booking = stub.getBookings().get(0);
+        BookingEvents.changed(changedLocally(booking, "PROCESSED"));
+
+        fullSync();
+
+        assertEquals("PROCESSED", replica.get(booking.get("id").textValue()).getStatus());
+    }
+
+    @Test
+    void fullSyncKeepsLocalDeletionAndCreation() throws Exception {
+        String deletedId = stub.getBookings().get(1).get("id").textValue();
+        ObjectNode created = changedLocally(stub.getBookings().get(2), "INITIATED");
+        created.put("id", "created-after-download");
+        BookingEvents.deleted(deletedId);
+        BookingEvents.changed(created);
+
+        fullSync();
+
+        assertNull(replica.get(deletedId));
+        assertNotNull(replica.get("created-after-download"));
+    }
+
+    @Test
+    void reconcileOnlyReplacesOlderDownloads() {
+        JsonNode booking = stub.getBookings().get(3);
+        String bookingId = booking.get("id").textValue();
+        BookingEvents.changed(changedLocally(booking, "PROCESSED"));
+
+        BookingRecord older = BookingRecord.fromNode(booking);
+        ObjectNode newerNode = booking.deepCopy();
+        newerNode.put("status", "CANCELLED");
+        newerNode.put("updatedAt", Instant.now().plusSeconds(7200).toString());
+        BookingRecord newer = BookingRecord.fromNode(newerNode);
+
+        assertEquals("PROCESSED", BookingEvents.reconcile(older).getStatus());
+        assertEquals("CANCELLED", BookingEvents.reconcile(newer).getStatus());
+
+        Map<String, BookingRecord> downloaded = new HashMap<>();
+        downloaded.put(bookingId, older);
+        BookingEvents.reconcile(downloaded);
+        assertEquals("PROCESSED", downloaded.get(bookingId).getStatus());
+    }
+
+    @Test
+    void changeWaitsUntilDownloadIsApplied() throws Exception {
+        JsonNode booking = stub.getBookings().get(4);
+        String bookingId = booking.get("id").textValue();
+        Thread change = new Thread(() -> BookingEvents.changed(changedLocally(booking, "PROCESSED")));
+        boolean[] blocked = {false};
+
+        Map<String, BookingRecord> downloaded = new HashMap<>();
+        downloaded.put(bookingId, BookingRecord.fromNode(booking));
+        BookingEvents.apply(downloaded, reconciled -> {
+            change.start();
+            try {
+                change.join(200);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            blocked[0] = change.isAlive();
+            reconciled.values().forEach(replica::update);
+        });
+        change.join();
+
+        assertTrue(blocked[0]);
+        assertEquals("PROCESSED", replica.get(bookingId).getStatus());
+    }
+}
@@ -0,0 +1,168 @@
+package booking;
+
+import api.ApiGateway;
+import api.ApiStatusException;
+import api.Json;
+import api.RequestBodies;
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import users.BookableUser;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that modifying or reverting a booking only cancels the old booking once the api has accepted the new one, and
+ * that a booking whose cancellation fails is not left next to the new one
+ */
+class BookingReplaceTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(11, 5, 10, 0, 0);
+
+    private static ApiGateway api;
+    private static String customerId;
+    private static String siteId;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        customerId = stub.getUsers().get(0).get("id").textValue();
+        siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+    }
+
+    /**
+     * Function to create a booking far enough in the future to be modified or cancelled
+     * @return the booking as returned by the api
+     */
+    private static ObjectNode futureBooking() throws Exception {
+        String id = Json.readNode(api.post("/booking", RequestBodies.booking(customerId, siteId, "2099-01-01 10:00:00",
+                null, "string", RequestBodies.modified(false))).body()).get("id").textValue();
+        return fetch(id);
+    }
+
+    private static ObjectNode fetch(String bookingId) throws Exception {
+        return Json.readNode(api.get("/booking/" + bookingId).body());
+    }
+
+    private static Booking booking(String siteId) {
+        return new Booking(new BookableUser() {
+            @Override
+            public void makeBooking() {
+            }
+
+            @Override
+            public String getSiteId() {
+                return siteId;
+            }
+
+            @Override
+            public String getBookingUserId() {
+                return customerId;
+            }
+        });
+    }
+
+    @Test
+    void refusedVenueChangeLeavesOldBookingActive() throws Exception {
+        ObjectNode old = futureBooking();
+        int bookings = stub.getBookings().size();
+
+        ApiStatusException refused = assertThrows(ApiStatusException.class,
+                () -> booking(siteId).changeVenue(old, "no-such-site"));
+
+        assertEquals(400, refused.getStatusCode());
+        assertEquals("INITIATED", fetch(old.get("id").textValue()).get("status").textValue());
+        assertEquals(bookings, stub.getBookings().size());
+    }
+
+    @Test
+    void venueChangeCreatesNewBookingThenCancelsOld() throws Exception {
+        ObjectNode old = futureBooking();
+
+        String newId = booking(siteId).changeVenue(old, siteId);
+
+        assertNotNull(newId);
+        assertNotEquals(old.get("id").textValue(), newId);
+        assertEquals("INITIATED", fetch(newId).get("status").textValue());
+        assertEquals("CANCELLED", fetch(old.get("id").textValue()).get("status").textValue());
+    }
+
+    @Test
+    void failedCancellationDeletesNewBookingAgain() throws Exception {
+        ObjectNode missing = futureBooking().deepCopy();
+        missing.put("id", "no-such-booking");
+        int bookings = stub.getBookings().size();
+
+        ApiStatusException refused = assertThrows(ApiStatusException.class,
+                () -> booking(siteId).changeVenue(missing, siteId));
+
+        assertEquals(404, refused.getStatusCode());
+        assertEquals(bookings, stub.getBookings().size());
+    }
+
+    @Test
+    void bookingThatCannotBeCancelledIsNotReplaced() throws Exception {
+        ObjectNode completed = futureBooking().deepCopy();
+        completed.put("status", "COMPLETED");
+        int bookings = stub.getBookings().size();
+
+        assertThrows(IllegalStateException.class, () -> booking(siteId).changeVenue(completed, siteId));
+
+        assertEquals(bookings, stub.getBookings().size());
+        assertEquals("INITIATED", fetch(completed.get("id").textValue()).get("status").textValue());
+    }
+
+    @Test
+    void refusedCancellationFails() throws Exception {
+        ObjectNode missing = futureBooking().deepCopy();
+        missing.put("id", "no-such-booking");
+        ObjectNode completed = futureBooking().deepCopy();
+        completed.put("status", "COMPLETED");
+
+        ApiStatusException refused = assertThrows(ApiStatusException.class,
+                () -> ApiGateway.await(booking(siteId).cancelBookingAsync(missing)));
+        assertEquals(404, refused.getStatusCode());
+        assertThrows(IllegalStateException.class, () -> ApiGateway.await(booking(siteId).cancelBookingAsync(completed)));
+        assertEquals("INITIATED", fetch(completed.get("id").textValue()).get("status").textValue());
+    }
+
+    @Test
+    void refusedRevertLeavesCurrentBookingActive() throws Exception {
+        ObjectNode current = futureBooking();
+        ObjectNode missing = futureBooking().deepCopy();
+        missing.put("id", "no-such-booking");
+
+        assertThrows(ApiStatusException.class, () -> booking(siteId).changeToPreviousBooking(current, missing));
+
+        assertEquals("INITIATED", fetch(current.get("id").textValue()).get("status").textValue());
+    }
+
+    @Test
+    void revertRestoresPastBookingThenCancelsCurrent() throws Exception {
+        ObjectNode current = futureBooking();
+        ObjectNode past = futureBooking();
+        api.patch("/booking/" + past.get("id").textValue(), RequestBodies.booking(customerId, siteId,
+                "2099-01-01 10:00:00", "CANCELLED", "string", RequestBodies.modified(true)));
+
+        booking(siteId).changeToPreviousBooking(current, fetch(past.get("id").textValue()));
+
+        assertEquals("INITIATED", fetch(past.get("id").textValue()).get("status").textValue());
+        assertEquals("CANCELLED", fetch(current.get("id").textValue()).get("status").textValue());
+    }
+
+    @Test
+    void refusedBookingFailsInsteadOfReturningNoId() {
+        CompletableFuture<String> created = booking("no-such-site").addBookingAsync();
+
+        ApiStatusException refused = assertThrows(ApiStatusException.class, () -> ApiGateway.await(created));
+        assertEquals(400, refused.getStatusCode());
+    }
+}
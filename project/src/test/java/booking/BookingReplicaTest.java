@@ -0,0 +1,152 @@
+package booking;
+
+import api.ApiGateway;
+import api.Json;
+import api.RequestBodies;
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import users.BookableUser;
+import utilities.SnapshotFiles;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests that the booking replica downloads the changes since its watermark and finds deletions in the full list, and
+ * that it only saves a snapshot when a sync changed it
+ */
+class BookingReplicaTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(17, 5, 10, 50, 0);
+
+    private static ApiGateway api;
+    private static BookingReplica replica;
+    private static Path snapshot;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        snapshot = Files.createTempDirectory("replica-test").resolve("bookings.snapshot");
+        System.setProperty(SnapshotFiles.DIRECTORY_PROPERTY, snapshot.getParent().toString());
+        api = ApiGateway.getInstance();
+        replica = BookingReplica.getInstance();
+        // only the syncs made by the tests
+        replica.setSyncSeconds(3600);
+        replica.setFullSyncSeconds(3600);
+        replica.syncNow();
+    }
+
+    /**
+     * Function to change a booking on the api behind the replica's back, as another desk would
+     * @param booking the booking as listed by the stub
+     * @param status new status of the booking
+     */
+    private static void changeElsewhere(JsonNode booking, String status) throws Exception {
+        api.patch("/booking/" + booking.get("id").textValue(), RequestBodies.booking(
+                booking.get("customer").get("id").textValue(), booking.get("testingSite").get("id").textValue(),
+                booking.get("startTime").textValue(), status, "string", RequestBodies.modified(true)));
+    }
+
+    /**
+     * Function to wait until the snapshot file has been written and no further save follows
+     * @return time the snapshot file was last written
+     */
+    private static FileTime settledSnapshot() throws Exception {
+        FileTime written = null;
+        for (int i = 0; i < 50; i++) {
+            Thread.sleep(100);
+            FileTime now = Files.exists(snapshot) ? Files.getLastModifiedTime(snapshot) : null;
+            if (now != null && now.equals(written)) {
+                return written;
+            }
+            written = now;
+        }
+        throw new AssertionError("The snapshot was not written");
+    }
+
+    @Test
+    void incrementalSyncMergesChangesMadeElsewhere() throws Exception {
+        JsonNode booking = stub.getBookings().get(0);
+        changeElsewhere(booking, "CANCELLED");
+        String customerId = stub.getUsers().get(1).get("id").textValue();
+        String siteId = stub.getBookings().get(1).get("testingSite").get("id").textValue();
+        String createdId = Json.readNode(api.post("/booking", RequestBodies.booking(customerId, siteId,
+                "2099-01-01 10:00:00", null, "string", RequestBodies.modified(false))).body()).get("id").textValue();
+        int requests = (int) stub.getRequestCount();
+
+        replica.syncNow();
+
+        assertEquals(1, stub.getRequestCount() - requests);
+        assertEquals("CANCELLED", replica.get(booking.get("id").textValue()).getStatus());
+        BookingRecord created = replica.get(createdId);
+        assertNotNull(created);
+        assertEquals(customerId, created.getCustomerId());
+    }
+
+    @Test
+    void onlyTheFullListRemovesBookingsDeletedElsewhere() throws Exception {
+        String bookingId = stub.getBookings().get(2).get("id").textValue();
+        api.delete("/booking/" + bookingId);
+
+        replica.syncNow();
+
+        // a deleted booking is not among the changes since the watermark
+        assertNotNull(replica.get(bookingId));
+
+        replica.setFullSyncSeconds(0);
+        try {
+            replica.syncNow();
+        } finally {
+            replica.setFullSyncSeconds(3600);
+        }
+
+        assertNull(replica.get(bookingId));
+    }
+
+    @Test
+    void syncWithoutChangesKeepsSnapshot() throws Exception {
+        replica.syncNow();
+        FileTime written = settledSnapshot();
+
+        // downloads the bookings changed at the watermark again
+        replica.syncNow();
+        Thread.sleep(300);
+
+        assertEquals(written, Files.getLastModifiedTime(snapshot));
+    }
+
+    @Test
+    void describesBookingsWithoutDownloadingThem() throws Exception {
+        JsonNode booking = stub.getBookings().get(3);
+        String bookingId = booking.get("id").textValue();
+        Booking.describeBooking(replica.get(bookingId));
+        long requests = stub.getRequestCount();
+
+        String description = Booking.describeBooking(replica.get(bookingId));
+
+        assertEquals(requests, stub.getRequestCount());
+        assertEquals(new Booking(new BookableUser() {
+            @Override
+            public void makeBooking() {
+            }
+
+            @Override
+            public String getSiteId() {
+                return null;
+            }
+
+            @Override
+            public String getBookingUserId() {
+                return null;
+            }
+        }).display_booking_description(bookingId), description);
+    }
+}
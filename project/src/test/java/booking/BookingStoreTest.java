@@ -0,0 +1,156 @@
+package booking;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the column store finds its bookings by ID and pin while its hash tables grow and rows are removed, and
+ * that it hands back the times it was given
+ */
+class BookingStoreTest {
+
+    private final Random random = new Random(19);
+
+    private BookingRecord booking(String id, String pin) {
+        return new BookingRecord(id, "customer-" + random.nextInt(50), "site-" + random.nextInt(5), "INITIATED", pin,
+                0, null, "2099-01-01T10:00:00.000Z", "2022-05-01T00:00:00.000Z");
+    }
+
+    /**
+     * Function to fill a store with bookings, mostly with UUIDs and numeric pins as the api hands out, and some with
+     * text IDs and pins
+     * @param store the store
+     * @param from number of the first booking, which also makes its pin
+     * @param count number of bookings
+     * @return the bookings keyed by ID, in the order they were added
+     */
+    private Map<String, BookingRecord> fill(BookingStore store, int from, int count) {
+        Map<String, BookingRecord> bookings = new LinkedHashMap<>();
+        for (int i = from; i < from + count; i++) {
+            String id = i % 10 == 0 ? "booking-" + i : UUID.randomUUID().toString();
+            String pin = i % 7 == 0 ? "pin-" + i : String.format("%06d", i);
+            BookingRecord booking = booking(id, pin);
+            bookings.put(id, booking);
+            store.put(booking);
+        }
+        return bookings;
+    }
+
+    private static void assertHolds(BookingStore store, Map<String, BookingRecord> bookings) {
+        assertEquals(bookings.size(), store.size());
+        for (BookingRecord booking : bookings.values()) {
+            BookingRecord byId = store.get(booking.getId());
+            assertNotNull(byId, booking.getId());
+            assertEquals(booking.getSmsPin(), byId.getSmsPin());
+            assertEquals(booking.getCustomerId(), byId.getCustomerId());
+            assertEquals(booking.getId(), store.byPin(booking.getSmsPin()).getId());
+        }
+    }
+
+    @Test
+    void findsEveryBookingAsTheTablesGrow() {
+        BookingStore store = new BookingStore();
+
+        Map<String, BookingRecord> bookings = fill(store, 0, 5000);
+
+        assertHolds(store, bookings);
+        assertNull(store.get(UUID.randomUUID().toString()));
+        assertNull(store.byPin("999999"));
+    }
+
+    @Test
+    void findsRemainingBookingsAfterRemovals() {
+        BookingStore store = new BookingStore();
+        Map<String, BookingRecord> bookings = fill(store, 0, 3000);
+        List<String> ids = new ArrayList<>(bookings.keySet());
+        Collections.shuffle(ids, random);
+
+        for (String id : ids.subList(0, 2000)) {
+            String pin = bookings.remove(id).getSmsPin();
+            assertTrue(store.remove(id));
+            assertNull(store.get(id));
+            assertNull(store.byPin(pin));
+        }
+
+        assertFalse(store.remove(ids.get(0)));
+        assertHolds(store, bookings);
+        bookings.putAll(fill(store, 3000, 500));
+        assertHolds(store, bookings);
+    }
+
+    @Test
+    void replacingABookingMovesItsPin() {
+        BookingStore store = new BookingStore();
+        Map<String, BookingRecord> bookings = fill(store, 0, 100);
+        String id = bookings.keySet().iterator().next();
+        String oldPin = bookings.get(id).getSmsPin();
+
+        store.put(booking(id, "123456"));
+
+        assertEquals(100, store.size());
+        assertNull(store.byPin(oldPin));
+        assertEquals(id, store.byPin("123456").getId());
+    }
+
+    @Test
+    void snapshotRestoresTheTables() throws Exception {
+        BookingStore store = new BookingStore();
+        Map<String, BookingRecord> bookings = fill(store, 0, 2000);
+        for (String id : new ArrayList<>(bookings.keySet()).subList(0, 500)) {
+            store.remove(id);
+            bookings.remove(id);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            store.writeTo(out);
+        }
+
+        BookingStore restored = new BookingStore();
+        restored.readFrom(ByteBuffer.wrap(bytes.toByteArray()));
+
+        assertHolds(restored, bookings);
+    }
+
+    @Test
+    void keepsTimesWhichAreNotInstants() throws Exception {
+        BookingStore store = new BookingStore();
+        store.put(new BookingRecord("booked-here", "customer-1", "site-1", "INITIATED", "123456", 0, null,
+                "2099-01-01 10:00:00", "2022-05-01T00:00:00.000Z"));
+        fill(store, 0, 20);
+        store.put(new BookingRecord("moved-row", "customer-2", "site-1", "INITIATED", "654321", 0, null,
+                "2099-01-02 03:04:05", "not a time"));
+        // the last row fills the gap of the removed one
+        store.remove("booked-here");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            store.writeTo(out);
+        }
+        BookingStore restored = new BookingStore();
+        restored.readFrom(ByteBuffer.wrap(bytes.toByteArray()));
+
+        for (BookingStore copy : new BookingStore[] {store, restored}) {
+            BookingRecord booking = copy.get("moved-row");
+            assertEquals("2099-01-02 03:04:05", booking.getStartTime());
+            assertEquals("not a time", booking.getUpdatedAt());
+        }
+        store.put(new BookingRecord("booked-here", "customer-1", "site-1", "INITIATED", "123456", 0, null,
+                "2099-01-01T10:00:00.000Z", "2022-05-01T00:00:00.000Z"));
+        assertEquals("2099-01-01T10:00:00.000Z", store.get("booked-here").getStartTime());
+    }
+}
@@ -0,0 +1,93 @@
+package booking;
+
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that the streaming parser reads the booking list as binding it to JSON trees would
+ */
+class BookingStreamTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(5, 5, 20, 200, 0);
+
+    private static List<BookingRecord> read(String json) throws IOException {
+        List<BookingRecord> bookings = new ArrayList<>();
+        BookingStream.read(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), booking -> true, bookings::add);
+        return bookings;
+    }
+
+    @Test
+    void streamedBookingsMatchTheBoundBookings() throws Exception {
+        Map<String, BookingRecord> expected = new HashMap<>();
+        for (JsonNode booking : stub.getBookings()) {
+            expected.put(booking.get("id").textValue(), BookingRecord.fromNode(booking));
+        }
+
+        List<BookingRecord> streamed = BookingStream.fetch(booking -> true);
+
+        assertEquals(expected.size(), streamed.size());
+        for (BookingRecord booking : streamed) {
+            BookingRecord bound = expected.get(booking.getId());
+            assertNotNull(bound);
+            assertEquals(bound.getCustomerId(), booking.getCustomerId());
+            assertEquals(bound.getSiteId(), booking.getSiteId());
+            assertEquals(bound.getStatus(), booking.getStatus());
+            assertEquals(bound.getSmsPin(), booking.getSmsPin());
+            assertEquals(bound.getFlags(), booking.getFlags());
+            assertEquals(bound.getQrCode(), booking.getQrCode());
+            assertEquals(bound.getStartTime(), booking.getStartTime());
+            assertEquals(bound.getUpdatedAt(), booking.getUpdatedAt());
+        }
+    }
+
+    @Test
+    void filterOnlyPassesMatchingBookings() throws Exception {
+        String siteId = stub.getBookings().get(0).get("testingSite").get("id").textValue();
+        long expected = 0;
+        for (JsonNode booking : stub.getBookings()) {
+            if (siteId.equals(booking.get("testingSite").get("id").textValue())) {
+                expected++;
+            }
+        }
+
+        assertEquals(expected, BookingStream.fetch(BookingStream.bySite(siteId)).size());
+    }
+
+    @Test
+    void skipsUnknownFieldsAndBookingsWithoutId() throws Exception {
+        List<BookingRecord> bookings = read("[{\"covidTests\":[{\"id\":\"t\",\"nested\":{\"id\":\"x\"}}],"
+                + "\"id\":\"b1\",\"testingSite\":null,\"customer\":{\"id\":\"c1\",\"roles\":[\"CUSTOMER\"]},"
+                + "\"additionalInfo\":{\"homeTest\":true,\"qrCode\":\"QR\",\"extra\":{\"a\":[1,2]}}},"
+                + "{\"status\":\"INITIATED\"},{\"id\":\"b2\",\"smsPin\":\"123456\"}]");
+
+        assertEquals(2, bookings.size());
+        BookingRecord first = bookings.get(0);
+        assertEquals("b1", first.getId());
+        assertEquals("c1", first.getCustomerId());
+        assertNull(first.getSiteId());
+        assertEquals("QR", first.getQrCode());
+        assertEquals(BookingRecord.HOME_TEST, first.getFlags());
+        assertEquals("123456", bookings.get(1).getSmsPin());
+    }
+
+    @Test
+    void refusesAResponseWhichIsNotAList() {
+        assertThrows(IOException.class, () -> read("{\"statusCode\":500}"));
+    }
+}
@@ -0,0 +1,55 @@
+package booking;
+
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests that pins are found in the local index as bookings change, and that checking a pin only bounds the download of
+ * its booking by the pin check deadline
+ */
+class PinIndexTest {
+
+    // a cold sync and the booking download together take longer than the 300 ms deadline, each alone does not
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(24, 5, 50, 500, 200);
+
+    @Test
+    void coldPinCheckIsNotCutShortBySync() throws Exception {
+        JsonNode booking = stub.getBookings().get(0);
+
+        ObjectNode found = PinIndex.getInstance().lookupBooking(booking.get("smsPin").textValue());
+
+        assertEquals(booking.get("id").textValue(), found.get("id").textValue());
+        assertNull(PinIndex.getInstance().lookupBooking("no-such-pin"));
+    }
+
+    @Test
+    void indexFollowsPinChangesWithoutDownloading() throws Exception {
+        PinIndex pins = PinIndex.getInstance();
+        JsonNode booking = stub.getBookings().get(1);
+        String oldPin = booking.get("smsPin").textValue();
+        assertEquals(booking.get("id").textValue(), pins.lookup(oldPin).getId());
+        long requests = stub.getRequestCount();
+
+        ObjectNode changed = booking.deepCopy();
+        changed.put("smsPin", "pin-changed-here");
+        changed.put("updatedAt", Instant.now().plusSeconds(3600).toString());
+        BookingEvents.changed(changed);
+
+        assertEquals(booking.get("id").textValue(), pins.lookup("pin-changed-here").getId());
+        assertEquals(requests, stub.getRequestCount());
+
+        BookingEvents.deleted(booking.get("id").textValue());
+
+        assertNull(pins.lookup("pin-changed-here"));
+        assertNull(pins.lookup(oldPin));
+    }
+}
@@ -0,0 +1,65 @@
+package facilities;
+
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that search results are described from the site catalog and the waiting time table, without requesting each
+ * site again
+ */
+class CovidTestingSiteTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(7, 8, 10, 40, 0);
+
+    @BeforeAll
+    static void setUp() {
+        SiteSearch.getInstance().setTtlSeconds(3600);
+        WaitingTimeTable.getInstance().setTtlSeconds(3600);
+    }
+
+    @Test
+    void describesSearchResultsWithoutRequests() throws Exception {
+        SiteCatalog catalog = SiteSearch.getInstance().getCatalog();
+        List<CovidTestingSite> sites = catalog.toSites(catalog.withAll(EnumSet.noneOf(SiteCatalog.Attribute.class)));
+        CovidTestingSite.getDescriptions(sites);
+        long requests = stub.getRequestCount();
+
+        List<String> descriptions = CovidTestingSite.getDescriptions(sites);
+
+        assertEquals(requests, stub.getRequestCount());
+        assertEquals(sites.size(), descriptions.size());
+        for (int i = 0; i < sites.size(); i++) {
+            CovidTestingSite site = sites.get(i);
+            String waitingTime = Integer.toString(WaitingTimeTable.getInstance().getWaitingTime(site.getSiteId()));
+            assertTrue(descriptions.get(i).contains(site.getSite().get("name").toString()));
+            assertTrue(descriptions.get(i).contains("Waiting time: " + waitingTime + " hours"));
+            assertEquals(descriptions.get(i), site.getDescription());
+        }
+        assertEquals(requests, stub.getRequestCount());
+    }
+
+    @Test
+    void requestsSiteKnownOnlyByIdOnce() throws Exception {
+        ObjectNode listed = SiteSearch.getInstance().getCatalog().getSites().get(0);
+        CovidTestingSite site = new CovidTestingSite(listed.get("id").textValue());
+        long requests = stub.getRequestCount();
+
+        String description = site.getDescription();
+        site.getState();
+
+        assertEquals(requests + 1, stub.getRequestCount());
+        assertFalse(description.isEmpty());
+        assertEquals(listed.get("name"), site.getSite().get("name"));
+    }
+}
@@ -0,0 +1,66 @@
+package facilities;
+
+import api.Json;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests for the bitset searches of the site catalog and for the copies it hands out
+ */
+class SiteCatalogTest {
+
+    private static ObjectNode site(String id, String suburb, boolean driveThrough, boolean hospital) {
+        ObjectNode site = Json.mapper().createObjectNode();
+        site.put("id", id);
+        site.put("name", id + " Testing Site");
+        site.putObject("address").put("suburb", suburb);
+        site.putObject("additionalInfo").put("driveThrough", driveThrough).put("hospital", hospital);
+        return site;
+    }
+
+    private static SiteCatalog catalog() {
+        return new SiteCatalog(new ObjectNode[] {
+                site("a", "Clayton", true, false),
+                site("b", "Clayton", true, true),
+                site("c", "Caulfield", false, true)
+        }, 0);
+    }
+
+    private static List<String> ids(SiteCatalog catalog, BitSet set) {
+        return catalog.toSites(set).stream().map(CovidTestingSite::getSiteId).collect(Collectors.toList());
+    }
+
+    @Test
+    void combinesSuburbAndAttributeSets() {
+        SiteCatalog catalog = catalog();
+
+        BitSet claytonDriveThrough = catalog.withAll(EnumSet.of(SiteCatalog.Attribute.DRIVE_THROUGH));
+        claytonDriveThrough.and(catalog.inSuburb("CLAYTON"));
+
+        assertEquals(List.of("a", "b"), ids(catalog, claytonDriveThrough));
+        assertEquals(List.of("b", "c"), ids(catalog, catalog.withAll(EnumSet.of(SiteCatalog.Attribute.HOSPITAL))));
+        assertEquals(List.of("a"), ids(catalog, catalog.without(SiteCatalog.Attribute.HOSPITAL)));
+        assertEquals(List.of(), ids(catalog, catalog.inSuburb("Richmond")));
+        assertNull(catalog.getSite("missing"));
+    }
+
+    @Test
+    void changingAHandedOutSiteLeavesTheCatalogUnchanged() throws Exception {
+        SiteCatalog catalog = catalog();
+
+        catalog.getSite("a").put("name", "changed");
+        catalog.getSites().get(0).put("name", "changed");
+        catalog.toSites(catalog.inSuburb("Clayton")).get(0).getSite().put("name", "changed");
+
+        assertEquals("a Testing Site", catalog.getSite("a").get("name").textValue());
+        assertEquals("a Testing Site", catalog.revalidated(1).getSites().get(0).get("name").textValue());
+    }
+}
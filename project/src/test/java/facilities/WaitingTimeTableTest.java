@@ -0,0 +1,81 @@
+package facilities;
+
+import api.StubApiExtension;
+import booking.BookingEvents;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests that the waiting time table counts the booking list and then follows this application's changes without
+ * downloading it again
+ */
+class WaitingTimeTableTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(8, 3, 10, 60, 0);
+
+    private static WaitingTimeTable table;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        table = WaitingTimeTable.getInstance();
+        table.setTtlSeconds(3600);
+    }
+
+    private static String siteOf(JsonNode booking) {
+        return booking.get("testingSite").get("id").textValue();
+    }
+
+    /**
+     * Function to copy a booking of the stub as this application would have changed it
+     * @param booking the booking as listed by the stub
+     * @param status status after the change
+     * @return the changed booking
+     */
+    private static ObjectNode changed(JsonNode booking, String status) {
+        ObjectNode changed = booking.deepCopy();
+        changed.put("status", status);
+        changed.put("updatedAt", Instant.now().plusSeconds(3600).toString());
+        return changed;
+    }
+
+    @Test
+    void countsTheBookingListAndFollowsChanges() throws Exception {
+        JsonNode first = stub.getBookings().get(0);
+        String siteId = siteOf(first);
+        Map<String, Integer> expected = new HashMap<>();
+        for (JsonNode booking : stub.getBookings()) {
+            if (siteOf(booking).equals(siteId)) {
+                expected.merge(booking.get("status").textValue(), 1, Integer::sum);
+            }
+        }
+
+        assertEquals(expected, table.getCounts(siteId));
+        int waiting = table.getWaitingTime(siteId);
+        long requests = stub.getRequestCount();
+
+        BookingEvents.changed(changed(first, "CANCELLED"));
+        BookingEvents.changed(changed(first, "CANCELLED"));
+        ObjectNode created = changed(first, "INITIATED");
+        created.put("id", "created-here");
+        BookingEvents.changed(created);
+        BookingEvents.changed(created);
+        BookingEvents.deleted("created-here");
+
+        boolean wasWaiting = !"CANCELLED".equals(first.get("status").textValue())
+                && !"COMPLETED".equals(first.get("status").textValue());
+        assertEquals(wasWaiting ? waiting - 1 : waiting, table.getWaitingTime(siteId));
+        assertEquals(expected.values().stream().mapToInt(Integer::intValue).sum(),
+                table.getCounts(siteId).values().stream().mapToInt(Integer::intValue).sum());
+        assertEquals(requests, stub.getRequestCount());
+    }
+}
@@ -0,0 +1,132 @@
+package server;
+
+import api.ApiGateway;
+import api.Json;
+import api.RequestBodies;
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the batch runner runs every command of a command file, and reports each outcome in the order of the file
+ */
+class BatchRunnerTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(14, 5, 10, 0, 0);
+
+    private static ApiGateway api;
+    private static String customerId;
+    private static String siteId;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        api = ApiGateway.getInstance();
+        customerId = stub.getUsers().get(0).get("id").textValue();
+        siteId = Json.readNodes(api.get("/testing-site").body())[0].get("id").textValue();
+    }
+
+    /**
+     * Function to create a booking far enough in the future to be cancelled
+     * @return the booking as returned by the api
+     */
+    private static ObjectNode futureBooking() throws Exception {
+        String id = Json.readNode(api.post("/booking", RequestBodies.booking(customerId, siteId, "2099-01-01 10:00:00",
+                null, "string", RequestBodies.modified(false))).body()).get("id").textValue();
+        return Json.readNode(api.get("/booking/" + id).body());
+    }
+
+    private static JsonNode stubBooking(String bookingId) {
+        for (JsonNode booking : stub.getBookings()) {
+            if (bookingId.equals(booking.get("id").textValue())) {
+                return booking;
+            }
+        }
+        return null;
+    }
+
+    private List<BatchRunner.Result> run(int parallelism, String... commands) throws Exception {
+        Path commandFile = directory.resolve("commands.txt");
+        Files.write(commandFile, Arrays.asList(commands), StandardCharsets.UTF_8);
+        return new BatchRunner("batch", parallelism).run(commandFile, directory.resolve("results.tsv"));
+    }
+
+    @Test
+    void runsCommandsAndReportsThemInOrder() throws Exception {
+        ObjectNode checked = futureBooking();
+        String cancelledId = futureBooking().get("id").textValue();
+        String deletedId = futureBooking().get("id").textValue();
+
+        List<BatchRunner.Result> results = run(4,
+                "# receptionist work",
+                "check-booking " + checked.get("id").textValue(),
+                "",
+                "check-pin " + checked.get("smsPin").textValue(),
+                "cancel " + cancelledId,
+                "delete " + deletedId);
+
+        assertEquals(4, results.size());
+        assertEquals(Arrays.asList(2, 4, 5, 6), Arrays.asList(results.get(0).getLineNumber(),
+                results.get(1).getLineNumber(), results.get(2).getLineNumber(), results.get(3).getLineNumber()));
+        results.forEach(result -> assertTrue(result.isOk(), result.getCommand() + ": " + result.getDetail()));
+        assertEquals("INITIATED", results.get(0).getDetail());
+        assertEquals(checked.get("id").textValue() + " INITIATED", results.get(1).getDetail());
+        assertEquals("CANCELLED", stubBooking(cancelledId).get("status").textValue());
+        assertNull(stubBooking(deletedId));
+    }
+
+    @Test
+    void reportsFailedCommandsWithoutStopping() throws Exception {
+        String bookingId = futureBooking().get("id").textValue();
+
+        List<BatchRunner.Result> results = run(2,
+                "frobnicate " + bookingId,
+                "cancel",
+                "check-booking no-such-booking",
+                "check-booking " + bookingId);
+
+        assertFalse(results.get(0).isOk());
+        assertEquals("Unknown command frobnicate", results.get(0).getDetail());
+        assertFalse(results.get(1).isOk());
+        assertEquals("Missing arguments for cancel", results.get(1).getDetail());
+        assertFalse(results.get(2).isOk());
+        assertTrue(results.get(3).isOk());
+    }
+
+    @Test
+    void writesOneResultLinePerCommand() throws Exception {
+        String bookingId = futureBooking().get("id").textValue();
+
+        run(1, "check-booking " + bookingId, "frobnicate");
+
+        List<String> lines = Files.readAllLines(directory.resolve("results.tsv"), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("line\tcommand\tresult\tlatencyMs\tdetail", lines.get(0));
+        assertTrue(lines.get(1).startsWith("1\tcheck-booking " + bookingId + "\tOK\t"));
+        assertTrue(lines.get(2).startsWith("2\tfrobnicate\tERROR\t"));
+    }
+
+    @Test
+    void requiresAtLeastOneCommandInFlight() {
+        assertThrows(IllegalArgumentException.class, () -> new BatchRunner("batch", 0));
+    }
+}
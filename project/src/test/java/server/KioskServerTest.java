@@ -0,0 +1,94 @@
+package server;
+
+import api.ApiGateway;
+import api.Json;
+import api.StubApiExtension;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests that the kiosk service only answers requests carrying its token, and that it passes on the bookings the api
+ * refuses
+ */
+class KioskServerTest {
+
+    private static final String TOKEN = "test-token";
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(5, 5, 10, 10, 0);
+
+    private static KioskServer kiosk;
+    private static final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    static void start() throws Exception {
+        kiosk = new KioskServer(KioskServer.DEFAULT_HOST, 0, TOKEN);
+        kiosk.start();
+    }
+
+    @AfterAll
+    static void stop() {
+        kiosk.stop();
+    }
+
+    private static int status(String token) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(
+                URI.create("http://127.0.0.1:" + kiosk.getPort() + "/kiosk/metrics"));
+        if (token != null) {
+            request.header(KioskServer.TOKEN_HEADER, token);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private static int post(String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + kiosk.getPort() + "/kiosk/" + path))
+                .header(KioskServer.TOKEN_HEADER, TOKEN)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Test
+    void refusesRequestsWithoutTheToken() throws Exception {
+        assertEquals(401, status(null));
+        assertEquals(401, status("wrong-token"));
+    }
+
+    @Test
+    void answersRequestsWithTheToken() throws Exception {
+        assertEquals(200, status(TOKEN));
+    }
+
+    @Test
+    void requiresAToken() {
+        assertThrows(IllegalArgumentException.class, () -> new KioskServer(KioskServer.DEFAULT_HOST, 0, " "));
+    }
+
+    @Test
+    void passesOnARefusedHomeBooking() throws Exception {
+        String customerId = stub.getUsers().get(0).get("id").textValue();
+
+        assertEquals(400, post("home-bookings", "{\"customerId\":\"" + customerId + "\",\"siteId\":\"no-such-site\"}"));
+    }
+
+    @Test
+    void makesAHomeBooking() throws Exception {
+        String customerId = stub.getUsers().get(0).get("id").textValue();
+        String siteId = Json.readNodes(ApiGateway.getInstance().get("/testing-site").body())[0].get("id").textValue();
+        int bookings = stub.getBookings().size();
+
+        assertEquals(201, post("home-bookings", "{\"customerId\":\"" + customerId + "\",\"siteId\":\"" + siteId + "\"}"));
+        assertEquals(bookings + 1, stub.getBookings().size());
+    }
+}
@@ -0,0 +1,100 @@
+package server;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that each connection to the session server gets its own session, reading its own input and printing to its own
+ * output
+ */
+class SessionServerTest {
+
+    private static SessionServer server;
+
+    @BeforeAll
+    static void start() throws Exception {
+        server = new SessionServer(SessionServer.DEFAULT_HOST, 0, SessionServer.sessionExecutor());
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (Exception e) {
+                // the server was closed
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+    }
+
+    @AfterAll
+    static void stop() throws Exception {
+        server.close();
+    }
+
+    /**
+     * Function to read the lines a session prints until one contains the given text
+     * @param reader output of the session
+     * @param text text to wait for
+     * @return all lines read, joined by new lines
+     */
+    private static String readUntil(BufferedReader reader, String text) throws Exception {
+        StringBuilder lines = new StringBuilder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.append(line).append('\n');
+            if (line.contains(text)) {
+                break;
+            }
+        }
+        return lines.toString();
+    }
+
+    /**
+     * Function to wait a short time for the number of running sessions to drop to the given number, as a session is
+     * only counted out after its connection was closed
+     * @param count number of sessions to wait for
+     * @return number of sessions running after the wait
+     */
+    private static int awaitSessions(int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (server.getActiveSessions() > count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        return server.getActiveSessions();
+    }
+
+    @Test
+    void runsSessionsSideBySide() throws Exception {
+        try (Socket first = new Socket(SessionServer.DEFAULT_HOST, server.getPort());
+             Socket second = new Socket(SessionServer.DEFAULT_HOST, server.getPort())) {
+            BufferedReader firstOut = new BufferedReader(
+                    new InputStreamReader(first.getInputStream(), StandardCharsets.UTF_8));
+            BufferedReader secondOut = new BufferedReader(
+                    new InputStreamReader(second.getInputStream(), StandardCharsets.UTF_8));
+
+            assertTrue(readUntil(firstOut, "please login").contains("COVID-19 Booking Site"));
+            assertTrue(readUntil(secondOut, "please login").contains("COVID-19 Booking Site"));
+            assertEquals(2, server.getActiveSessions());
+
+            OutputStream secondIn = second.getOutputStream();
+            secondIn.write("quit\n".getBytes(StandardCharsets.UTF_8));
+            secondIn.flush();
+            assertTrue(readUntil(secondOut, "Session ended").contains("Session ended"));
+            assertEquals(-1, secondOut.read());
+
+            // the first session is still waiting for its answer
+            assertEquals(1, awaitSessions(1));
+        }
+
+        assertEquals(0, awaitSessions(0));
+    }
+}
@@ -0,0 +1,88 @@
+package users;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Tests that verified tokens are reused until they are close to their expiry, and that tokens without a readable
+ * expiry are never reused
+ */
+class SessionTokensTest {
+
+    private final SessionTokens tokens = SessionTokens.getInstance();
+
+    @BeforeEach
+    void reset() {
+        tokens.setExpiryMarginSeconds(60);
+        tokens.remove("resident");
+    }
+
+    /**
+     * Function to make an unsigned JWT with the given payload
+     * @param payload JSON claims of the token
+     * @return the token
+     */
+    private static String jwt(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".signature";
+    }
+
+    private static String expiringIn(long seconds) {
+        return jwt("{\"sub\":\"resident\",\"exp\":" + (System.currentTimeMillis() / 1000 + seconds) + "}");
+    }
+
+    @Test
+    void reusesTokenUntilCloseToExpiry() {
+        String jwt = expiringIn(3600);
+
+        tokens.store("resident", jwt);
+
+        assertEquals(jwt, tokens.getValidToken("resident"));
+        tokens.setExpiryMarginSeconds(7200);
+        assertNull(tokens.getValidToken("resident"));
+        tokens.setExpiryMarginSeconds(60);
+        assertNull(tokens.getValidToken("resident"));
+    }
+
+    @Test
+    void dropsExpiredToken() {
+        tokens.store("resident", expiringIn(30));
+
+        assertNull(tokens.getValidToken("resident"));
+    }
+
+    @Test
+    void forgetsTokenOnRemove() {
+        tokens.store("resident", expiringIn(3600));
+
+        tokens.remove("resident");
+
+        assertNull(tokens.getValidToken("resident"));
+    }
+
+    @Test
+    void doesNotStoreTokensWithoutExpiry() {
+        tokens.store("resident", jwt("{\"sub\":\"resident\"}"));
+        assertNull(tokens.getValidToken("resident"));
+
+        tokens.store("resident", "not-a-jwt");
+        assertNull(tokens.getValidToken("resident"));
+
+        tokens.store("resident", "header.!!!.signature");
+        assertNull(tokens.getValidToken("resident"));
+    }
+
+    @Test
+    void readsExpiryFromPayload() {
+        assertEquals(1700000000000L, SessionTokens.expiryOf(jwt("{\"exp\":1700000000}")));
+        assertEquals(0, SessionTokens.expiryOf(jwt("{\"exp\":\"soon\"}")));
+        assertEquals(0, SessionTokens.expiryOf(null));
+    }
+}
@@ -0,0 +1,87 @@
+package users;
+
+import api.StubApiExtension;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the user directory answers lookups from its cached user list, and only downloads the list again when it
+ * is thrown away or too old
+ */
+class UserDirectoryTest {
+
+    @RegisterExtension
+    static final StubApiExtension stub = new StubApiExtension(9, 5, 20, 10, 0);
+
+    private static UserDirectory directory;
+
+    @BeforeAll
+    static void setUp() {
+        directory = UserDirectory.getInstance();
+    }
+
+    @BeforeEach
+    void reset() {
+        directory.setTtlSeconds(3600);
+        directory.invalidate();
+    }
+
+    @Test
+    void findsUsersWithOneDownload() throws Exception {
+        long requests = stub.getRequestCount();
+
+        for (JsonNode user : stub.getUsers()) {
+            String username = user.get("userName").textValue();
+            assertEquals(username, directory.findByUsername(username).get("userName").textValue());
+            assertEquals(username, directory.findById(user.get("id").textValue()).get("userName").textValue());
+        }
+
+        assertEquals(requests + 1, stub.getRequestCount());
+    }
+
+    @Test
+    void unknownUsernameDoesNotDownloadAgainStraightAway() throws Exception {
+        directory.findByUsername(stub.getUsers().get(0).get("userName").textValue());
+        long requests = stub.getRequestCount();
+
+        assertNull(directory.findByUsername("no-such-user"));
+        assertNull(directory.findById("no-such-id"));
+        assertEquals(requests, stub.getRequestCount());
+    }
+
+    @Test
+    void invalidatedListIsDownloadedAgain() throws Exception {
+        String username = stub.getUsers().get(0).get("userName").textValue();
+        directory.findByUsername(username);
+        long requests = stub.getRequestCount();
+
+        directory.invalidate();
+
+        assertEquals(username, directory.findByUsername(username).get("userName").textValue());
+        assertEquals(requests + 1, stub.getRequestCount());
+    }
+
+    @Test
+    void oldListIsRefreshedInTheBackground() throws Exception {
+        String username = stub.getUsers().get(0).get("userName").textValue();
+        directory.findByUsername(username);
+        long requests = stub.getRequestCount();
+        directory.setTtlSeconds(0);
+        Thread.sleep(5);
+
+        assertEquals(username, directory.findByUsername(username).get("userName").textValue());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stub.getRequestCount() == requests && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(stub.getRequestCount() > requests);
+    }
+}
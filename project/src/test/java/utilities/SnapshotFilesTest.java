@@ -0,0 +1,118 @@
+package utilities;
+
+import api.ApiGateway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Tests for writing snapshot files and for rejecting snapshots which cannot be trusted
+ */
+class SnapshotFilesTest {
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void clearDirectory() {
+        System.clearProperty(SnapshotFiles.DIRECTORY_PROPERTY);
+        ApiGateway.getInstance().setRootUrl("http://127.0.0.1:1/api/v2");
+    }
+
+    private Path useDirectory() {
+        Path snapshots = directory.resolve("snapshots");
+        System.setProperty(SnapshotFiles.DIRECTORY_PROPERTY, snapshots.toString());
+        ApiGateway.getInstance().setRootUrl("http://127.0.0.1:1/api/v2");
+        return snapshots;
+    }
+
+    private static void writeNumbers(String name) throws Exception {
+        SnapshotFiles.write(name, out -> {
+            out.writeInt(42);
+            SnapshotFiles.writeString(out, "pin");
+        });
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws Exception {
+        useDirectory();
+        writeNumbers("numbers");
+
+        SnapshotFiles.Snapshot snapshot = SnapshotFiles.read("numbers");
+
+        assertNotNull(snapshot);
+        assertEquals(42, snapshot.getBody().getInt());
+        assertEquals("pin", SnapshotFiles.readString(snapshot.getBody()));
+    }
+
+    @Test
+    void rejectsABodyWhichDoesNotMatchItsChecksum() throws Exception {
+        Path snapshots = useDirectory();
+        writeNumbers("numbers");
+        Path file = snapshots.resolve("numbers.snapshot");
+        try (RandomAccessFile damaged = new RandomAccessFile(file.toFile(), "rw")) {
+            damaged.seek(damaged.length() - 1);
+            int last = damaged.read();
+            damaged.seek(damaged.length() - 1);
+            damaged.write(last ^ 0xFF);
+        }
+
+        assertNull(SnapshotFiles.read("numbers"));
+    }
+
+    @Test
+    void rejectsATruncatedFile() throws Exception {
+        Path snapshots = useDirectory();
+        writeNumbers("numbers");
+        try (RandomAccessFile truncated = new RandomAccessFile(snapshots.resolve("numbers.snapshot").toFile(), "rw")) {
+            truncated.setLength(truncated.length() - 2);
+        }
+
+        assertNull(SnapshotFiles.read("numbers"));
+    }
+
+    @Test
+    void ignoresSnapshotsOfAnotherWebService() throws Exception {
+        useDirectory();
+        writeNumbers("numbers");
+
+        ApiGateway.getInstance().setRootUrl("http://127.0.0.1:2/api/v2");
+
+        assertNull(SnapshotFiles.read("numbers"));
+    }
+
+    @Test
+    void keepsNothingUnlessADirectoryIsGiven() throws Exception {
+        writeNumbers("numbers");
+
+        assertNull(SnapshotFiles.read("numbers"));
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void onlyTheOwnerCanReadTheSnapshots() throws Exception {
+        assumeTrue(directory.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        Path snapshots = useDirectory();
+        writeNumbers("numbers");
+
+        assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(snapshots)));
+        assertEquals("rw-------",
+                PosixFilePermissions.toString(Files.getPosixFilePermissions(snapshots.resolve("numbers.snapshot"))));
+        try (var files = Files.list(snapshots)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".tmp")));
+        }
+    }
+}
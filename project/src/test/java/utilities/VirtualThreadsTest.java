@@ -0,0 +1,81 @@
+package utilities;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that per-task executors start a thread for every task, and fall back to named daemon platform threads when
+ * virtual threads are turned off or not supported
+ */
+class VirtualThreadsTest {
+
+    @AfterEach
+    void reset() {
+        System.clearProperty(VirtualThreads.ENABLED_PROPERTY);
+    }
+
+    /**
+     * Function to run tasks which all wait for each other, so they only finish if each runs on its own thread
+     * @param executor the executor
+     * @param count number of tasks
+     * @return whether all tasks finished
+     */
+    private static boolean runsTogether(ExecutorService executor, int count) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(count);
+        CountDownLatch finished = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            executor.execute(() -> {
+                started.countDown();
+                try {
+                    if (started.await(5, TimeUnit.SECONDS)) {
+                        finished.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        return finished.await(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void turnedOffUsesNamedDaemonThreads() throws Exception {
+        System.setProperty(VirtualThreads.ENABLED_PROPERTY, "false");
+        assertFalse(VirtualThreads.isEnabled());
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("worker");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get();
+
+            assertTrue(thread.getName().startsWith("worker-"));
+            assertTrue(thread.isDaemon());
+            assertTrue(runsTogether(executor, 50));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void startsAThreadForEveryTask() throws Exception {
+        ExecutorService executor = VirtualThreads.newPerTaskExecutor("worker");
+        try {
+            assertTrue(runsTogether(executor, 200));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void usesVirtualThreadsWhenTheJvmHasThem() {
+        boolean supported = Runtime.version().feature() >= 21;
+
+        assertEquals(supported, VirtualThreads.isEnabled());
+    }
+}